@@ -0,0 +1,119 @@
+package benchmarks;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+import model.operations.DeleteOperation;
+import model.operations.Operation;
+import model.operations.ReplaceOperation;
+import model.operations.SubphraseOperation;
+import model.rules.HtmlTransformationRule;
+import model.rules.TargetConfig;
+import model.rules.TargetConfig.TargetType;
+
+/**
+ * Generates the html and rules the benchmarks run over. Everything is generated from a fixed seed,
+ * so every run of a benchmark sees the same input and results can be compared between builds.
+ */
+final class BenchmarkData {
+    private static final long SEED = 20240601L;
+    private static final String[] WORDS = {
+            "account", "billing", "power", "meter", "reading", "outage", "payment", "plan", "customer",
+            "service", "connection", "address", "invoice", "balance", "broadband", "support", "contact"
+    };
+
+    private BenchmarkData() {}
+
+    /**
+     * The search phrase of the rule at an index.
+     */
+    static String phrase(int index) {
+        return "term" + index + "x";
+    }
+
+    /**
+     * Builds rules that cycle through replacing, deleting and replacing within a subphrase, each
+     * targeting text and every attribute, the same as rules added in the app.
+     *
+     * @param count The number of rules.
+     * @return The rules, each with its own search phrase.
+     */
+    static List<HtmlTransformationRule> rules(int count) {
+        List<HtmlTransformationRule> rules = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String phrase = phrase(i);
+            Operation<String> operation;
+            switch (i % 3) {
+                case 0:
+                    operation = new ReplaceOperation(phrase, phrase.toUpperCase());
+                    break;
+                case 1:
+                    operation = new DeleteOperation(phrase);
+                    break;
+                default:
+                    operation = new SubphraseOperation(phrase, new ReplaceOperation("term", "item"));
+                    break;
+            }
+
+            TargetConfig targets = new TargetConfig(EnumSet.of(TargetType.TEXT, TargetType.ATTRIBUTES), new HashMap<>());
+            rules.add(new HtmlTransformationRule(phrase, operation, targets));
+        }
+        return rules;
+    }
+
+    /**
+     * Builds an answer-like html document of sections with headings, paragraphs, links and tables.
+     * Every paragraph and link mentions the phrase of one of the rules, cycling through them.
+     *
+     * @param size The length of the html to build, in characters.
+     * @param phraseCount The number of rule phrases to mention.
+     * @return The html.
+     */
+    static String html(int size, int phraseCount) {
+        Random random = new Random(SEED);
+        StringBuilder html = new StringBuilder(size + 1024);
+        html.append("<html><head><title>Answer</title></head><body>");
+
+        for (int section = 0; html.length() < size; section++) {
+            String phrase = phrase(section % phraseCount);
+            html.append("<div class=\"section\" id=\"s").append(section).append("\">")
+                    .append("<h2>").append(words(random, 4)).append("</h2>")
+                    .append("<p>").append(words(random, 30)).append(' ').append(phrase).append(' ').append(words(random, 20)).append("</p>")
+                    .append("<p><a href=\"https://example.com/kb/").append(phrase).append("?id=").append(section)
+                    .append("\" title=\"").append(words(random, 3)).append("\">").append(words(random, 3)).append("</a></p>")
+                    .append("<table><tr><td>").append(words(random, 2)).append("</td><td>").append(words(random, 2)).append("</td></tr></table>")
+                    .append("</div>");
+        }
+
+        return html.append("</body></html>").toString();
+    }
+
+    /**
+     * Builds a single run of text of the given length, mentioning a phrase every few hundred characters.
+     *
+     * @param size The length of the text, in characters.
+     * @param phrase The phrase to mention, or null for text that never contains it.
+     * @return The text.
+     */
+    static String text(int size, String phrase) {
+        Random random = new Random(SEED);
+        StringBuilder text = new StringBuilder(size + 64);
+        while (text.length() < size) {
+            text.append(words(random, 40)).append(' ');
+            if (phrase != null) text.append(phrase).append(". ");
+        }
+        return text.toString();
+    }
+
+    private static String words(Random random, int count) {
+        StringBuilder words = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            if (i > 0) words.append(' ');
+            words.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return words.toString();
+    }
+}
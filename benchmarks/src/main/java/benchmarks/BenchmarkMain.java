@@ -0,0 +1,17 @@
+package benchmarks;
+
+import java.util.Arrays;
+
+/**
+ * Runs the benchmarks with JMH's GC profiler, so every result comes with its allocation rate.
+ * Takes the same arguments as JMH, e.g. {@code ProcessorBenchmark -p ruleCount=100} to run part of
+ * the suite, or {@code -rf json -rff results.json} to keep the results for comparing builds.
+ */
+public class BenchmarkMain {
+    public static void main(String[] args) throws Exception {
+        String[] withProfiler = Arrays.copyOf(new String[] {"-prof", "gc"}, args.length + 2);
+        System.arraycopy(args, 0, withProfiler, 2, args.length);
+
+        org.openjdk.jmh.Main.main(withProfiler);
+    }
+}
@@ -0,0 +1,66 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import model.operations.DeleteOperation;
+import model.operations.ReplaceOperation;
+import model.operations.SubphraseOperation;
+
+/**
+ * Measures each operation on a run of text, with and without the search phrase in it. Text without
+ * the phrase is by far the most common case, as most rules don't apply to most text.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@State(Scope.Benchmark)
+public class OperationBenchmark {
+    @Param({"1024", "65536", "1048576", "5242880"})
+    public int textSize;
+
+    @Param({"true", "false"})
+    public boolean containsPhrase;
+
+    private String text;
+    private ReplaceOperation replace;
+    private DeleteOperation delete;
+    private SubphraseOperation subphrase;
+
+    @Setup
+    public void setUp() {
+        String phrase = BenchmarkData.phrase(0);
+        text = BenchmarkData.text(textSize, containsPhrase ? phrase : null);
+        replace = new ReplaceOperation(phrase, phrase.toUpperCase());
+        delete = new DeleteOperation(phrase);
+        subphrase = new SubphraseOperation(phrase, new ReplaceOperation("term", "item"));
+    }
+
+    @Benchmark
+    public String replace() {
+        return replace.operate(text);
+    }
+
+    @Benchmark
+    public String delete() {
+        return delete.operate(text);
+    }
+
+    @Benchmark
+    public String subphrase() {
+        return subphrase.operate(text);
+    }
+}
@@ -0,0 +1,88 @@
+package benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import model.rules.CompiledRuleSet;
+import model.rules.HtmlTransformationRule;
+import utils.HtmlRuleProcessor;
+
+/**
+ * Measures {@link HtmlRuleProcessor} over documents and rule sets of different sizes: with a rule
+ * list (compiled on every call), with a rule set compiled once, and the pipeline's whole transform
+ * stage of parsing, transforming and serializing the html.
+ *
+ * Processing changes the document, so the first two get a fresh copy for each invocation. Copying
+ * isn't measured, but it makes runs over small documents take longer than their scores suggest.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@State(Scope.Benchmark)
+public class ProcessorBenchmark {
+    @Param({"1024", "65536", "1048576", "5242880"})
+    public int documentSize;
+
+    @Param({"1", "10", "100", "1000"})
+    public int ruleCount;
+
+    private String html;
+    private Document template;
+    private List<HtmlTransformationRule> rules;
+    private CompiledRuleSet ruleSet;
+    final private HtmlRuleProcessor processor = new HtmlRuleProcessor();
+
+    @Setup
+    public void setUp() {
+        html = BenchmarkData.html(documentSize, ruleCount);
+        template = Jsoup.parse(html);
+        rules = BenchmarkData.rules(ruleCount);
+        ruleSet = CompiledRuleSet.compile(rules);
+    }
+
+    @Benchmark
+    public Document processRuleList(Copy copy) {
+        return processor.process(copy.document, rules);
+    }
+
+    @Benchmark
+    public Document processCompiled(Copy copy) {
+        return processor.process(copy.document, ruleSet);
+    }
+
+    @Benchmark
+    public String parseTransformSerialize() {
+        Document doc = Jsoup.parse(html);
+        return processor.apply(doc, ruleSet) ? doc.toString() : html;
+    }
+
+    /**
+     * A fresh copy of the document for each invocation.
+     */
+    @State(Scope.Thread)
+    public static class Copy {
+        Document document;
+
+        @Setup(Level.Invocation)
+        public void copy(ProcessorBenchmark benchmark) {
+            document = benchmark.template.clone();
+        }
+    }
+}
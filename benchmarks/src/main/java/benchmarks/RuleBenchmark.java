@@ -0,0 +1,78 @@
+package benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import model.rules.HtmlTransformationRule;
+
+/**
+ * Measures a single {@link HtmlTransformationRule} applied to every element of a document, which is
+ * what running one rule over a whole answer costs without the compiled rule set.
+ *
+ * Rules change the document, so each invocation gets a fresh copy. Copying isn't measured, but it
+ * makes runs over small documents take longer than their scores suggest.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@State(Scope.Benchmark)
+public class RuleBenchmark {
+    @Param({"1024", "65536", "1048576", "5242880"})
+    public int documentSize;
+
+    @Param({"replace", "delete", "subphrase"})
+    public String operation;
+
+    private Document template;
+    private HtmlTransformationRule rule;
+
+    @Setup
+    public void setUp() {
+        template = Jsoup.parse(BenchmarkData.html(documentSize, 3));
+        template.outputSettings().prettyPrint(false);
+
+        // The generated rules cycle through replace, delete and subphrase
+        List<HtmlTransformationRule> rules = BenchmarkData.rules(3);
+        rule = rules.get(List.of("replace", "delete", "subphrase").indexOf(operation));
+    }
+
+    @Benchmark
+    public int transform(Elements elements) {
+        int changed = 0;
+        for (Element element : elements.elements) {
+            if (rule.transform(element)) changed++;
+        }
+        return changed;
+    }
+
+    /**
+     * A fresh copy of the document's elements for each invocation.
+     */
+    @State(Scope.Thread)
+    public static class Elements {
+        List<Element> elements;
+
+        @Setup(Level.Invocation)
+        public void copy(RuleBenchmark benchmark) {
+            elements = benchmark.template.clone().body().getAllElements();
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package loadtest;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import application.HeadlessRunner;
+
+/**
+ * Starts a {@link StubOracleServer} on this machine and runs the headless runner against it over
+ * HTTP, so the client, rate limiting and retries can be load tested without touching Oracle.
+ *
+ * Takes the stub's options, then the headless runner's options after {@code --}, e.g.
+ * {@code --latency 50 --errors 0.01 -- --ids ids.txt --rules rules.json}. The runner is pointed at
+ * the stub, signed in as a stub user, and the stub's summary is printed once the run ends.
+ */
+public class LoadTestMain {
+    private static final String USAGE = String.join(System.lineSeparator(),
+            "Usage: java -jar loadtest.jar [stub options] -- [runner options]",
+            "",
+            "  --answers N          The answers the stub has, ids 1 to N (default " + StubServerConfig.DEFAULT_ANSWER_COUNT + ")",
+            "  --size CHARS         Roughly how much html each answer has (default " + StubServerConfig.DEFAULT_ANSWER_SIZE + ")",
+            "  --latency MILLIS     The stub's median response time (default " + StubServerConfig.DEFAULT_MEDIAN_LATENCY_MILLIS + ")",
+            "  --jitter SIGMA       How widely the stub's response times spread, 0 for none (default "
+                    + StubServerConfig.DEFAULT_LATENCY_SIGMA + ")",
+            "  --errors RATE        The share of requests, 0 to 1, that fail with 500",
+            "  --throttle RATE      The share of requests, 0 to 1, that fail with 429",
+            "  --rate N             The most requests a minute the stub accepts, 0 for no limit",
+            "",
+            "The runner options are the same as the application's, without --host, --user and --mock.");
+
+    public static void main(String[] args) throws Exception {
+        StubServerConfig config = new StubServerConfig();
+        List<String> runnerArgs = new ArrayList<>();
+
+        try {
+            int i = 0;
+            for (; i < args.length && !args[i].equals("--"); i += 2) {
+                if (i + 1 >= args.length) throw new IllegalArgumentException(args[i] + " needs a value");
+                applyOption(config, args[i], args[i + 1]);
+            }
+            for (i++; i < args.length; i++) {
+                if (args[i].equals("--host") || args[i].equals("--user") || args[i].equals("--mock")) {
+                    throw new IllegalArgumentException(args[i] + " is set by the load test");
+                }
+                runnerArgs.add(args[i]);
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(HeadlessRunner.EXIT_USAGE);
+        }
+
+        int exitCode;
+        try (StubOracleServer stub = new StubOracleServer(0, config)) {
+            System.out.println("Stub Oracle server listening on " + stub.getUrl());
+
+            // The stub takes any user
+            runnerArgs.add("--host");
+            runnerArgs.add(stub.getUrl());
+            runnerArgs.add("--user");
+            runnerArgs.add("stub");
+
+            exitCode = HeadlessRunner.run(runnerArgs.toArray(new String[0]), "stub");
+            System.out.println(stub.getSummary());
+        }
+
+        System.exit(exitCode);
+    }
+
+    private static void applyOption(StubServerConfig config, String name, String value) {
+        try {
+            switch (name) {
+                case "--answers":
+                    config.setAnswerCount(Integer.parseInt(value));
+                    break;
+                case "--size":
+                    config.setAnswerSize(Integer.parseInt(value));
+                    break;
+                case "--latency":
+                    config.setMedianLatencyMillis(Integer.parseInt(value));
+                    break;
+                case "--jitter":
+                    config.setLatencySigma(Double.parseDouble(value));
+                    break;
+                case "--errors":
+                    config.setErrorRate(Double.parseDouble(value));
+                    break;
+                case "--throttle":
+                    config.setThrottleRate(Double.parseDouble(value));
+                    break;
+                case "--rate":
+                    config.setRequestsPerMinute(Integer.parseInt(value));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + name);
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " must be a number");
+        }
+    }
+}
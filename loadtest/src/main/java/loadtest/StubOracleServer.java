@@ -0,0 +1,318 @@
+package loadtest;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import model.network.RateLimiter;
+
+/**
+ * A local HTTP server that answers the same answer requests as Oracle, for load testing the real
+ * {@link data.dataSources.OracleDataSource} without touching a production site.
+ *
+ * It serves GET and PUT on {@code /services/rest/connect/v1.4/answers/{id}}. Answers that haven't been
+ * updated are generated from their id, so any number of them cost no memory; updated answers are kept
+ * and returned by later fetches. Requests need basic auth, but any user is accepted.
+ *
+ * Each response is delayed by a latency drawn from the configured distribution, and a configured share
+ * of requests fail with 500 or 429. The server also enforces its own rate limit, answering 429 straight
+ * away once it is exceeded, the way Oracle sheds load. Counts of requests, statuses and connections are
+ * kept so a run can show how the client behaved.
+ */
+public class StubOracleServer implements Closeable {
+    public static final String ENDPOINT = "/services/rest/connect/v1.4/answers/";
+    private static final String[] WORDS = {
+            "account", "billing", "power", "meter", "reading", "outage", "payment", "plan", "customer",
+            "service", "connection", "address", "invoice", "balance", "broadband", "support", "contact"
+    };
+
+    final private StubServerConfig config;
+    final private HttpServer server;
+    final private ExecutorService executor;
+    final private RateLimiter rateLimiter;
+
+    final private Map<Integer, String> updatedAnswers = new ConcurrentHashMap<>();
+    final private LongAdder requests = new LongAdder();
+    final private Map<Integer, LongAdder> statusCounts = new ConcurrentHashMap<>();
+    final private LongAdder rateLimited = new LongAdder(); // 429s from the rate limit rather than injected
+    final private Set<InetSocketAddress> connections = ConcurrentHashMap.newKeySet(); // By client port, so each is a TCP connection
+    final private AtomicInteger inFlight = new AtomicInteger();
+    final private AtomicInteger maxInFlight = new AtomicInteger();
+
+    /**
+     * Starts a server on the loopback address.
+     *
+     * @param port The port to listen on, or 0 for any free port.
+     * @param config How the server behaves. Changes after it starts are not seen.
+     * @throws IOException If the port can't be bound.
+     */
+    public StubOracleServer(int port, StubServerConfig config) throws IOException {
+        this.config = config;
+        this.rateLimiter = new RateLimiter(config.getRequestsPerMinute(), config.getBurst());
+
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 1024);
+        this.executor = newThreadPerTaskExecutor();
+        server.setExecutor(executor);
+        server.createContext(ENDPOINT, exchange -> {
+            try {
+                handle(exchange);
+            } finally {
+                exchange.close();
+            }
+        });
+        server.start();
+    }
+
+    /**
+     * The address to use as the Oracle host, e.g. {@code http://127.0.0.1:49152}.
+     */
+    public String getUrl() {
+        InetSocketAddress address = server.getAddress();
+        return "http://" + address.getAddress().getHostAddress() + ":" + address.getPort();
+    }
+
+    public long getRequestCount() {
+        return requests.sum();
+    }
+
+    /**
+     * The number of responses sent with an HTTP status.
+     */
+    public long getStatusCount(int status) {
+        LongAdder count = statusCounts.get(status);
+        return count == null ? 0 : count.sum();
+    }
+
+    /**
+     * The number of requests turned away by the server's rate limit.
+     */
+    public long getRateLimitedCount() {
+        return rateLimited.sum();
+    }
+
+    /**
+     * The number of TCP connections clients opened; far fewer than requests means connections are reused.
+     */
+    public int getConnectionCount() {
+        return connections.size();
+    }
+
+    /**
+     * The most requests the server was handling at once.
+     */
+    public int getMaxInFlight() {
+        return maxInFlight.get();
+    }
+
+    public int getUpdatedCount() {
+        return updatedAnswers.size();
+    }
+
+    /**
+     * Describes the requests served so far, one count per line.
+     */
+    public String getSummary() {
+        StringBuilder summary = new StringBuilder();
+        summary.append(String.format("Requests: %d over %d connections, at most %d at once", getRequestCount(), getConnectionCount(), getMaxInFlight()));
+        statusCounts.keySet().stream().sorted().forEach(status ->
+                summary.append(System.lineSeparator()).append(String.format("  %d: %d", status, getStatusCount(status))));
+        summary.append(System.lineSeparator()).append(String.format("Turned away by the rate limit: %d", getRateLimitedCount()));
+        summary.append(System.lineSeparator()).append(String.format("Answers updated: %d", getUpdatedCount()));
+        return summary.toString();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.increment();
+        connections.add(exchange.getRemoteAddress());
+        int current = inFlight.incrementAndGet();
+        maxInFlight.accumulateAndGet(current, Math::max);
+
+        try {
+            respond(exchange);
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    private void respond(HttpExchange exchange) throws IOException {
+        Integer id = parseId(exchange.getRequestURI().getPath());
+        if (id == null) {
+            send(exchange, 404, error("No such resource"));
+            return;
+        }
+        if (exchange.getRequestHeaders().getFirst("Authorization") == null) {
+            send(exchange, 401, error("Authentication is required"));
+            return;
+        }
+
+        // Shedding load before doing any work, like Oracle
+        if (!rateLimiter.tryAcquire()) {
+            rateLimited.increment();
+            exchange.getResponseHeaders().set("Retry-After", "1");
+            send(exchange, 429, error("Too many requests"));
+            return;
+        }
+
+        Random random = ThreadLocalRandom.current();
+        try {
+            Thread.sleep(config.sampleLatencyMillis(random));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt(); // Server stopping
+            return;
+        }
+
+        if (random.nextDouble() < config.getThrottleRate()) {
+            exchange.getResponseHeaders().set("Retry-After", "1");
+            send(exchange, 429, error("Too many requests"));
+            return;
+        }
+        if (random.nextDouble() < config.getErrorRate()) {
+            send(exchange, 500, error("Internal server error"));
+            return;
+        }
+
+        switch (exchange.getRequestMethod()) {
+            case "GET":
+                fetch(exchange, id);
+                break;
+            case "PUT":
+                update(exchange, id);
+                break;
+            default:
+                send(exchange, 405, error("Only GET and PUT are supported"));
+        }
+    }
+
+    private void fetch(HttpExchange exchange, int id) throws IOException {
+        if (!exists(id)) {
+            send(exchange, 404, error("Answer " + id + " was not found"));
+            return;
+        }
+
+        String html = updatedAnswers.get(id);
+        if (html == null) html = generateAnswer(id);
+
+        JSONObject answer = new JSONObject();
+        answer.put("id", id);
+        answer.put("lookupName", "Answer " + id);
+        answer.put("solution", html);
+        send(exchange, 200, answer.toString());
+    }
+
+    private void update(HttpExchange exchange, int id) throws IOException {
+        String body;
+        try (InputStream in = exchange.getRequestBody()) {
+            body = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+
+        if (!exists(id)) {
+            send(exchange, 404, error("Answer " + id + " was not found"));
+            return;
+        }
+
+        try {
+            JSONObject answer = new JSONObject(body);
+            if (answer.has("solution")) updatedAnswers.put(id, answer.getString("solution"));
+        } catch (JSONException e) {
+            send(exchange, 400, error("The body is not valid JSON: " + e.getMessage()));
+            return;
+        }
+
+        send(exchange, 200, null);
+    }
+
+    private boolean exists(int id) {
+        return (id >= 1 && id <= config.getAnswerCount()) || updatedAnswers.containsKey(id);
+    }
+
+    /**
+     * Generates the same html for an answer every time, about as long as the configured size.
+     */
+    private String generateAnswer(int id) {
+        Random random = new Random(id);
+        StringBuilder html = new StringBuilder(config.getAnswerSize() + 256);
+        html.append("<h2>Answer ").append(id).append("</h2>");
+
+        while (html.length() < config.getAnswerSize()) {
+            html.append("<p>");
+            for (int i = 0; i < 30; i++) html.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+            html.append("<a href=\"https://example.com/kb/").append(random.nextInt(1000)).append("\">more</a></p>");
+        }
+        return html.toString();
+    }
+
+    private void send(HttpExchange exchange, int status, String body) throws IOException {
+        statusCounts.computeIfAbsent(status, s -> new LongAdder()).increment();
+
+        if (body == null) {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static String error(String message) {
+        return new JSONObject().put("detail", message).toString();
+    }
+
+    /**
+     * The answer id at the end of the path, or null if the path isn't an answer.
+     */
+    private static Integer parseId(String path) {
+        if (!path.startsWith(ENDPOINT)) return null;
+
+        try {
+            return Integer.parseInt(path.substring(ENDPOINT.length()));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Creates an executor that starts a virtual thread for every request, so waiting out a response's
+     * latency doesn't hold a platform thread. Falls back to a cached pool before Java 21.
+     */
+    private static ExecutorService newThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            AtomicInteger count = new AtomicInteger();
+            return Executors.newCachedThreadPool(task -> {
+                Thread thread = new Thread(task, "stub-oracle-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+}
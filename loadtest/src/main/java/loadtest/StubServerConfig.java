@@ -0,0 +1,156 @@
+package loadtest;
+
+import java.util.Random;
+
+/**
+ * Settings for how a {@link StubOracleServer} behaves: how many answers it has, how long it takes to
+ * respond, how often it fails, and how many requests it accepts a minute.
+ */
+public class StubServerConfig {
+
+    /**
+     * How response times are spread around the median latency.
+     */
+    public enum LatencyDistribution {
+        /** Every response takes the median latency. */
+        FIXED,
+        /** Evenly spread between none and twice the median. */
+        UNIFORM,
+        /** Log-normally spread around the median, with a long tail of slow responses like a real server. */
+        LOG_NORMAL
+    }
+
+    public static final int DEFAULT_ANSWER_COUNT = 1_000_000;
+    public static final int DEFAULT_ANSWER_SIZE = 8 * 1024;
+    public static final int DEFAULT_MEDIAN_LATENCY_MILLIS = 50;
+    public static final double DEFAULT_LATENCY_SIGMA = 0.6; // A 99th percentile about 4 times the median
+
+    private int answerCount = DEFAULT_ANSWER_COUNT;
+    private int answerSize = DEFAULT_ANSWER_SIZE;
+    private LatencyDistribution latencyDistribution = LatencyDistribution.LOG_NORMAL;
+    private int medianLatencyMillis = DEFAULT_MEDIAN_LATENCY_MILLIS;
+    private double latencySigma = DEFAULT_LATENCY_SIGMA;
+    private double errorRate;
+    private double throttleRate;
+    private int requestsPerMinute;
+    private int burst; // 0 for a second's worth of requests
+
+    public int getAnswerCount() {
+        return answerCount;
+    }
+
+    /**
+     * Sets how many answers exist; ids from 1 up to the count can be fetched, others are not found.
+     */
+    public void setAnswerCount(int answerCount) {
+        this.answerCount = Math.max(0, answerCount);
+    }
+
+    public int getAnswerSize() {
+        return answerSize;
+    }
+
+    /**
+     * Sets roughly how many characters of html each answer has until it is updated.
+     */
+    public void setAnswerSize(int answerSize) {
+        this.answerSize = Math.max(0, answerSize);
+    }
+
+    public LatencyDistribution getLatencyDistribution() {
+        return latencyDistribution;
+    }
+
+    public void setLatencyDistribution(LatencyDistribution latencyDistribution) {
+        if (latencyDistribution == null) latencyDistribution = LatencyDistribution.FIXED;
+        this.latencyDistribution = latencyDistribution;
+    }
+
+    public int getMedianLatencyMillis() {
+        return medianLatencyMillis;
+    }
+
+    public void setMedianLatencyMillis(int medianLatencyMillis) {
+        this.medianLatencyMillis = Math.max(0, medianLatencyMillis);
+    }
+
+    public double getLatencySigma() {
+        return latencySigma;
+    }
+
+    /**
+     * Sets the spread of the log-normal distribution; larger values give a longer tail.
+     */
+    public void setLatencySigma(double latencySigma) {
+        this.latencySigma = Math.max(0, latencySigma);
+    }
+
+    public double getErrorRate() {
+        return errorRate;
+    }
+
+    /**
+     * Sets the share of requests, from 0 to 1, answered with a 500 Internal Server Error.
+     */
+    public void setErrorRate(double errorRate) {
+        this.errorRate = clampRate(errorRate);
+    }
+
+    public double getThrottleRate() {
+        return throttleRate;
+    }
+
+    /**
+     * Sets the share of requests, from 0 to 1, answered with a 429 Too Many Requests whatever the rate.
+     */
+    public void setThrottleRate(double throttleRate) {
+        this.throttleRate = clampRate(throttleRate);
+    }
+
+    public int getRequestsPerMinute() {
+        return requestsPerMinute;
+    }
+
+    /**
+     * Sets how many requests the server accepts a minute before answering 429, 0 for no limit.
+     */
+    public void setRequestsPerMinute(int requestsPerMinute) {
+        this.requestsPerMinute = Math.max(0, requestsPerMinute);
+    }
+
+    /**
+     * How many requests the server accepts at once within its rate limit.
+     */
+    public int getBurst() {
+        return burst > 0 ? burst : Math.max(1, requestsPerMinute / 60);
+    }
+
+    /**
+     * Sets how many requests the server accepts at once within its rate limit, 0 for as many as it
+     * accepts in a second.
+     */
+    public void setBurst(int burst) {
+        this.burst = Math.max(0, burst);
+    }
+
+    /**
+     * Picks how long a response takes.
+     *
+     * @param random The source of randomness, owned by the calling thread.
+     * @return The latency in milliseconds.
+     */
+    long sampleLatencyMillis(Random random) {
+        switch (latencyDistribution) {
+            case UNIFORM:
+                return Math.round(random.nextDouble() * 2 * medianLatencyMillis);
+            case LOG_NORMAL:
+                return Math.round(medianLatencyMillis * Math.exp(latencySigma * random.nextGaussian()));
+            default:
+                return medianLatencyMillis;
+        }
+    }
+
+    private static double clampRate(double rate) {
+        return Double.isNaN(rate) ? 0 : Math.max(0, Math.min(1, rate));
+    }
+}
@@ -9,6 +9,8 @@ import data.dataSources.IOracleDataSource;
 import data.dataSources.MockOracleDataSource;
 import data.repositories.IOracleRepository;
 import data.repositories.OracleRepository;
+import model.network.AdaptiveConcurrencyLimiter;
+import model.network.CircuitBreaker;
 import utils.AnswerManager;
 import utils.HtmlTransformationRuleManager;
 import view.panels.ControlPanel;
@@ -16,13 +18,17 @@ import view.panels.LoginPanel;
 import view.panels.TabbedAnswerPanel;
 import view.panels.TransformationPanel;
 
+import javax.swing.SwingUtilities;
+
 public class App {
     private Gui gui;
 
     public App() {
     	// Initialise data
+    	AdaptiveConcurrencyLimiter concurrencyLimiter = new AdaptiveConcurrencyLimiter();
     	IOracleDataSource oracleDataSource = new MockOracleDataSource(null);
-    	IOracleRepository oracleRepository = new OracleRepository(oracleDataSource);
+    	CircuitBreaker circuitBreaker = new CircuitBreaker();
+    	IOracleRepository oracleRepository = new OracleRepository(oracleDataSource, circuitBreaker, concurrencyLimiter);
     	
     	// Utils
     	HtmlTransformationRuleManager ruleManager = new HtmlTransformationRuleManager();
@@ -34,6 +40,14 @@ public class App {
         TransformationPanel transformationPanel = new TransformationPanel();
         TabbedAnswerPanel tabbedAnswerPanel = new TabbedAnswerPanel();
         
+        // Showing the concurrency limit as it adapts
+        controlPanel.setConcurrencyLimit(concurrencyLimiter.getLimit());
+        concurrencyLimiter.setCallback(limit -> SwingUtilities.invokeLater(() -> controlPanel.setConcurrencyLimit(limit)));
+        
+        // Showing when the circuit breaker pauses requests
+        controlPanel.setCircuitState(circuitBreaker.getState().getName(), circuitBreaker.getTripCount());
+        circuitBreaker.setCallback((state, trips) -> SwingUtilities.invokeLater(() -> controlPanel.setCircuitState(state.getName(), trips)));
+        
         // Initialise controllers
         LoginController loginController = new LoginController(loginPanel, oracleRepository);
         NetworkConfigController networkConfigController = new NetworkConfigController(oracleRepository);
@@ -0,0 +1,376 @@
+package application;
+
+import java.io.Console;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import data.dataSources.JdkOracleDataSource;
+import data.dataSources.IOracleDataSource;
+import data.dataSources.MockOracleDataSource;
+import data.dataSources.OracleDataSource;
+import data.repositories.OracleRepository;
+import data.storage.AnswerSnapshotStore;
+import data.storage.ProgressJournal;
+import data.storage.TransformIndex;
+import model.answers.states.Answer;
+import model.answers.states.AnswerState;
+import model.answers.states.ErrorAnswerState;
+import model.network.AdaptiveConcurrencyLimiter;
+import model.network.CircuitBreaker;
+import model.network.NetworkConfig;
+import model.network.User;
+import model.pipeline.PipelineConfig;
+import model.pipeline.PipelineConfig.ExecutionMode;
+import model.rules.CompiledRuleSet;
+import utils.AnswerManager;
+import utils.AnswerPipeline;
+import utils.DiffReportWriter;
+import utils.IdFileReader;
+import utils.RuleFileParser;
+import utils.TransformCache;
+
+/**
+ * Runs the answers in an id file through the pipeline without the GUI, printing progress as it goes
+ * and a summary at the end. Used for scheduled runs on machines with no display.
+ *
+ * The run resumes from the journal next to the id file and keeps snapshots of the html, the same as
+ * a run from the GUI. Transforms are cached, on disk next to the snapshots, so html that was already
+ * transformed with the same rules isn't transformed again.
+ */
+public class HeadlessRunner {
+    private static final long PROGRESS_INTERVAL_SECONDS = 5;
+
+    public static final int EXIT_OK = 0;
+    public static final int EXIT_ANSWER_ERRORS = 1; // The run finished but some answers failed
+    public static final int EXIT_USAGE = 2;
+    public static final int EXIT_FAILED = 3; // The run couldn't start or stopped part way
+
+    private static final String USAGE = String.join(System.lineSeparator(),
+            "Usage: java application.Main --ids FILE --rules FILE [options]",
+            "",
+            "  --ids FILE               The answer ids to process, one per line",
+            "  --rules FILE             The transformation rules, as a JSON array",
+            "  --host URL               The Oracle site, e.g. https://example.custhelp.com",
+            "  --user NAME              The Oracle user to sign in as",
+            "  --rate N                 The most requests to send per minute, 0 for no limit",
+            "  --burst N                The requests that can be sent at once within the rate",
+            "  --parallelism N          The most fetches, and updates, in flight at once (default "
+                    + PipelineConfig.DEFAULT_MAX_CONCURRENT_REQUESTS + ")",
+            "  --transform-workers N    The threads transforming answers (default "
+                    + PipelineConfig.DEFAULT_TRANSFORM_WORKERS + ")",
+            "  --dry-run REPORT         Write the changes to REPORT instead of updating Oracle",
+            "  --no-resume              Process every answer, ignoring the journal",
+            "  --no-snapshots           Don't keep local copies of the html",
+            "  --no-cache               Transform every answer, even html transformed before",
+            "  --mock                   Use the built in mock answers instead of Oracle",
+            "  --jdk-client             Send requests with the JDK HTTP client, over HTTP/2 where an https host offers it",
+            "",
+            "--host and --user are required unless --mock is given. The password is read from $ORACLE_PASSWORD,",
+            "or asked for when run from a terminal.");
+
+    final private Map<String, String> options;
+    final private String password; // null to read it from the environment or the console
+
+    // Only holds the latest state of each answer, its counts give the progress
+    final private AnswerManager answerManager = new AnswerManager();
+    private volatile int total = -1; // Unknown until the whole id file is read
+
+    /**
+     * Constructs a runner from parsed options, reading the password from $ORACLE_PASSWORD or the console.
+     *
+     * @param options The option names, without their dashes, mapped to their values ("" for flags).
+     */
+    public HeadlessRunner(Map<String, String> options) {
+        this(options, null);
+    }
+
+    /**
+     * Constructs a runner from parsed options.
+     *
+     * @param options The option names, without their dashes, mapped to their values ("" for flags).
+     * @param password The password to sign in with, or null to read it from $ORACLE_PASSWORD or the console.
+     */
+    public HeadlessRunner(Map<String, String> options, String password) {
+        this.options = options;
+        this.password = password;
+    }
+
+    /**
+     * Parses the arguments and runs.
+     *
+     * @param args The command line arguments.
+     * @return The process exit code.
+     */
+    public static int run(String[] args) {
+        return run(args, null);
+    }
+
+    /**
+     * Parses the arguments and runs, signing in with the given password.
+     *
+     * @param args The command line arguments.
+     * @param password The password to sign in with, or null to read it from $ORACLE_PASSWORD or the console.
+     * @return The process exit code.
+     */
+    public static int run(String[] args, String password) {
+        HeadlessRunner runner;
+        try {
+            runner = new HeadlessRunner(parseArgs(args), password);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            return EXIT_USAGE;
+        }
+
+        try {
+            return runner.run();
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            return EXIT_USAGE;
+        } catch (IOException e) {
+            System.err.println("The run stopped: " + e.getMessage());
+            return EXIT_FAILED;
+        } catch (InterruptedException e) {
+            System.err.println("The run was interrupted");
+            return EXIT_FAILED;
+        }
+    }
+
+    /**
+     * Processes the answers.
+     *
+     * @return The process exit code.
+     * @throws IOException If the id file, rule file, journal, snapshots or report can't be used.
+     * @throws InterruptedException If interrupted while waiting for the pipeline.
+     */
+    public int run() throws IOException, InterruptedException {
+        File idFile = new File(require("ids"));
+        String rules = require("rules");
+        NetworkConfig networkConfig = createNetworkConfig(); // Checked before anything is read, so a bad sign in fails straight away
+
+        if (!idFile.isFile()) throw new IOException("The id file " + idFile + " doesn't exist");
+        CompiledRuleSet ruleSet = CompiledRuleSet.compile(RuleFileParser.getRules(new File(rules)));
+
+        // Setting up the repository the same way as the GUI
+        AdaptiveConcurrencyLimiter concurrencyLimiter = new AdaptiveConcurrencyLimiter();
+        IOracleDataSource source = createDataSource(networkConfig);
+        CircuitBreaker circuitBreaker = new CircuitBreaker();
+        OracleRepository repository = new OracleRepository(source, circuitBreaker, concurrencyLimiter);
+        circuitBreaker.setCallback((state, trips) -> System.out.println("Circuit " + state.getName().toLowerCase() + " (trips: " + trips + ")"));
+
+        PipelineConfig config = new PipelineConfig();
+        config.setExecutionMode(ExecutionMode.VIRTUAL_THREADS);
+        config.setMaxConcurrentRequests(getInt("parallelism", PipelineConfig.DEFAULT_MAX_CONCURRENT_REQUESTS));
+        config.setTransformWorkers(getInt("transform-workers", PipelineConfig.DEFAULT_TRANSFORM_WORKERS));
+
+        boolean dryRun = options.containsKey("dry-run");
+        ProgressJournal journal = dryRun || options.containsKey("no-resume") ? null : ProgressJournal.open(ProgressJournal.forIdFile(idFile));
+        AnswerSnapshotStore snapshots = null;
+        DiffReportWriter report = null;
+        TransformCache cache = options.containsKey("no-cache") ? null : new TransformCache(TransformCache.DEFAULT_MAX_BYTES);
+        TransformIndex transforms = null;
+
+        System.out.println("Processing " + idFile + " with " + ruleSet.size() + " rules"
+                + (dryRun ? " (dry run)" : "") + (journal != null && journal.getReplayedCount() > 0 ? ", resuming from " + journal.getFile() : ""));
+
+        ScheduledExecutorService progress = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "headless-progress");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long start = System.nanoTime();
+
+        try {
+            if (!options.containsKey("no-snapshots")) snapshots = AnswerSnapshotStore.open(AnswerSnapshotStore.defaultDirectory());
+            if (cache != null && snapshots != null) {
+                transforms = TransformIndex.open(snapshots.getDirectory());
+                cache.setDiskTier(transforms, snapshots);
+            }
+            if (dryRun) report = new DiffReportWriter(Paths.get(require("dry-run")), ruleSet);
+
+            progress.scheduleAtFixedRate(() -> printProgress(start, concurrencyLimiter.getLimit()),
+                    PROGRESS_INTERVAL_SECONDS, PROGRESS_INTERVAL_SECONDS, TimeUnit.SECONDS);
+
+            AnswerPipeline pipeline = new AnswerPipeline(repository, ruleSet, answerManager, this::onAnswerChanged, config, journal, snapshots, report, cache);
+            pipeline.start();
+            try {
+                // Fetching starts with the first id, while the rest of the file is still being read
+                IdFileReader.Result ids = IdFileReader.read(idFile, pipeline::submit);
+                total = ids.getIds().size();
+                reportIdProblems(ids);
+
+                pipeline.close();
+                pipeline.await();
+            } finally {
+                pipeline.stop();
+            }
+        } finally {
+            progress.shutdownNow();
+            if (journal != null) journal.close();
+            if (transforms != null) transforms.close();
+            if (snapshots != null) snapshots.close();
+            if (report != null) report.close();
+            answerManager.getHtmlArena().close(); // Nothing reads the html after the run
+        }
+
+        printSummary(start, circuitBreaker.getTripCount(), report, cache);
+        return answerManager.getCount("Error") == 0 ? EXIT_OK : EXIT_ANSWER_ERRORS;
+    }
+
+    /**
+     * Logs answers that failed.
+     */
+    private void onAnswerChanged(Answer answer) {
+        AnswerState state = answer.getState();
+        if (state instanceof ErrorAnswerState) System.err.println("Answer " + answer.getId() + " failed: " + state.getDescription());
+    }
+
+    private void printProgress(long start, int concurrencyLimit) {
+        long updated = answerManager.getCount("Finished"), unchanged = answerManager.getCount("Unchanged"), errors = answerManager.getCount("Error");
+        long done = updated + unchanged + errors;
+        double seconds = (System.nanoTime() - start) / 1e9;
+        int total = this.total;
+
+        String count = total < 0 ? done + " answers (still reading ids)"
+                : String.format("%d/%d answers (%.0f%%)", done, total, total == 0 ? 100.0 : done * 100.0 / total);
+        System.out.println(String.format("%s, %.1f answers/s, %d updated, %d unchanged, %d errors, %d concurrent requests",
+                count, done / seconds, updated, unchanged, errors, concurrencyLimit));
+    }
+
+    /**
+     * Warns about repeated and malformed lines in the id file; the valid ids are still processed.
+     */
+    private static void reportIdProblems(IdFileReader.Result ids) {
+        if (ids.getDuplicateCount() > 0) System.err.println("Skipped " + ids.getDuplicateCount() + " repeated ids");
+        if (ids.getMalformedCount() == 0) return;
+
+        System.err.println("Skipped " + ids.getMalformedCount() + " lines that aren't answer ids:");
+        ids.getMalformedLines().forEach(line -> System.err.println("  " + line));
+        if (ids.getMalformedCount() > ids.getMalformedLines().size()) {
+            System.err.println("  ... and " + (ids.getMalformedCount() - ids.getMalformedLines().size()) + " more");
+        }
+    }
+
+    private void printSummary(long start, int circuitTrips, DiffReportWriter report, TransformCache cache) {
+        long updated = answerManager.getCount("Finished"), unchanged = answerManager.getCount("Unchanged"), errors = answerManager.getCount("Error");
+        long done = updated + unchanged + errors;
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.println(String.format("Finished %d answers in %.1f s (%.1f answers/s)", done, seconds, seconds > 0 ? done / seconds : 0));
+        System.out.println(String.format("  %s: %d", report != null ? "Would change" : "Updated", updated));
+        System.out.println(String.format("  Unchanged: %d", unchanged));
+        System.out.println(String.format("  Errors: %d", errors));
+        System.out.println(String.format("  Circuit breaker trips: %d", circuitTrips));
+        if (cache != null) System.out.println(String.format("  Cached transforms used: %d of %d", cache.getHitCount(), cache.getHitCount() + cache.getMissCount()));
+        if (report != null) System.out.println("  Report: " + report.getFile());
+    }
+
+    /**
+     * Builds the network settings from the options. Runs against Oracle need a valid host, a user and
+     * a password; the mock answers need none of them.
+     */
+    private NetworkConfig createNetworkConfig() {
+        int rate = getInt("rate", 0);
+        int burst = getInt("burst", NetworkConfig.DEFAULT_BURST);
+        if (options.containsKey("mock")) return new NetworkConfig(null, options.get("host"), rate, burst);
+
+        String host = require("host");
+        try {
+            URI uri = new URI(host);
+            if (!"https".equalsIgnoreCase(uri.getScheme()) && !"http".equalsIgnoreCase(uri.getScheme()) || uri.getHost() == null) {
+                throw new IllegalArgumentException("--host must be an http or https URL, e.g. https://example.custhelp.com");
+            }
+        } catch (URISyntaxException e) {
+            throw new IllegalArgumentException("--host must be an http or https URL, e.g. https://example.custhelp.com");
+        }
+
+        String username = require("user");
+        return new NetworkConfig(new User(username, readPassword(username)), host, rate, burst);
+    }
+
+    /**
+     * The password given to the runner, then $ORACLE_PASSWORD, then one typed at the console. Never
+     * taken from the command line, where other users can see it in the process list.
+     */
+    private String readPassword(String username) {
+        if (password != null) return password;
+
+        String fromEnvironment = System.getenv("ORACLE_PASSWORD");
+        if (fromEnvironment != null && !fromEnvironment.isEmpty()) return fromEnvironment;
+
+        Console console = System.console();
+        if (console == null) throw new IllegalArgumentException("Set $ORACLE_PASSWORD to the password of " + username);
+
+        char[] typed = console.readPassword("Password for %s: ", username);
+        if (typed == null || typed.length == 0) throw new IllegalArgumentException("A password is required");
+        return new String(typed);
+    }
+
+    /**
+     * Creates the data source requests are sent with: the mock answers, the JDK HTTP client or Unirest.
+     */
+    private IOracleDataSource createDataSource(NetworkConfig networkConfig) {
+        if (options.containsKey("mock")) {
+            if (options.containsKey("jdk-client")) throw new IllegalArgumentException("--mock and --jdk-client can't be used together");
+            return new MockOracleDataSource(networkConfig);
+        }
+
+        return options.containsKey("jdk-client") ? new JdkOracleDataSource(networkConfig) : new OracleDataSource(networkConfig);
+    }
+
+    private String require(String name) {
+        String value = options.get(name);
+        if (value == null || value.isEmpty()) throw new IllegalArgumentException("--" + name + " is required");
+        return value;
+    }
+
+    private int getInt(String name, int defaultValue) {
+        String value = options.get(name);
+        if (value == null) return defaultValue;
+
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("--" + name + " must be a whole number");
+        }
+    }
+
+    /**
+     * Parses {@code --name value} pairs and {@code --flag} switches.
+     *
+     * @param args The command line arguments.
+     * @return The option names mapped to their values, "" for flags.
+     * @throws IllegalArgumentException If an option is unknown or is missing its value.
+     */
+    static Map<String, String> parseArgs(String[] args) {
+        List<String> valued = List.of("ids", "rules", "host", "user", "rate", "burst", "parallelism", "transform-workers", "dry-run");
+        List<String> flags = List.of("no-resume", "no-snapshots", "no-cache", "mock", "jdk-client");
+
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--")) throw new IllegalArgumentException("Unexpected argument \"" + args[i] + "\"");
+
+            String name = args[i].substring(2);
+            if (flags.contains(name)) {
+                options.put(name, "");
+            } else if (valued.contains(name)) {
+                if (i + 1 >= args.length) throw new IllegalArgumentException("--" + name + " needs a value");
+                options.put(name, args[++i]);
+            } else {
+                throw new IllegalArgumentException("Unknown option --" + name);
+            }
+        }
+
+        return options;
+    }
+}
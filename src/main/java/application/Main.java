@@ -6,6 +6,12 @@ import com.formdev.flatlaf.FlatDarkLaf;
 
 public class Main {
 	public static void main(String[] a) {
+		// Running without the GUI when given a batch to process
+		if (a.length > 0) {
+			System.setProperty("java.awt.headless", "true");
+			System.exit(HeadlessRunner.run(a));
+		}
+
 		SwingUtilities.invokeLater(() -> {
 			FlatDarkLaf.setup();
 			
@@ -1,27 +1,31 @@
 package controller;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
 import java.util.List;
 
 import javax.swing.JOptionPane;
 
-import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
-
-import com.mashape.unirest.http.exceptions.UnirestException;
-
 import data.repositories.IOracleRepository;
-import model.answers.states.Answer;
-import model.answers.states.CompleteAnswerState;
-import model.answers.states.ErrorAnswerState;
-import model.answers.states.LoadingAnswerState;
-import model.answers.states.UpdatingAnswerState;
-import model.network.OracleResponse;
+import data.storage.AnswerSnapshotStore;
+import data.storage.ProgressJournal;
+import data.storage.TransformIndex;
+import model.network.NetworkConfig;
+import model.pipeline.PipelineConfig;
+import model.pipeline.PipelineConfig.ExecutionMode;
+import model.rules.CompiledRuleSet;
 import model.rules.HtmlTransformationRule;
 import utils.AnswerManager;
-import utils.DocumentParser;
-import utils.HtmlRuleProcessor;
+import utils.AnswerPipeline;
+import utils.DiffReportWriter;
+import utils.IdFileReader;
+import utils.IntList;
 import utils.HtmlTransformationRuleManager;
+import utils.TransformCache;
 import view.panels.ControlPanel;
 
 import javax.swing.*;
@@ -40,6 +44,8 @@ public class CommandController {
     final private NetworkConfigController networkConfigController;
     final private AnswerManager answerManager;
     final private HtmlTransformationRuleManager ruleManager;
+    private File idFile; // The file the current answers were loaded from
+    final private TransformCache transformCache = new TransformCache(TransformCache.DEFAULT_MAX_BYTES); // Kept between runs
 
     /**
      * Constructs a {@code CommandController} with the required dependencies.
@@ -98,14 +104,35 @@ public class CommandController {
         controlPanel.setRunStopButtonEnabled(false);
 
         // Processing in a background thread using SwingWorker
+        File runIdFile = idFile;
+        Path reportFile = controlPanel.isDryRun() ? createReportPath(runIdFile) : null;
         new SwingWorker<Void, Void>() {
             @Override
-            protected Void doInBackground() {
-                List<Answer> answers = answerManager.getAnswers().stream()
-                        .map(a -> new Answer(a.getId(), new LoadingAnswerState(a.getState().getDocument(), null)))
-                        .toList();
-
-                answers.forEach(CommandController.this::processAnswer);
+            protected Void doInBackground() throws InterruptedException, IOException {
+                IntList answerIds = answerManager.getIds();
+
+                // Compiling the rules once for the whole run
+                List<HtmlTransformationRule> rules = ruleManager.getRules().stream().map(r -> (HtmlTransformationRule) r).toList();
+                CompiledRuleSet ruleSet = CompiledRuleSet.compile(rules);
+
+                // Resuming from the journal kept next to the id file, and keeping copies of the html for rollbacks.
+                // A dry run updates nothing, so it neither resumes from nor adds to the journal.
+                ProgressJournal journal = runIdFile == null || reportFile != null ? null : ProgressJournal.open(ProgressJournal.forIdFile(runIdFile));
+                DiffReportWriter report = reportFile == null ? null : new DiffReportWriter(reportFile, ruleSet);
+
+                try (AnswerSnapshotStore snapshots = AnswerSnapshotStore.open(AnswerSnapshotStore.defaultDirectory());
+                        TransformIndex transforms = TransformIndex.open(snapshots.getDirectory())) {
+                    // Reusing transforms from earlier runs, which are kept with the snapshots
+                    transformCache.setDiskTier(transforms, snapshots);
+
+                    // Fetching, transforming and updating the answers in parallel stages
+                    AnswerPipeline pipeline = new AnswerPipeline(oracleRepository, ruleSet, answerManager, tabbedAnswerController::answerChanged, createPipelineConfig(), journal, snapshots, report, transformCache);
+                    pipeline.run(answerIds);
+                } finally {
+                    transformCache.setDiskTier(null, null);
+                    if (journal != null) journal.close();
+                    if (report != null) report.close();
+                }
                 return null;
             }
 
@@ -114,127 +141,98 @@ public class CommandController {
                 // Re-enable the button after processing
                 controlPanel.setRunning(false);
                 controlPanel.setRunStopButtonEnabled(true);
+
+                try {
+                    get();
+                    if (reportFile != null) {
+                        JOptionPane.showMessageDialog(controlPanel, "The dry run report was written to " + reportFile, "Dry run", JOptionPane.INFORMATION_MESSAGE);
+                    }
+                } catch (Exception e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    JOptionPane.showMessageDialog(controlPanel, "The run stopped: " + cause.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                }
             }
         }.execute(); // Start the background process
     }
 
     /**
-     * Processes the given answer by fetching, transforming, and updating it.
-     * 
-     * @param answer The answer to process.
+     * Picks a file for a dry run report: next to the id file if there is one, otherwise in the
+     * user's home directory.
+     *
+     * @param runIdFile The file the answers were loaded from, or null.
+     * @return The report's path, unique to the current second.
      */
-    private void processAnswer(Answer answer) {
-    	// Getting list of rules
-        List<HtmlTransformationRule> rules = ruleManager.getRules().stream().map(r -> (HtmlTransformationRule) r).toList();
-
-        // Rule processor
-        HtmlRuleProcessor processor = new HtmlRuleProcessor();
-        Answer newAnswer;
-
-        // Fetching answer
-        newAnswer = fetchAnswerFromRepository(answer);
-
-        // Checking for error state
-        if (newAnswer.getState() instanceof ErrorAnswerState) {
-            return; // Stop if an error occurred
-        }
+    private static Path createReportPath(File runIdFile) {
+        String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"));
+        if (runIdFile != null) return Paths.get(runIdFile.getPath() + ".dry-run-" + timestamp + ".txt");
 
-        // Apply the transformation rules to the answer's document
-        Document transformedDoc = applyTransformationRules(newAnswer, rules, processor);
-
-        // Update the document and state
-        updateAnswerState(newAnswer, transformedDoc, "The knowledge base is being updated");
-
-        // Update the answer in the Oracle repository
-        updateAnswerInRepository(newAnswer, transformedDoc);
+        return Paths.get(System.getProperty("user.home"), ".oracle-html-transformer", "dry-run-" + timestamp + ".txt");
     }
 
     /**
-     * Fetches the answer from the Oracle repository and returns the updated answer state.
-     * 
-     * @param answer The answer to fetch.
-     * @return The updated answer with the fetched state.
+     * Creates the pipeline settings for a run, sending each request on its own virtual thread with
+     * as many requests in flight as the network settings allow.
+     *
+     * @return The pipeline settings.
      */
-    private Answer fetchAnswerFromRepository(Answer answer) {
-        Answer newAnswer;
-        try {
-            OracleResponse response = oracleRepository.fetchAnswer(answer.getId());
-            newAnswer = new Answer(answer.getId(), new UpdatingAnswerState(Jsoup.parse(response.html), null));
-            answerManager.setAnswer(newAnswer);
-            tabbedAnswerController.updateTabs();
-        } catch (UnirestException e) {
-            newAnswer = new Answer(answer.getId(), new ErrorAnswerState(null, e.getMessage()));
-            answerManager.setAnswer(newAnswer);
-            tabbedAnswerController.updateTabs();
+    private PipelineConfig createPipelineConfig() {
+        PipelineConfig config = new PipelineConfig();
+        config.setExecutionMode(ExecutionMode.VIRTUAL_THREADS);
+
+        NetworkConfig networkConfig = oracleRepository.getNetworkConfig();
+        if (networkConfig != null && networkConfig.getMaxConcurrentRequests() > 0) {
+            config.setMaxConcurrentRequests(networkConfig.getMaxConcurrentRequests());
         }
-        return newAnswer;
-    }
 
-    /**
-     * Applies transformation rules to the answer's document.
-     * 
-     * @param answer The answer to transform.
-     * @param rules The list of transformation rules.
-     * @param processor The rule processor to apply the transformations.
-     * @return The transformed document.
-     */
-    private Document applyTransformationRules(Answer answer, List<HtmlTransformationRule> rules, HtmlRuleProcessor processor) {
-        Document doc = processor.process(answer.getState().getDocument(), rules);
-        return doc;
+        return config;
     }
 
     /**
-     * Updates the answer's state with the transformed document and a new message.
-     * 
-     * @param answer The answer to update.
-     * @param doc The transformed document.
-     * @param message The status message to set for the answer.
+     * Loads answers from the file on a background thread and adds them to the tabbed answer
+     * controller, waiting to be run. Running is disabled until the file has been read.
+     *
+     * @param file The file containing the answers to load.
      */
-    private void updateAnswerState(Answer answer, Document doc, String message) {
-        Answer newAnswer = new Answer(answer.getId(), new LoadingAnswerState(doc, message));
-        answerManager.setAnswer(newAnswer);
-        tabbedAnswerController.updateTabs();
-    }
+    private void loadAnswersFromFile(File file) {
+        controlPanel.setRunStopButtonEnabled(false);
 
-    /**
-     * Updates the answer in the Oracle repository with the transformed document.
-     * 
-     * @param answer The answer to update in the repository.
-     * @param doc The transformed document.
-     */
-    private void updateAnswerInRepository(Answer answer, Document doc) {
-    	Answer newAnswer;
-        try {
-            doc.outputSettings().prettyPrint(false); // Turning pretty print off so the html is displayed in the original format
-            
-            // Update answer html
-            oracleRepository.updateAnswer(answer.getId(), doc.toString());
-            newAnswer = new Answer(answer.getId(), new CompleteAnswerState(doc, null)); // Setting finished state
-        } catch (Exception e) {
-            newAnswer = new Answer(answer.getId(), new ErrorAnswerState(null, "An error occurred while updating the knowledge base"));
-        }
-        
-        // Updating manager and tabs
-        answerManager.setAnswer(newAnswer);
-        tabbedAnswerController.updateTabs();
+        new SwingWorker<IdFileReader.Result, Void>() {
+            @Override
+            protected IdFileReader.Result doInBackground() throws IOException {
+                IdFileReader.Result result = IdFileReader.read(file);
+                tabbedAnswerController.addAnswers(result.getIds());
+                return result;
+            }
+
+            @Override
+            protected void done() {
+                if (!controlPanel.isRunning()) controlPanel.setRunStopButtonEnabled(true); // A run re-enables it when it ends
+
+                try {
+                    IdFileReader.Result result = get();
+                    idFile = file;
+                    if (result.getMalformedCount() > 0) showMalformedLines(result);
+                } catch (Exception e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    JOptionPane.showMessageDialog(controlPanel, "Failed to load file: " + cause.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        }.execute();
     }
 
     /**
-     * Loads answers from the file and sets them in the tabbed answer controller.
-     * 
-     * Gives the answers a LoadingAnswerState initially
+     * Lists the lines of an id file that weren't answer ids, which were left out of the answers.
      *
-     * @param file The file containing the answers to load.
+     * @param result The result of reading the file.
      */
-    private void loadAnswersFromFile(File file) {
-        try {
-            List<Integer> answerIds = DocumentParser.getIds(file).stream().map(Integer::parseInt).toList();
-            List<Answer> answers = answerIds.stream().map(id -> new Answer(id, new LoadingAnswerState(null, null))).toList();
+    private void showMalformedLines(IdFileReader.Result result) {
+        List<String> lines = result.getMalformedLines();
+        StringBuilder message = new StringBuilder("Skipped " + result.getMalformedCount() + " lines that aren't answer ids:\n");
 
-            tabbedAnswerController.setAnswers(answers);
-        } catch (Exception e) {
-            JOptionPane.showMessageDialog(controlPanel, "Failed to load file: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
-        }
+        lines.stream().limit(10).forEach(line -> message.append(line).append('\n'));
+        if (result.getMalformedCount() > 10) message.append("... and ").append(result.getMalformedCount() - 10).append(" more");
+
+        JOptionPane.showMessageDialog(controlPanel, message.toString(), "Warning", JOptionPane.WARNING_MESSAGE);
     }
 }
 
@@ -56,7 +56,7 @@ public class NetworkConfigController {
      */
     public void setHost(String host) {
         NetworkConfig config = repository.getNetworkConfig();
-        repository.setNetworkConfig(new NetworkConfig(config.getUser(), host, config.getMaxRequestsPerMinute()));
+        repository.setNetworkConfig(new NetworkConfig(config.getUser(), host, config.getMaxRequestsPerMinute(), config.getBurst(), config.getMaxConcurrentRequests()));
     }
 
     /**
@@ -75,7 +75,7 @@ public class NetworkConfigController {
      */
     public void setUser(User user) {
         NetworkConfig config = repository.getNetworkConfig();
-        repository.setNetworkConfig(new NetworkConfig(user, config.getHost(), config.getMaxRequestsPerMinute()));
+        repository.setNetworkConfig(new NetworkConfig(user, config.getHost(), config.getMaxRequestsPerMinute(), config.getBurst(), config.getMaxConcurrentRequests()));
     }
 
     /**
@@ -94,7 +94,7 @@ public class NetworkConfigController {
      */
     public void setMaxRequestsPerMinute(int maxRequestsPerMinute) {
         NetworkConfig config = repository.getNetworkConfig();
-        repository.setNetworkConfig(new NetworkConfig(config.getUser(), config.getHost(), maxRequestsPerMinute));
+        repository.setNetworkConfig(new NetworkConfig(config.getUser(), config.getHost(), maxRequestsPerMinute, config.getBurst(), config.getMaxConcurrentRequests()));
     }
 
     /**
@@ -1,24 +1,40 @@
 package controller;
 
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
-import java.util.stream.Collectors;
 
 import javax.swing.SwingUtilities;
 
 import model.answers.states.Answer;
+import model.answers.states.AnswerState;
+import model.answers.states.LoadingAnswerState;
 import utils.AnswerManager;
-import view.panels.AnswerPanel;
+import utils.IntList;
+import utils.UpdateCoalescer;
+import view.panels.AnswerTableModel;
+import view.panels.AnswerTablePanel;
 import view.panels.TabbedAnswerPanel;
 
 /**
  * The TabbedAnswerController class is responsible for managing the tabbed answer panel
  * and coordinating the display of answers based on their state. It interacts with the
  * TabbedAnswerPanel to update the UI and the AnswerManager to retrieve and set answers.
+ *
+ * Each tab shows a table backed by an {@link AnswerTableModel}, so an answer changing state only
+ * updates its own rows rather than rebuilding the tabs. Changes from the pipeline go through an
+ * {@link UpdateCoalescer}, so the tabs are refreshed at most every 100ms however fast answers change.
  */
 public class TabbedAnswerController {
+    private static final String ALL_TAB = "All";
+    private static final String[] STATE_TABS = {"Finished", "Updating", "Waiting", "Unchanged", "Error"};
+    private static final int REBUILD_THRESHOLD = 50_000; // Larger batches rebuild the tabs rather than firing an event per row
+    private static final AnswerState WAITING = new LoadingAnswerState(null, null); // Shared by every answer loaded from a file
+
     private TabbedAnswerPanel tabbedAnswerPanel;
     private AnswerManager answerManager;
+    final private List<AnswerTableModel> models = new ArrayList<>();
+    final private IntList answerIds = new IntList(); // The loaded answers, in the order they're shown
+    final private UpdateCoalescer coalescer;
 
     /**
      * Constructs a new TabbedAnswerController with the TabbedAnswerPanel and AnswerManager.
@@ -29,36 +45,78 @@ public class TabbedAnswerController {
     public TabbedAnswerController(TabbedAnswerPanel tabbedAnswerPanel, AnswerManager answerManager) {
         this.tabbedAnswerPanel = tabbedAnswerPanel;
         this.answerManager = answerManager;
+
+        addTab(ALL_TAB, null);
+        for (String stateName : STATE_TABS) addTab(stateName, stateName);
+        updateTabCounts();
+
+        this.coalescer = new UpdateCoalescer(UpdateCoalescer.DEFAULT_INTERVAL_MILLIS, this::applyChanges);
+    }
+
+    private void addTab(String tabName, String stateName) {
+        AnswerTableModel model = new AnswerTableModel(answerManager, stateName);
+        models.add(model);
+        tabbedAnswerPanel.setTabTable(tabName, new AnswerTablePanel(model));
     }
 
     /**
-     * Updates the content of each tab in the tabbed answer panel based on the current state of the answers.
-     * Answers are grouped by their state (e.g., "Finished", "Updating", "Waiting", "Error"), and the corresponding
-     * tab is updated with the relevant answers.
+     * Rebuilds every tab from the current state of the answers.
      */
     public void updateTabs() {
-        List<Answer> answers = answerManager.getAnswers();
-        Map<String, List<Answer>> groupedAnswers = answers.stream()
-            .collect(Collectors.groupingBy(answer -> answer.getState().getName()));
-
-        // Update the tabbed UI in the Event Dispatch Thread
         SwingUtilities.invokeLater(() -> {
-            tabbedAnswerPanel.updateTabContent("All", new AnswerPanel(answers));
-            tabbedAnswerPanel.updateTabContent("Finished", new AnswerPanel(groupedAnswers.getOrDefault("Finished", List.of())));
-            tabbedAnswerPanel.updateTabContent("Updating", new AnswerPanel(groupedAnswers.getOrDefault("Updating", List.of())));
-            tabbedAnswerPanel.updateTabContent("Waiting", new AnswerPanel(groupedAnswers.getOrDefault("Waiting", List.of())));
-            tabbedAnswerPanel.updateTabContent("Error", new AnswerPanel(groupedAnswers.getOrDefault("Error", List.of())));
+            models.forEach(model -> model.setAnswers(answerIds));
+            updateTabCounts();
         });
     }
 
     /**
-     * Sets the list of answers in the AnswerManager and refreshes the tab content.
+     * Queues the rows of an answer that changed state to be updated with the next batch. Can be
+     * called from any thread and never waits on the UI.
      *
-     * @param answers the list of answers to be set and displayed.
+     * @param answer the answer with its new state.
      */
-    public void setAnswers(List<Answer> answers) {
-        answerManager.setAnswers(answers);
-        updateTabs();
+    public void answerChanged(Answer answer) {
+        coalescer.publish(answer.getId());
     }
-}
 
+    /**
+     * Applies a batch of changes on the EDT, with one refresh of the tab counts.
+     */
+    private void applyChanges(IntList changedIds) {
+        if (changedIds.size() > REBUILD_THRESHOLD) {
+            models.forEach(model -> model.setAnswers(answerIds));
+        } else {
+            for (int i = 0; i < changedIds.size(); i++) {
+                int id = changedIds.get(i);
+                models.forEach(model -> model.answerChanged(id));
+            }
+        }
+
+        updateTabCounts();
+    }
+
+    /**
+     * Adds answers to the AnswerManager, waiting to be run, and appends them to the tabs. Answers
+     * loaded earlier keep their state and stay where they are. Can be called from any thread: the
+     * answers are added to the manager straight away and the tabs are updated on the EDT.
+     *
+     * @param ids the ids of the answers, in the order to show them.
+     */
+    public void addAnswers(IntList ids) {
+        IntList added = new IntList(Math.max(1, ids.size()));
+        for (int i = 0; i < ids.size(); i++) {
+            if (answerManager.addAnswer(ids.get(i), WAITING)) added.add(ids.get(i));
+        }
+
+        SwingUtilities.invokeLater(() -> {
+            for (int i = 0; i < added.size(); i++) answerIds.add(added.get(i));
+            models.forEach(model -> model.addAnswers(added));
+            updateTabCounts();
+        });
+    }
+
+    private void updateTabCounts() {
+        tabbedAnswerPanel.setTabCount(ALL_TAB, answerManager.size());
+        for (String stateName : STATE_TABS) tabbedAnswerPanel.setTabCount(stateName, answerManager.getCount(stateName));
+    }
+}
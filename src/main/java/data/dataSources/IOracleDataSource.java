@@ -4,6 +4,10 @@ import com.mashape.unirest.http.exceptions.UnirestException;
 
 import model.network.NetworkConfig;
 
+/**
+ * Sends answer requests to Oracle. Requests are sent straight away: the rate limit and the other
+ * client side limits are applied by the repository, so it can time the request on its own.
+ */
 public interface IOracleDataSource {
 	public String fetchAnswer(int answerId) throws UnirestException;
 	public void updateAnswer(int answerId, String html) throws UnirestException;
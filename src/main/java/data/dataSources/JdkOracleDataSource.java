@@ -0,0 +1,138 @@
+package data.dataSources;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Base64;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import com.mashape.unirest.http.exceptions.UnirestException;
+
+import model.network.NetworkConfig;
+
+/**
+ * An Oracle data source built on the JDK {@link HttpClient}, in place of Unirest's Apache client.
+ *
+ * Requests block the calling thread until the response arrives, like {@link OracleDataSource}, so
+ * each request in flight still holds a thread; what this client adds is the connection handling. One
+ * client is shared by every request, which keeps connections open between requests and multiplexes
+ * them over a single HTTP/2 connection when an https host supports it (falling back to HTTP/1.1
+ * otherwise). Plain http hosts are always sent HTTP/1.1, as asking for HTTP/2 there sends an h2c
+ * upgrade with every new connection.
+ */
+public class JdkOracleDataSource implements IOracleDataSource {
+	private String ENDPOINT = "/services/rest/connect/v1.4/answers/";
+	private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(10);
+	private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+
+	final private HttpClient client;
+	private volatile NetworkConfig config; // Replaced from the UI while requests are in flight
+
+	public JdkOracleDataSource(NetworkConfig config) {
+		this.client = HttpClient.newBuilder()
+				.version(HttpClient.Version.HTTP_2)
+				.connectTimeout(CONNECT_TIMEOUT)
+				.followRedirects(HttpClient.Redirect.NORMAL)
+				.build();
+
+		setNetworkConfig(config);
+	}
+
+	@Override
+	public String fetchAnswer(int answerId) throws UnirestException {
+		NetworkConfig config = checkRequest();
+
+		// Fetching the answer by the id
+		HttpResponse<String> response = send(newRequest(config, answerId).GET().build());
+		if (response.statusCode() != 200) {
+			throw new OracleStatusException("Failed to fetch answer: " + response.statusCode(), response.statusCode());
+		}
+
+		try {
+			return new JSONObject(response.body()).optString("solution");
+		} catch (JSONException e) {
+			throw new UnirestException(e);
+		}
+	}
+
+	@Override
+	public void updateAnswer(int answerId, String html) throws UnirestException {
+		NetworkConfig config = checkRequest();
+
+		// Preparing the JSON body for the update request
+		JSONObject body = new JSONObject();
+		body.put("solution", html); // Update the "solution" field with new HTML content
+
+		// Sending the PUT request to update the answer
+		HttpRequest request = newRequest(config, answerId)
+				.header("Content-Type", "application/json") // Set the content type as JSON
+				.PUT(HttpRequest.BodyPublishers.ofString(body.toString(), StandardCharsets.UTF_8))
+				.build();
+
+		// Check if the update was successful
+		HttpResponse<String> response = send(request);
+		if (response.statusCode() != 200) {
+			throw new OracleStatusException("Failed to update answer: " + response.statusCode(), response.statusCode());
+		}
+	}
+
+	@Override
+	public void setNetworkConfig(NetworkConfig newConfig) {
+		if (newConfig == null) {
+			newConfig = new NetworkConfig(null, null, 0);
+		}
+
+		// Preserve rate limiting state
+		newConfig.preserveRateLimit(this.config);
+
+		this.config = newConfig;
+	}
+
+	@Override
+	public NetworkConfig getNetworkConfig() {
+		return config;
+	}
+
+	/**
+	 * Checks the user is signed in.
+	 *
+	 * @return The config to send the request with.
+	 */
+	private NetworkConfig checkRequest() throws UnirestException {
+		NetworkConfig config = this.config;
+		if (config == null || config.getUser() == null) throw new UnirestException("User details are not set");
+
+		return config;
+	}
+
+	private HttpRequest.Builder newRequest(NetworkConfig config, int answerId) {
+		String credentials = config.getUser().username() + ":" + config.getUser().password();
+		URI uri = URI.create(config.getHost() + ENDPOINT + answerId);
+
+		return HttpRequest.newBuilder(uri)
+				.version("https".equalsIgnoreCase(uri.getScheme()) ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+				.timeout(REQUEST_TIMEOUT)
+				.header("Authorization", "Basic " + Base64.getEncoder().encodeToString(credentials.getBytes(StandardCharsets.UTF_8)))
+				.header("OSvC-CREST-Application-Context", "This is a valid request for account");
+	}
+
+	/**
+	 * Sends the request and waits for the response, rethrowing any failure as a {@link UnirestException}.
+	 */
+	private HttpResponse<String> send(HttpRequest request) throws UnirestException {
+		try {
+			return client.send(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new UnirestException(e);
+		} catch (IOException e) {
+			throw new UnirestException(e);
+		}
+	}
+}
@@ -4,7 +4,7 @@ import com.mashape.unirest.http.exceptions.UnirestException;
 
 import model.network.NetworkConfig;
 
-import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.Map;
 
 public class MockOracleDataSource extends OracleDataSource {
@@ -17,7 +17,7 @@ public class MockOracleDataSource extends OracleDataSource {
 
     // Initialize the mock data with 10 different IDs and HTML content
     private void initialiseMockData() {
-        mockData = new HashMap<>();
+        mockData = new ConcurrentHashMap<>();
         mockData.put(1, "<html><body><p>Content for Answer 1</p></body></html>");
         mockData.put(2, "<html><body><p>Content for Answer 2</p></body></html>");
         mockData.put(3, "<html><body><p>Content for Answer 3</p></body></html>");
@@ -37,11 +37,6 @@ public class MockOracleDataSource extends OracleDataSource {
             throw new UnirestException("Answer ID not found in mock data.");
         }
         
-        // Check rate limit
-        if (!getNetworkConfig().canMakeRequest()) {
-            throw new UnirestException("API rate limit exceeded. Please try again later.");
-        }
-        
         return mockData.get(answerId);
     }
 
@@ -52,10 +47,6 @@ public class MockOracleDataSource extends OracleDataSource {
             throw new UnirestException("Answer ID not found in mock data.");
         }
         
-        // Check rate limit
-        if (!getNetworkConfig().canMakeRequest()) {
-            throw new UnirestException("API rate limit exceeded. Please try again later.");
-        }
         mockData.put(answerId, html);
     }
 }
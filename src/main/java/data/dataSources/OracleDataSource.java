@@ -1,17 +1,32 @@
 package data.dataSources;
 
+import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+
 import com.mashape.unirest.http.HttpResponse;
-import com.mashape.unirest.http.JsonNode;
 import com.mashape.unirest.http.Unirest;
+import com.mashape.unirest.http.async.utils.AsyncIdleConnectionMonitorThread;
 import com.mashape.unirest.http.exceptions.UnirestException;
+import com.mashape.unirest.http.options.Option;
+import com.mashape.unirest.http.options.Options;
+import com.mashape.unirest.http.utils.SyncIdleConnectionMonitorThread;
 
 import model.network.NetworkConfig;
 
 public class OracleDataSource implements IOracleDataSource {
 	private String ENDPOINT = "/services/rest/connect/v1.4/answers/";
-    private NetworkConfig config;
+	private static final int DEFAULT_MAX_CONNECTIONS = 20; // Unirest's default connections per route
+    private static final long DEFAULT_CONNECTION_TIMEOUT = 10000; // Unirest's timeouts when none are set
+    private static final long DEFAULT_SOCKET_TIMEOUT = 60000;
+    private static int connections = DEFAULT_MAX_CONNECTIONS; // Unirest's clients are shared by every data source
+    private volatile NetworkConfig config; // Replaced from the UI while workers are using it
 
     public OracleDataSource(NetworkConfig config) {
         setNetworkConfig(config);
@@ -20,46 +35,45 @@ public class OracleDataSource implements IOracleDataSource {
     @Override
     public String fetchAnswer(int answerId) throws UnirestException {
         if (!checkConnection()) throw new UnirestException("User details are not set"); // Checking if the user is signed in
-        
-        // Check rate limit
-        if (!config.canMakeRequest()) {
-            throw new UnirestException("API rate limit exceeded. Please try again later.");
-        }
 
         // Fetching the answer by the id
-        HttpResponse<JsonNode> jsonResponse = Unirest.get(config.getHost() + ENDPOINT + answerId)
+        HttpResponse<String> jsonResponse = Unirest.get(config.getHost() + ENDPOINT + answerId)
                 .basicAuth(config.getUser().username(), config.getUser().password())
                 .header("OSvC-CREST-Application-Context", "This is a valid request for account")
-                .asJson();
-        JSONObject jsonBody = jsonResponse.getBody().getObject();
-        
-        return jsonBody.optString("solution");
+                .asString(); // Reading the body as text so error pages still give their status
+
+        // Check if the answer was found
+        if (jsonResponse.getStatus() != 200) {
+            throw new OracleStatusException("Failed to fetch answer: " + jsonResponse.getStatusText(), jsonResponse.getStatus());
+        }
+
+        try {
+            JSONObject jsonBody = new JSONObject(jsonResponse.getBody());
+            return jsonBody.optString("solution");
+        } catch (JSONException e) {
+            throw new UnirestException(e);
+        }
     }
 
     @Override
     public void updateAnswer(int answerId, String html) throws UnirestException {
         if (!checkConnection()) throw new UnirestException("User details are not set"); // Checking if the user is signed in
 
-        // Check rate limit
-        if (!config.canMakeRequest()) {
-            throw new UnirestException("API rate limit exceeded. Please try again later.");
-        }
-
         // Preparing the JSON body for the update request
         JSONObject body = new JSONObject();
         body.put("solution", html); // Update the "solution" field with new HTML content
 
         // Sending the PUT request to update the answer
-        HttpResponse<JsonNode> jsonResponse = Unirest.put(config.getHost() + ENDPOINT + answerId)
+        HttpResponse<String> jsonResponse = Unirest.put(config.getHost() + ENDPOINT + answerId)
                 .basicAuth(config.getUser().username(), config.getUser().password())
                 .header("Content-Type", "application/json") // Set the content type as JSON
                 .header("OSvC-CREST-Application-Context", "This is a valid request for account")
-                .body(body) // Attach the JSON body to the request
-                .asJson();
+                .body(body.toString()) // Attach the JSON body to the request
+                .asString();
 
         // Check if the update was successful
         if (jsonResponse.getStatus() != 200) {
-            throw new UnirestException("Failed to update answer: " + jsonResponse.getStatusText());
+            throw new OracleStatusException("Failed to update answer: " + jsonResponse.getStatusText(), jsonResponse.getStatus());
         }
     }
 
@@ -70,14 +84,50 @@ public class OracleDataSource implements IOracleDataSource {
         }
 
         // Preserve rate limiting state
-        if (this.config != null) {
-            newConfig.setRequestsMade(this.config.getRequestsMade());
-            newConfig.setLastRequestTime(this.config.getLastRequestTime());
-        }
+        newConfig.preserveRateLimit(this.config);
+
+        // Allowing a connection for every request the budget lets run at once
+        setConnections(Math.max(DEFAULT_MAX_CONNECTIONS, newConfig.getMaxRequestsPerMinute()));
 
         this.config = newConfig;
     }
 
+    /**
+     * Resizes Unirest's connection pools. Unirest builds new clients each time, so this only happens
+     * when the size changes. The replaced clients and their idle connection monitors are closed once
+     * the requests still running on them have finished or timed out.
+     */
+    private static synchronized void setConnections(int newConnections) {
+        if (newConnections == connections) return;
+        connections = newConnections;
+
+        Object httpClient = Options.getOption(Option.HTTPCLIENT);
+        Object syncMonitor = Options.getOption(Option.SYNC_MONITOR);
+        Object asyncHttpClient = Options.getOption(Option.ASYNCHTTPCLIENT);
+        Object asyncMonitor = Options.getOption(Option.ASYNC_MONITOR);
+        long timeout = getTimeout(Option.CONNECTION_TIMEOUT, DEFAULT_CONNECTION_TIMEOUT) + getTimeout(Option.SOCKET_TIMEOUT, DEFAULT_SOCKET_TIMEOUT);
+
+        Unirest.setConcurrency(Math.max(200, newConnections), newConnections);
+
+        CompletableFuture.runAsync(() -> {
+            try {
+                if (httpClient instanceof CloseableHttpClient) ((CloseableHttpClient) httpClient).close();
+                if (asyncHttpClient instanceof CloseableHttpAsyncClient && ((CloseableHttpAsyncClient) asyncHttpClient).isRunning()) {
+                    ((CloseableHttpAsyncClient) asyncHttpClient).close();
+                }
+            } catch (IOException e) {
+                System.err.println("Failed to close the old http clients: " + e.getMessage());
+            }
+            if (syncMonitor instanceof SyncIdleConnectionMonitorThread) ((SyncIdleConnectionMonitorThread) syncMonitor).interrupt();
+            if (asyncMonitor instanceof AsyncIdleConnectionMonitorThread) ((AsyncIdleConnectionMonitorThread) asyncMonitor).interrupt();
+        }, CompletableFuture.delayedExecutor(timeout, TimeUnit.MILLISECONDS));
+    }
+
+    private static long getTimeout(Option option, long defaultMillis) {
+        Object timeout = Options.getOption(option);
+        return timeout instanceof Long ? (Long) timeout : defaultMillis;
+    }
+
     private Boolean checkConnection() {    
         return config != null && config.getUser() != null;
     }
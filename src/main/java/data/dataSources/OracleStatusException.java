@@ -0,0 +1,32 @@
+package data.dataSources;
+
+import com.mashape.unirest.http.exceptions.UnirestException;
+
+/**
+ * Thrown when Oracle answers a request with an unsuccessful HTTP status.
+ */
+public class OracleStatusException extends UnirestException {
+	private static final long serialVersionUID = 3841902755716930412L;
+
+	final private int status;
+
+	public OracleStatusException(String message, int status) {
+		super(message);
+		this.status = status;
+	}
+
+	/**
+	 * The HTTP status code of the response.
+	 */
+	public int getStatus() {
+		return status;
+	}
+
+	/**
+	 * Checks if Oracle rejected the request because it is overloaded (429 Too Many Requests or
+	 * 503 Service Unavailable).
+	 */
+	public boolean isOverloaded() {
+		return status == 429 || status == 503;
+	}
+}
@@ -3,35 +3,94 @@ package data.repositories;
 import com.mashape.unirest.http.exceptions.UnirestException;
 
 import data.dataSources.IOracleDataSource;
+import data.dataSources.OracleStatusException;
+import model.network.AdaptiveConcurrencyLimiter;
+import model.network.CircuitBreaker;
 import model.network.NetworkConfig;
 import model.network.OracleResponse;
 import model.network.User;
+import model.pipeline.RetryPolicy;
 
+/**
+ * Sends requests to Oracle through the client side limits, in the order they apply: the circuit
+ * breaker, then the adaptive concurrency limit, then the rate limit. The rate permit is taken last,
+ * right before the request is sent, so requests queued for a concurrency slot don't hold permits
+ * they would all spend at once when slots free up, e.g. after the limiter backed off. Only the
+ * request itself is timed, so the latency the breaker and the limiter see is the time spent on the
+ * network and not time spent waiting on the client's own limits.
+ */
 public class OracleRepository implements IOracleRepository {
 	final private IOracleDataSource dataSource;
+	final private CircuitBreaker circuitBreaker;
+	final private AdaptiveConcurrencyLimiter concurrencyLimiter;
 	
 	public OracleRepository(IOracleDataSource dataSource) {
+		this(dataSource, new CircuitBreaker(), new AdaptiveConcurrencyLimiter());
+	}
+	
+	/**
+	 * Constructs a repository whose requests go through a circuit breaker and a concurrency limiter.
+	 * While the breaker is open, or the limiter is full, requests wait instead of failing.
+	 *
+	 * @param dataSource The data source to send requests with.
+	 * @param circuitBreaker The breaker guarding the data source.
+	 * @param concurrencyLimiter The limiter deciding how many requests can be in flight.
+	 */
+	public OracleRepository(IOracleDataSource dataSource, CircuitBreaker circuitBreaker, AdaptiveConcurrencyLimiter concurrencyLimiter) {
 		this.dataSource = dataSource;
+		this.circuitBreaker = circuitBreaker;
+		this.concurrencyLimiter = concurrencyLimiter;
 	}
 
 	@Override
 	public OracleResponse fetchAnswer(int answerId) throws UnirestException {
-		String html = dataSource.fetchAnswer(answerId);
+		CircuitBreaker.Permit permit = acquire();
 		
-		return new OracleResponse(answerId, html);
+		long start = System.nanoTime();
+		try {
+			String html = dataSource.fetchAnswer(answerId);
+			onSuccess(permit, System.nanoTime() - start);
+			
+			return new OracleResponse(answerId, html);
+		} catch (UnirestException | RuntimeException e) {
+			record(permit, e);
+			throw e;
+		}
 	}
 
 	@Override
 	public void updateAnswer(int answerId, String html) throws UnirestException {
-		dataSource.updateAnswer(answerId, html);
+		CircuitBreaker.Permit permit = acquire();
 		
+		long start = System.nanoTime();
+		try {
+			dataSource.updateAnswer(answerId, html);
+			onSuccess(permit, System.nanoTime() - start);
+		} catch (UnirestException | RuntimeException e) {
+			record(permit, e);
+			throw e;
+		}
+	}
+
+	/**
+	 * The circuit breaker guarding the data source.
+	 */
+	public CircuitBreaker getCircuitBreaker() {
+		return circuitBreaker;
+	}
+
+	/**
+	 * The limiter deciding how many requests can be in flight.
+	 */
+	public AdaptiveConcurrencyLimiter getConcurrencyLimiter() {
+		return concurrencyLimiter;
 	}
 
 	@Override
 	public void setUser(User user) {
 		NetworkConfig config = dataSource.getNetworkConfig();
 		
-		dataSource.setNetworkConfig(new NetworkConfig(user, config.getHost(), config.getMaxRequestsPerMinute()));
+		dataSource.setNetworkConfig(new NetworkConfig(user, config.getHost(), config.getMaxRequestsPerMinute(), config.getBurst(), config.getMaxConcurrentRequests()));
 	}
 
 	@Override
@@ -48,4 +107,59 @@ public class OracleRepository implements IOracleRepository {
 	public void setNetworkConfig(NetworkConfig config) {
 		dataSource.setNetworkConfig(config);
 	}
+	
+	/**
+	 * Waits for the breaker, a concurrency slot and the rate limit in turn. If anything goes wrong
+	 * part way, whatever was already taken is given back.
+	 *
+	 * @return The permit the breaker let the request through with.
+	 */
+	private CircuitBreaker.Permit acquire() throws UnirestException {
+		CircuitBreaker.Permit permit = null;
+		boolean slot = false;
+		boolean acquired = false;
+		try {
+			permit = circuitBreaker.acquire();
+			concurrencyLimiter.acquire();
+			slot = true;
+			dataSource.getNetworkConfig().getRateLimiter().acquire();
+			acquired = true;
+			return permit;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new UnirestException(e);
+		} finally {
+			if (!acquired) {
+				if (slot) concurrencyLimiter.onIgnore();
+				if (permit != null) circuitBreaker.onIgnore(permit);
+			}
+		}
+	}
+	
+	private void onSuccess(CircuitBreaker.Permit permit, long latency) {
+		concurrencyLimiter.onSuccess(latency);
+		circuitBreaker.onSuccess(permit, latency);
+	}
+	
+	/**
+	 * Tells the limiter and the breaker about a failed request. The limiter backs off when Oracle is
+	 * overloaded. Only failures that point at the host being unwell (timeouts, connection errors and
+	 * 408 or 5xx responses) count against the breaker; a 429 means the host is healthy and asking for
+	 * fewer requests, which is left to the limiter and the retry backoff.
+	 */
+	private void record(CircuitBreaker.Permit permit, Throwable error) {
+		boolean throttled = error instanceof OracleStatusException && ((OracleStatusException) error).getStatus() == 429;
+		
+		if (error instanceof OracleStatusException && ((OracleStatusException) error).isOverloaded()) {
+			concurrencyLimiter.onOverload();
+		} else {
+			concurrencyLimiter.onIgnore();
+		}
+		
+		if (!throttled && RetryPolicy.isTransient(error)) {
+			circuitBreaker.onFailure(permit);
+		} else {
+			circuitBreaker.onIgnore(permit);
+		}
+	}
 }
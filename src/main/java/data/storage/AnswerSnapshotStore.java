@@ -0,0 +1,480 @@
+package data.storage;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import utils.ContentHash;
+
+/**
+ * A local copy of the html of each answer, both as fetched from Oracle and as transformed, so it can
+ * be previewed or rolled back without going back to the network.
+ *
+ * The html is Deflate compressed and appended to a data file; each snapshot also appends a fixed size
+ * entry to an index file, which is loaded into memory when the store opens. Looking up an answer's
+ * latest snapshot is then a map lookup and one positional read. Snapshots are never overwritten: the
+ * latest entry for an answer wins, and html that is already stored (by content hash) is not written
+ * again, so an answer fetched unchanged on every run takes no extra space.
+ *
+ * Index entries are held in memory until {@link #sync()}, which forces the data to the disk before
+ * writing and forcing the entries, so even after a power loss an entry only points at data that
+ * reached the disk. Snapshots only survive a crash once synced, which callers do before relying on
+ * one. When the store opens, torn or unreadable entries at the end of the index are dropped, along
+ * with data no entry points at.
+ *
+ * Only one store can be open on a directory at a time, as the default directory is shared by every
+ * run: the index file is locked against other processes, and directories open in this process are
+ * tracked, since closing a channel would release the lock of another store on the same file.
+ */
+public class AnswerSnapshotStore implements Closeable {
+	/**
+	 * The kinds of snapshot kept for an answer.
+	 */
+	public enum Kind {
+		/** The html as fetched from Oracle. */
+		ORIGINAL(1),
+		/** The html after the rules were applied. */
+		TRANSFORMED(2);
+
+		final private byte code;
+
+		Kind(int code) {
+			this.code = (byte) code;
+		}
+
+		static Kind fromCode(byte code) {
+			for (Kind kind : values()) {
+				if (kind.code == code) return kind;
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * Where a snapshot is and what it holds.
+	 */
+	public static class Snapshot {
+		final private int answerId;
+		final private Kind kind;
+		final private long contentHash;
+		final private long ruleFingerprint;
+		final private long offset;
+		final private int compressedLength;
+		final private int length;
+
+		Snapshot(int answerId, Kind kind, long contentHash, long ruleFingerprint, long offset, int compressedLength, int length) {
+			this.answerId = answerId;
+			this.kind = kind;
+			this.contentHash = contentHash;
+			this.ruleFingerprint = ruleFingerprint;
+			this.offset = offset;
+			this.compressedLength = compressedLength;
+			this.length = length;
+		}
+
+		public int getAnswerId() {
+			return answerId;
+		}
+
+		public Kind getKind() {
+			return kind;
+		}
+
+		/**
+		 * The {@link ContentHash} of the html.
+		 */
+		public long getContentHash() {
+			return contentHash;
+		}
+
+		/**
+		 * The fingerprint of the rule set that produced a transformed snapshot, 0 for originals.
+		 */
+		public long getRuleFingerprint() {
+			return ruleFingerprint;
+		}
+
+		/**
+		 * The size of the html in UTF-8 bytes.
+		 */
+		public int getLength() {
+			return length;
+		}
+
+		/**
+		 * The size of the html once compressed.
+		 */
+		public int getCompressedLength() {
+			return compressedLength;
+		}
+	}
+
+	public static final String DATA_FILE = "answers.data";
+	public static final String INDEX_FILE = "answers.index";
+
+	private static final int INDEX_MAGIC = 0x4F485331; // "OHS1"
+	private static final int HEADER_SIZE = 16;
+	private static final int ENTRY_SIZE = 40;
+	private static final Set<Path> OPEN_DIRECTORIES = ConcurrentHashMap.newKeySet();
+
+	final private Path directory;
+	final private FileChannel data;
+	final private FileChannel index;
+	final private Map<Long, Snapshot> latest = new ConcurrentHashMap<>(); // By answer id and kind
+	final private Map<Long, Snapshot> byHash = new ConcurrentHashMap<>();
+	final private Map<Integer, Snapshot> earliestOriginal = new ConcurrentHashMap<>(); // What the answer held before any run
+
+	// Guarded by this
+	final private Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+	final private ByteBuffer entry = ByteBuffer.allocate(ENTRY_SIZE);
+	final private ByteArrayOutputStream pendingEntries = new ByteArrayOutputStream(); // Index entries not yet written
+	private long dataEnd;
+	private long indexEnd; // Where the next pending entries will be written
+	private long written; // The number of snapshots written
+
+	final private Object syncLock = new Object();
+	private volatile long synced; // The number of snapshots on the disk, only written holding syncLock
+
+	private AnswerSnapshotStore(Path directory, FileChannel data, FileChannel index) {
+		this.directory = directory;
+		this.data = data;
+		this.index = index;
+	}
+
+	/**
+	 * The directory snapshots are kept in by default, in the user's home directory.
+	 */
+	public static Path defaultDirectory() {
+		return Paths.get(System.getProperty("user.home"), ".oracle-html-transformer", "snapshots");
+	}
+
+	/**
+	 * Opens the store in a directory, loading its index, or creates it if it doesn't exist.
+	 *
+	 * @param directory The directory holding the data and index files.
+	 * @return The open store.
+	 * @throws IOException If the files can't be read or written, the index isn't a snapshot index, or
+	 *                     another run has the store open.
+	 */
+	public static AnswerSnapshotStore open(Path directory) throws IOException {
+		Files.createDirectories(directory);
+		directory = directory.toRealPath();
+		if (!OPEN_DIRECTORIES.add(directory)) throw new IOException("The snapshots in " + directory + " are already open");
+
+		FileChannel data = null;
+		FileChannel index = null;
+		try {
+			data = FileChannel.open(directory.resolve(DATA_FILE), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+			index = FileChannel.open(directory.resolve(INDEX_FILE), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+			// Released when the index is closed
+			FileLock lock = index.tryLock();
+			if (lock == null) throw new IOException("The snapshots in " + directory + " are in use by another run");
+
+			AnswerSnapshotStore store = new AnswerSnapshotStore(directory, data, index);
+			store.load();
+			return store;
+		} catch (IOException | RuntimeException e) {
+			if (data != null) data.close();
+			if (index != null) index.close();
+			OPEN_DIRECTORIES.remove(directory);
+			throw e;
+		}
+	}
+
+	public Path getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * The number of answers with at least one snapshot.
+	 */
+	public long getAnswerCount() {
+		return latest.keySet().stream().map(key -> key >> 8).distinct().count();
+	}
+
+	/**
+	 * The latest snapshot of a kind for an answer.
+	 *
+	 * @return The snapshot, or null if there isn't one.
+	 */
+	public Snapshot getSnapshot(int answerId, Kind kind) {
+		return latest.get(key(answerId, kind));
+	}
+
+	/**
+	 * A snapshot of html with the given content hash.
+	 *
+	 * @return The snapshot, or null if no stored html has that hash.
+	 */
+	public Snapshot getSnapshotByHash(long contentHash) {
+		return byHash.get(contentHash);
+	}
+
+	/**
+	 * The html of an answer as last fetched from Oracle.
+	 *
+	 * @return The html, or null if it hasn't been stored.
+	 * @throws IOException If the data file can't be read.
+	 */
+	public String getOriginal(int answerId) throws IOException {
+		Snapshot snapshot = getSnapshot(answerId, Kind.ORIGINAL);
+		return snapshot == null ? null : read(snapshot);
+	}
+
+	/**
+	 * The html of an answer as first fetched from Oracle, before any run updated it. This is what a
+	 * rollback restores, since later runs fetch html that earlier runs have already transformed.
+	 *
+	 * @return The html, or null if it hasn't been stored.
+	 * @throws IOException If the data file can't be read.
+	 */
+	public String getEarliestOriginal(int answerId) throws IOException {
+		Snapshot snapshot = earliestOriginal.get(answerId);
+		return snapshot == null ? null : read(snapshot);
+	}
+
+	/**
+	 * The html of an answer as last transformed.
+	 *
+	 * @return The html, or null if it hasn't been stored.
+	 * @throws IOException If the data file can't be read.
+	 */
+	public String getTransformed(int answerId) throws IOException {
+		Snapshot snapshot = getSnapshot(answerId, Kind.TRANSFORMED);
+		return snapshot == null ? null : read(snapshot);
+	}
+
+	/**
+	 * Stores the html of an answer as fetched from Oracle.
+	 *
+	 * @return The snapshot the html is stored in.
+	 * @throws IOException If the snapshot can't be written.
+	 */
+	public Snapshot putOriginal(int answerId, String html) throws IOException {
+		return put(answerId, Kind.ORIGINAL, html, 0);
+	}
+
+	/**
+	 * Stores the html of an answer after the rules were applied.
+	 *
+	 * @param ruleFingerprint The fingerprint of the rule set that produced the html.
+	 * @return The snapshot the html is stored in.
+	 * @throws IOException If the snapshot can't be written.
+	 */
+	public Snapshot putTransformed(int answerId, String html, long ruleFingerprint) throws IOException {
+		return put(answerId, Kind.TRANSFORMED, html, ruleFingerprint);
+	}
+
+	/**
+	 * Reads and decompresses the html of a snapshot.
+	 *
+	 * @throws IOException If the data file can't be read or the snapshot is corrupt.
+	 */
+	public String read(Snapshot snapshot) throws IOException {
+		ByteBuffer compressed = ByteBuffer.allocate(snapshot.compressedLength);
+		while (compressed.hasRemaining()) {
+			if (data.read(compressed, snapshot.offset + compressed.position()) < 0) throw new IOException("Snapshot data is truncated");
+		}
+
+		Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(compressed.array());
+			byte[] html = new byte[snapshot.length];
+			int read = 0;
+			while (read < html.length && !inflater.finished()) {
+				int count = inflater.inflate(html, read, html.length - read);
+				if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) break;
+				read += count;
+			}
+
+			if (read != html.length) throw new IOException("Snapshot of answer " + snapshot.answerId + " is corrupt");
+			return new String(html, StandardCharsets.UTF_8);
+		} catch (DataFormatException e) {
+			throw new IOException("Snapshot of answer " + snapshot.answerId + " is corrupt", e);
+		} finally {
+			inflater.end();
+		}
+	}
+
+	/**
+	 * Forces the snapshots written so far to the disk: the data first, then their index entries.
+	 *
+	 * Threads syncing at the same time share a force: a thread that finds a sync already covered
+	 * everything it wrote returns without forcing again, so many updates waiting on their snapshots
+	 * cost one disk flush rather than one each.
+	 *
+	 * @throws IOException If the files can't be synced.
+	 */
+	public void sync() throws IOException {
+		long target;
+		synchronized (this) {
+			target = written;
+		}
+		if (synced >= target) return;
+
+		synchronized (syncLock) {
+			if (synced >= target) return; // Synced by another thread while this one waited
+
+			long upTo;
+			long position;
+			ByteBuffer entries;
+			synchronized (this) {
+				upTo = written;
+				position = indexEnd;
+				entries = ByteBuffer.wrap(pendingEntries.toByteArray());
+				pendingEntries.reset();
+				indexEnd += entries.remaining();
+			}
+
+			// The data of every entry was written before the entry was queued
+			data.force(false);
+			while (entries.hasRemaining()) index.write(entries, position + entries.position());
+			index.force(false);
+			synced = upTo;
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			sync();
+		} finally {
+			synchronized (this) {
+				deflater.end();
+			}
+			try {
+				data.close();
+				index.close();
+			} finally {
+				OPEN_DIRECTORIES.remove(directory);
+			}
+		}
+	}
+
+	private synchronized Snapshot put(int answerId, Kind kind, String html, long ruleFingerprint) throws IOException {
+		byte[] bytes = html.getBytes(StandardCharsets.UTF_8);
+		long hash = ContentHash.of(bytes);
+
+		// Pointing at the stored copy when this html is already in the store
+		Snapshot current = latest.get(key(answerId, kind));
+		if (current != null && current.contentHash == hash && current.ruleFingerprint == ruleFingerprint) return current;
+
+		Snapshot existing = byHash.get(hash);
+		long offset;
+		int compressedLength;
+
+		if (existing != null && existing.length == bytes.length) {
+			offset = existing.offset;
+			compressedLength = existing.compressedLength;
+		} else {
+			byte[] compressed = compress(bytes);
+			offset = dataEnd;
+			compressedLength = compressed.length;
+
+			ByteBuffer buffer = ByteBuffer.wrap(compressed);
+			while (buffer.hasRemaining()) data.write(buffer, offset + buffer.position());
+			dataEnd += compressedLength;
+		}
+
+		Snapshot snapshot = new Snapshot(answerId, kind, hash, ruleFingerprint, offset, compressedLength, bytes.length);
+
+		entry.clear();
+		entry.putInt(answerId).put(kind.code).put((byte) 0).putShort((short) 0)
+				.putLong(hash).putLong(ruleFingerprint).putLong(offset).putInt(compressedLength).putInt(bytes.length);
+		pendingEntries.write(entry.array(), 0, ENTRY_SIZE);
+		written++;
+
+		add(snapshot);
+		return snapshot;
+	}
+
+	private byte[] compress(byte[] bytes) {
+		deflater.reset();
+		deflater.setInput(bytes);
+		deflater.finish();
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, bytes.length / 4));
+		byte[] chunk = new byte[8192];
+		while (!deflater.finished()) {
+			int count = deflater.deflate(chunk);
+			out.write(chunk, 0, count);
+		}
+
+		return out.toByteArray();
+	}
+
+	/**
+	 * Reads the index into memory, dropping entries that point past the end of the data.
+	 */
+	private synchronized void load() throws IOException {
+		dataEnd = data.size();
+		long size = index.size();
+
+		if (size < HEADER_SIZE) {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(INDEX_MAGIC).putInt(ENTRY_SIZE).putLong(System.currentTimeMillis());
+			header.flip();
+			index.truncate(0);
+			while (header.hasRemaining()) index.write(header, header.position());
+			indexEnd = HEADER_SIZE;
+			return;
+		}
+
+		long end = HEADER_SIZE + (size - HEADER_SIZE) / ENTRY_SIZE * ENTRY_SIZE;
+		MappedByteBuffer entries = index.map(FileChannel.MapMode.READ_ONLY, 0, end);
+		if (entries.getInt() != INDEX_MAGIC || entries.getInt() != ENTRY_SIZE) throw new IOException(directory + " does not hold a snapshot index");
+		entries.position(HEADER_SIZE);
+
+		long validEnd = HEADER_SIZE;
+		long usedData = 0;
+		while (entries.remaining() >= ENTRY_SIZE) {
+			int answerId = entries.getInt();
+			Kind kind = Kind.fromCode(entries.get());
+			entries.position(entries.position() + 3);
+			long hash = entries.getLong();
+			long ruleFingerprint = entries.getLong();
+			long offset = entries.getLong();
+			int compressedLength = entries.getInt();
+			int length = entries.getInt();
+
+			if (kind == null || offset + compressedLength > dataEnd) break; // Written after the data was lost
+
+			add(new Snapshot(answerId, kind, hash, ruleFingerprint, offset, compressedLength, length));
+			usedData = Math.max(usedData, offset + compressedLength);
+			validEnd += ENTRY_SIZE;
+		}
+
+		// Dropping torn index entries and data that no entry points at
+		if (validEnd < size) index.truncate(validEnd);
+		indexEnd = validEnd;
+		if (usedData < dataEnd) {
+			data.truncate(usedData);
+			dataEnd = usedData;
+		}
+	}
+
+	private void add(Snapshot snapshot) {
+		latest.put(key(snapshot.answerId, snapshot.kind), snapshot);
+		byHash.putIfAbsent(snapshot.contentHash, snapshot);
+		if (snapshot.kind == Kind.ORIGINAL) earliestOriginal.putIfAbsent(snapshot.answerId, snapshot);
+	}
+
+	private static long key(int answerId, Kind kind) {
+		return ((long) answerId << 8) | kind.code;
+	}
+}
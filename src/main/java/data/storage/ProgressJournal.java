@@ -0,0 +1,469 @@
+package data.storage;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import utils.ContentHash;
+
+/**
+ * An append-only log of what has happened to each answer, so a run that stops part way through can
+ * be resumed without repeating work.
+ *
+ * Each event is a fixed 16 byte record: the answer id, the event, and the fingerprint of the rule set
+ * it happened under. Records are gathered in memory and written in batches, each batch followed by an
+ * fsync, so recording never waits on the disk. An answer only counts as done if its last event was
+ * {@link Event#UPDATED} or {@link Event#UNCHANGED} under the same rule set.
+ *
+ * Running the rules again over html they already changed isn't always harmless, e.g. a rule that adds
+ * to a phrase would add to it twice. So before an answer is sent to Oracle a {@link Event#SENDING}
+ * record holding the hash of the html being sent is written and synced. If the app dies after the PUT
+ * but before the answer is recorded as updated, the next run finds the html it fetches is the html it
+ * sent, and counts the answer as updated instead of transforming it again. The hash is kept through
+ * any ERROR recorded after it, as a PUT that timed out may still have reached Oracle, until the
+ * answer is recorded as updated or sent again.
+ *
+ * If writing the journal fails, recording and flushing throw the failure from then on, so the caller
+ * knows its progress is no longer being kept.
+ *
+ * Opening a journal replays the existing records with a memory-mapped sequential read, so millions of
+ * records load in well under a second. A partly written record at the end (from a crash mid-write) is
+ * dropped.
+ */
+public class ProgressJournal implements Closeable {
+	/**
+	 * The events recorded for an answer.
+	 */
+	public enum Event {
+		FETCHED(1), TRANSFORMED(2), UPDATED(3), UNCHANGED(4), ERROR(5),
+		SENDING(6); // Recorded with the content hash of the html being sent instead of a fingerprint
+
+		final private byte code;
+
+		Event(int code) {
+			this.code = (byte) code;
+		}
+
+		/**
+		 * Checks if the event means the answer needs no more work.
+		 */
+		public boolean isComplete() {
+			return this == UPDATED || this == UNCHANGED;
+		}
+
+		static Event fromCode(byte code) {
+			for (Event event : values()) {
+				if (event.code == code) return event;
+			}
+			return null;
+		}
+	}
+
+	public static final String EXTENSION = ".journal";
+
+	private static final int MAGIC = 0x4F484A31; // "OHJ1"
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = 16;
+	private static final int RECORD_SIZE = 16;
+	private static final int BUFFER_RECORDS = 4096;
+	private static final long FLUSH_INTERVAL_MILLIS = 50;
+	private static final long MAX_MAPPED_BYTES = 1L << 30; // A multiple of the record size
+
+	final private Path file;
+	final private FileChannel channel;
+	final private EventTable replayed;
+	final private Thread flusher;
+
+	// Guarded by lock
+	final private Object lock = new Object();
+	private ByteBuffer active = ByteBuffer.allocate(BUFFER_RECORDS * RECORD_SIZE);
+	private ByteBuffer flushing = ByteBuffer.allocate(BUFFER_RECORDS * RECORD_SIZE);
+	private long recorded; // Records handed to the journal
+	private long durable; // Records written and synced to the disk
+	private boolean flushRequested;
+	private boolean closed;
+	private IOException failure;
+
+	private ProgressJournal(Path file, FileChannel channel, EventTable replayed) {
+		this.file = file;
+		this.channel = channel;
+		this.replayed = replayed;
+
+		this.flusher = new Thread(this::flushLoop, "journal-flusher");
+		flusher.setDaemon(true);
+		flusher.start();
+	}
+
+	/**
+	 * The journal kept next to a file of answer ids.
+	 *
+	 * @param idFile The file the run's answer ids were loaded from.
+	 * @return The path of the journal for that file.
+	 */
+	public static Path forIdFile(File idFile) {
+		return Paths.get(idFile.getPath() + EXTENSION);
+	}
+
+	/**
+	 * Opens a journal, replaying its records, or creates it if it doesn't exist.
+	 *
+	 * @param file The journal file.
+	 * @return The open journal.
+	 * @throws IOException If the file can't be read or written, or isn't a journal.
+	 */
+	public static ProgressJournal open(Path file) throws IOException {
+		EventTable replayed = new EventTable();
+		long end = replay(file, replayed);
+
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		try {
+			if (end == 0) {
+				ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION).putLong(System.currentTimeMillis());
+				header.flip();
+				channel.truncate(0);
+				while (header.hasRemaining()) channel.write(header, header.position());
+				channel.force(true);
+				end = HEADER_SIZE;
+			} else {
+				channel.truncate(end); // Dropping a partly written record
+			}
+
+			channel.position(end);
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+
+		return new ProgressJournal(file, channel, replayed);
+	}
+
+	public Path getFile() {
+		return file;
+	}
+
+	/**
+	 * The number of answers with records in the replayed journal.
+	 */
+	public int getReplayedCount() {
+		return replayed.size();
+	}
+
+	/**
+	 * The last event the replayed journal has for an answer.
+	 *
+	 * @param answerId The answer's id.
+	 * @return The event, or null if the answer isn't in the journal.
+	 */
+	public Event getLastEvent(int answerId) {
+		return replayed.getEvent(answerId);
+	}
+
+	/**
+	 * Checks if an earlier run finished an answer with the same rules.
+	 *
+	 * @param answerId The answer's id.
+	 * @param fingerprint The fingerprint of the rule set the answer would be processed with.
+	 * @return true if the answer's last event was UPDATED or UNCHANGED under that rule set.
+	 */
+	public boolean isComplete(int answerId, long fingerprint) {
+		Event event = replayed.getEvent(answerId);
+		return event != null && event.isComplete() && replayed.getFingerprint(answerId) == fingerprint;
+	}
+
+	/**
+	 * Checks if an earlier run sent an answer to Oracle with the same rules, and the html now fetched
+	 * is what it sent, so the update went through even though it was never recorded as done.
+	 *
+	 * @param answerId The answer's id.
+	 * @param fingerprint The fingerprint of the rule set the answer would be processed with.
+	 * @param html The answer's html as fetched now.
+	 * @return true if this html was the last sent under that rule set, and the answer hasn't been
+	 *         recorded as updated since.
+	 */
+	public boolean wasSent(int answerId, long fingerprint, String html) {
+		return replayed.hasContentHash(answerId) && replayed.getFingerprint(answerId) == fingerprint
+				&& replayed.getContentHash(answerId) == ContentHash.of(html);
+	}
+
+	/**
+	 * Records an event for an answer. Only waits if the disk has fallen a whole buffer behind.
+	 *
+	 * @param answerId The answer's id.
+	 * @param event What happened to the answer.
+	 * @param fingerprint The fingerprint of the rule set it happened under.
+	 * @throws IOException If writing the journal has failed, so the event can't be kept.
+	 */
+	public void record(int answerId, Event event, long fingerprint) throws IOException {
+		if (event == Event.SENDING) throw new IllegalArgumentException("Use recordSending to record an answer being sent");
+		append(answerId, event, fingerprint);
+	}
+
+	/**
+	 * Records that an answer's transformed html is about to be sent to Oracle, and waits until the
+	 * record is on the disk, so the update can be recognised after a crash. Answers being sent at the
+	 * same time share the sync.
+	 *
+	 * @param answerId The answer's id.
+	 * @param html The html being sent.
+	 * @throws IOException If writing the journal failed.
+	 */
+	public void recordSending(int answerId, String html) throws IOException {
+		append(answerId, Event.SENDING, ContentHash.of(html));
+		flush();
+	}
+
+	private void append(int answerId, Event event, long value) throws IOException {
+		synchronized (lock) {
+			if (failure != null) throw failure;
+			if (closed) return;
+
+			boolean interrupted = false;
+			while (!active.hasRemaining() && failure == null && !closed) {
+				lock.notifyAll();
+				try {
+					lock.wait();
+				} catch (InterruptedException e) {
+					interrupted = true; // Still recording, the caller's interrupt is restored below
+				}
+			}
+			if (interrupted) Thread.currentThread().interrupt();
+			if (failure != null) throw failure;
+			if (closed) return;
+
+			active.putInt(answerId).put(event.code).put((byte) 0).putShort((short) 0).putLong(value);
+			recorded++;
+		}
+	}
+
+	/**
+	 * Waits until every event recorded so far is on the disk.
+	 *
+	 * @throws IOException If writing the journal failed.
+	 */
+	public void flush() throws IOException {
+		synchronized (lock) {
+			long target = recorded;
+			flushRequested = true;
+			lock.notifyAll();
+
+			try {
+				while (durable < target && failure == null) lock.wait();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while flushing the journal");
+			}
+
+			if (failure != null) throw failure;
+		}
+	}
+
+	/**
+	 * Writes any remaining events and closes the file.
+	 *
+	 * @throws IOException If writing the journal failed.
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			flush();
+		} finally {
+			synchronized (lock) {
+				closed = true;
+				lock.notifyAll();
+			}
+
+			try {
+				flusher.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			channel.close();
+		}
+	}
+
+	/**
+	 * Writes the records gathered in the active buffer every flush interval, or straight away when
+	 * the buffer fills or a flush is requested.
+	 */
+	private void flushLoop() {
+		while (true) {
+			ByteBuffer batch;
+			long upTo;
+
+			synchronized (lock) {
+				try {
+					if (!flushRequested && !closed && active.hasRemaining()) lock.wait(FLUSH_INTERVAL_MILLIS);
+				} catch (InterruptedException e) {
+					// Carrying on until closed
+				}
+
+				flushRequested = false;
+				if (active.position() == 0) {
+					if (closed) return;
+					continue;
+				}
+
+				// Swapping buffers so recording carries on while this batch is written
+				batch = active;
+				active = flushing;
+				flushing = batch;
+				upTo = recorded;
+				lock.notifyAll();
+			}
+
+			try {
+				batch.flip();
+				while (batch.hasRemaining()) channel.write(batch);
+				channel.force(false);
+			} catch (IOException e) {
+				synchronized (lock) {
+					failure = e;
+					lock.notifyAll();
+				}
+				return;
+			} finally {
+				batch.clear();
+			}
+
+			synchronized (lock) {
+				durable = upTo;
+				lock.notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Reads the records of an existing journal into the table.
+	 *
+	 * @return The end of the last whole record, or 0 if the file is missing or empty.
+	 */
+	private static long replay(Path file, EventTable table) throws IOException {
+		if (!Files.exists(file) || Files.size(file) == 0) return 0;
+
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size < HEADER_SIZE) return 0; // Crashed while writing the header
+
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			while (header.hasRemaining() && channel.read(header, header.position()) >= 0);
+			header.flip();
+			if (header.getInt() != MAGIC || header.getInt() != VERSION) throw new IOException(file + " is not a progress journal");
+
+			long end = HEADER_SIZE + (size - HEADER_SIZE) / RECORD_SIZE * RECORD_SIZE;
+			for (long position = HEADER_SIZE; position < end; ) {
+				long length = Math.min(end - position, MAX_MAPPED_BYTES);
+				MappedByteBuffer records = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+
+				while (records.remaining() >= RECORD_SIZE) {
+					int answerId = records.getInt();
+					Event event = Event.fromCode(records.get());
+					records.position(records.position() + 3);
+					long value = records.getLong();
+
+					if (event != null) table.put(answerId, event, value); // Skipping zeroed space left by a crash
+				}
+
+				position += length;
+			}
+
+			return end;
+		}
+	}
+
+	/**
+	 * The last event and rule set fingerprint of each answer, in open-addressed arrays so millions of
+	 * answers don't need millions of objects. A SENDING record keeps the fingerprint of the answer's
+	 * earlier records and sets the content hash instead. The hash stays until an UPDATED or another
+	 * SENDING record.
+	 */
+	private static class EventTable {
+		private int[] keys = new int[1024];
+		private byte[] events = new byte[1024]; // 0 marks an empty slot
+		private long[] fingerprints = new long[1024];
+		private long[] contentHashes = new long[1024];
+		private boolean[] sent = new boolean[1024]; // Whether the slot holds a content hash
+		private int size;
+
+		void put(int key, Event event, long value) {
+			if ((size + 1) * 2 > keys.length) grow();
+
+			int slot = find(key);
+			if (events[slot] == 0) size++;
+			keys[slot] = key;
+			events[slot] = event.code;
+			if (event == Event.SENDING) {
+				contentHashes[slot] = value;
+				sent[slot] = true;
+			} else {
+				fingerprints[slot] = value;
+				if (event == Event.UPDATED) sent[slot] = false;
+			}
+		}
+
+		Event getEvent(int key) {
+			int slot = find(key);
+			return events[slot] == 0 ? null : Event.fromCode(events[slot]);
+		}
+
+		long getFingerprint(int key) {
+			return fingerprints[find(key)];
+		}
+
+		boolean hasContentHash(int key) {
+			return sent[find(key)];
+		}
+
+		long getContentHash(int key) {
+			return contentHashes[find(key)];
+		}
+
+		int size() {
+			return size;
+		}
+
+		private int find(int key) {
+			int mask = keys.length - 1;
+			int slot = mix(key) & mask;
+			while (events[slot] != 0 && keys[slot] != key) slot = (slot + 1) & mask;
+			return slot;
+		}
+
+		private void grow() {
+			int[] oldKeys = keys;
+			byte[] oldEvents = events;
+			long[] oldFingerprints = fingerprints;
+			long[] oldContentHashes = contentHashes;
+			boolean[] oldSent = sent;
+
+			keys = new int[oldKeys.length * 2];
+			events = new byte[oldKeys.length * 2];
+			fingerprints = new long[oldKeys.length * 2];
+			contentHashes = new long[oldKeys.length * 2];
+			sent = new boolean[oldKeys.length * 2];
+
+			for (int i = 0; i < oldKeys.length; i++) {
+				if (oldEvents[i] == 0) continue;
+
+				int slot = find(oldKeys[i]);
+				keys[slot] = oldKeys[i];
+				events[slot] = oldEvents[i];
+				fingerprints[slot] = oldFingerprints[i];
+				contentHashes[slot] = oldContentHashes[i];
+				sent[slot] = oldSent[i];
+			}
+		}
+
+		private static int mix(int key) {
+			int h = key * 0x9E3779B9;
+			return h ^ (h >>> 16);
+		}
+	}
+}
@@ -0,0 +1,170 @@
+package data.storage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers what each rule set turned each html into, so a transform can be reused across runs.
+ *
+ * Each entry maps the content hash of the fetched html and the fingerprint of the rule set to the
+ * content hash of the html the rules produced, or to {@link #UNCHANGED} if they changed nothing. The
+ * html itself is not kept here: it is already in the {@link AnswerSnapshotStore}, where it can be
+ * looked up by its hash.
+ *
+ * Entries are fixed size records appended to a file that is loaded into memory when the index opens.
+ * A torn entry at the end of the file, left by a crash, is dropped.
+ */
+public class TransformIndex implements Closeable {
+
+	public static final String INDEX_FILE = "transforms.index";
+	public static final long UNCHANGED = 0; // The output hash of a transform that changed nothing
+
+	private static final int INDEX_MAGIC = 0x4F485431; // "OHT1"
+	private static final int HEADER_SIZE = 16;
+	private static final int ENTRY_SIZE = 24;
+
+	final private Path file;
+	final private FileChannel index;
+	final private Map<Key, Long> outputs = new ConcurrentHashMap<>();
+
+	// Guarded by this
+	final private ByteBuffer entry = ByteBuffer.allocate(ENTRY_SIZE);
+	private long indexEnd;
+
+	private TransformIndex(Path file, FileChannel index) {
+		this.file = file;
+		this.index = index;
+	}
+
+	/**
+	 * Opens the index in a directory, usually the snapshot store's, or creates it if it doesn't exist.
+	 *
+	 * @param directory The directory holding the index file.
+	 * @return The open index.
+	 * @throws IOException If the file can't be read or written, or isn't a transform index.
+	 */
+	public static TransformIndex open(Path directory) throws IOException {
+		Files.createDirectories(directory);
+
+		Path file = directory.resolve(INDEX_FILE);
+		FileChannel index = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		try {
+			TransformIndex transforms = new TransformIndex(file, index);
+			transforms.load();
+			return transforms;
+		} catch (IOException | RuntimeException e) {
+			index.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * The number of transforms held.
+	 */
+	public int size() {
+		return outputs.size();
+	}
+
+	/**
+	 * The hash of the html a rule set produced from some html.
+	 *
+	 * @param inputHash The content hash of the html the rules were applied to.
+	 * @param ruleFingerprint The fingerprint of the rule set.
+	 * @return The content hash of the result, {@link #UNCHANGED}, or null if the transform isn't known.
+	 */
+	public Long getOutputHash(long inputHash, long ruleFingerprint) {
+		return outputs.get(new Key(inputHash, ruleFingerprint));
+	}
+
+	/**
+	 * Records the result of a transform. Transforms that are already known aren't written again.
+	 *
+	 * @param inputHash The content hash of the html the rules were applied to.
+	 * @param ruleFingerprint The fingerprint of the rule set.
+	 * @param outputHash The content hash of the result, or {@link #UNCHANGED}.
+	 * @throws IOException If the entry can't be written.
+	 */
+	public synchronized void put(long inputHash, long ruleFingerprint, long outputHash) throws IOException {
+		Key key = new Key(inputHash, ruleFingerprint);
+		Long current = outputs.get(key);
+		if (current != null && current == outputHash) return;
+
+		entry.clear();
+		entry.putLong(inputHash).putLong(ruleFingerprint).putLong(outputHash);
+		entry.flip();
+		while (entry.hasRemaining()) index.write(entry, indexEnd + entry.position());
+		indexEnd += ENTRY_SIZE;
+
+		outputs.put(key, outputHash);
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			index.force(false);
+		} finally {
+			index.close();
+		}
+	}
+
+	/**
+	 * Reads the entries into memory, dropping a torn entry at the end.
+	 */
+	private synchronized void load() throws IOException {
+		long size = index.size();
+
+		if (size < HEADER_SIZE) {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(INDEX_MAGIC).putInt(ENTRY_SIZE).putLong(System.currentTimeMillis());
+			header.flip();
+			index.truncate(0);
+			while (header.hasRemaining()) index.write(header, header.position());
+			indexEnd = HEADER_SIZE;
+			return;
+		}
+
+		long end = HEADER_SIZE + (size - HEADER_SIZE) / ENTRY_SIZE * ENTRY_SIZE;
+		MappedByteBuffer entries = index.map(FileChannel.MapMode.READ_ONLY, 0, end);
+		if (entries.getInt() != INDEX_MAGIC || entries.getInt() != ENTRY_SIZE) throw new IOException(file + " is not a transform index");
+		entries.position(HEADER_SIZE);
+
+		while (entries.remaining() >= ENTRY_SIZE) {
+			long inputHash = entries.getLong();
+			long ruleFingerprint = entries.getLong();
+			outputs.put(new Key(inputHash, ruleFingerprint), entries.getLong()); // Later entries win
+		}
+
+		if (end < size) index.truncate(end);
+		indexEnd = end;
+	}
+
+	private static class Key {
+		final private long inputHash;
+		final private long ruleFingerprint;
+
+		Key(long inputHash, long ruleFingerprint) {
+			this.inputHash = inputHash;
+			this.ruleFingerprint = ruleFingerprint;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Key)) return false;
+			Key other = (Key) o;
+			return inputHash == other.inputHash && ruleFingerprint == other.ruleFingerprint;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(inputHash, ruleFingerprint);
+		}
+	}
+}
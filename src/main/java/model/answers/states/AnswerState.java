@@ -1,22 +1,28 @@
 package model.answers.states;
 
+import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 
+import utils.HtmlArena;
+
 import java.awt.Color;
 
 /*
  * Represents a state an answer can be in
  * 
- * Holds the document and description of the answer
+ * Holds the html and description of the answer
  * 
+ * The html is kept compressed in an HtmlArena, outside the heap, rather than as a parsed Document,
+ * which takes several times the memory of its text. It is only read back and parsed when someone
+ * asks for the document, e.g. to show it
  */
 public class AnswerState {
 	final private String name;
 	final private Color colour; // Colour related to the state
 	final private String description;
-	final private Document document;
+	final private HtmlArena.Handle html; // null if the state has no html
 	
-	public AnswerState(String name, String description, Color colour, Document document) {
+	public AnswerState(String name, String description, Color colour, HtmlArena.Handle html) {
 		if (name == null) name = "";
 		if (colour == null) colour = Color.LIGHT_GRAY;
 		if (description == null) description = "";
@@ -24,7 +30,7 @@ public class AnswerState {
 		this.name = name;
 		this.colour = colour;
 		this.description = description;
-		this.document = document;
+		this.html = html;
 	}
 
 	/*
@@ -49,9 +55,16 @@ public class AnswerState {
 	}
 
 	/*
-	 * Current state of the html document
+	 * The answer's html in this state, or null
+	 */
+	public String getHtml() {
+		return html == null ? null : html.read();
+	}
+
+	/*
+	 * The answer's html in this state parsed into a new document, or null
 	 */
 	public Document getDocument() {
-		return document;
+		return html == null ? null : Jsoup.parse(getHtml());
 	}
 }
@@ -1,6 +1,6 @@
 package model.answers.states;
 
-import org.jsoup.nodes.Document;
+import utils.HtmlArena;
 
 import java.awt.Color;
 
@@ -10,8 +10,8 @@ import java.awt.Color;
  * Applied at the end of a process
  */
 public class CompleteAnswerState extends AnswerState {
-	public CompleteAnswerState(Document document, String description) {
-		super("Finished", description, Color.GREEN, document);
+	public CompleteAnswerState(HtmlArena.Handle html, String description) {
+		super("Finished", description, Color.GREEN, html);
 	}
 	
 	@Override
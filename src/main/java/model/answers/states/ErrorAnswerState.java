@@ -1,6 +1,6 @@
 package model.answers.states;
 
-import org.jsoup.nodes.Document;
+import utils.HtmlArena;
 
 import java.awt.Color;
 
@@ -8,8 +8,8 @@ import java.awt.Color;
  * State for when an error occurs while process an answer.
  */
 public class ErrorAnswerState extends AnswerState {
-	public ErrorAnswerState(Document document, String description) {
-		super("Error", description, Color.RED, document);
+	public ErrorAnswerState(HtmlArena.Handle html, String description) {
+		super("Error", description, Color.RED, html);
 	}
 	
 	@Override
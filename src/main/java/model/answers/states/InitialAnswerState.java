@@ -1,12 +1,12 @@
 package model.answers.states;
 
-import org.jsoup.nodes.Document;
+import utils.HtmlArena;
 
 import java.awt.Color;
 
 public class InitialAnswerState extends AnswerState {
-	public InitialAnswerState(Document document, String description) {
-		super("Fetching", description, Color.LIGHT_GRAY, document);
+	public InitialAnswerState(HtmlArena.Handle html, String description) {
+		super("Fetching", description, Color.LIGHT_GRAY, html);
 	}
 	
 	@Override
@@ -1,13 +1,13 @@
 package model.answers.states;
 
-import org.jsoup.nodes.Document;
+import utils.HtmlArena;
 
 /*
  * Answer state to determine idle / loading state
  */
 public class LoadingAnswerState extends AnswerState {
-	public LoadingAnswerState(Document document, String description) {
-		super("Waiting", description, null, document);
+	public LoadingAnswerState(HtmlArena.Handle html, String description) {
+		super("Waiting", description, null, html);
 	}
 	
 	@Override
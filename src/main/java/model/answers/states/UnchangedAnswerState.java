@@ -0,0 +1,21 @@
+package model.answers.states;
+
+import utils.HtmlArena;
+
+import java.awt.Color;
+
+/*
+ * State for an answer the transformation rules did not change, so it was not updated
+ */
+public class UnchangedAnswerState extends AnswerState {
+	public UnchangedAnswerState(HtmlArena.Handle html, String description) {
+		super("Unchanged", description, Color.GRAY, html);
+	}
+	
+	@Override
+	public String getDescription() {
+		if (super.getDescription() != null && !super.getDescription().equals("")) return super.getDescription();
+		
+		return "None of the transformation rules apply to this answer, so it was not updated";
+	}
+}
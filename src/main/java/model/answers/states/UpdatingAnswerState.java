@@ -1,13 +1,13 @@
 package model.answers.states;
 
-import org.jsoup.nodes.Document;
+import utils.HtmlArena;
 
 /*
  * Answer state representing it is being updated
  */
 public class UpdatingAnswerState extends AnswerState {
-	public UpdatingAnswerState(Document document, String description) {
-		super("Updating", description, null, document);
+	public UpdatingAnswerState(HtmlArena.Handle html, String description) {
+		super("Updating", description, null, html);
 	}
 	
 	@Override
@@ -0,0 +1,233 @@
+package model.network;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import utils.callbacks.ConcurrencyLimitCallback;
+
+/**
+ * Limits how many requests are in flight at once, adjusting the limit to what the server can handle
+ * (additive increase, multiplicative decrease).
+ *
+ * Latency is tracked as two moving averages: a short one over roughly the last few responses, and a
+ * long one over hundreds of responses that serves as the baseline. While the short average stays
+ * close to the baseline the limit grows by about one request for every full window of successful
+ * responses. When the short average climbs well past the baseline the limit shrinks a little, and
+ * when the server sheds load (HTTP 429 or 503) it is halved. Averaging keeps the odd slow response of
+ * a jittery server from counting as a queue building up. Decreases happen at most once per round
+ * trip, so one burst of rejections only counts once.
+ *
+ * Latencies passed in should cover only the request's time on the network, not time spent waiting
+ * on client side limits, or the limiter would back off from its own queueing.
+ */
+public class AdaptiveConcurrencyLimiter {
+	public static final int DEFAULT_INITIAL_LIMIT = 4;
+	public static final int DEFAULT_MAX_LIMIT = 256;
+
+	private static final double LATENCY_TOLERANCE = 2.0; // A short average this many times the baseline counts as rising
+	private static final double LATENCY_BACKOFF = 0.9;
+	private static final double OVERLOAD_BACKOFF = 0.5;
+	private static final double SHORT_SMOOTHING = 0.1; // Weight of each sample in the short average, about the last 10
+	private static final double BASELINE_SMOOTHING = 1.0 / 500; // Weight of each sample in the baseline, about the last 500
+	private static final long MIN_BACKOFF_INTERVAL = TimeUnit.MILLISECONDS.toNanos(100);
+
+	final private int minLimit;
+	final private int maxLimit;
+	final private Queue<CompletableFuture<Void>> waiting = new ArrayDeque<>();
+	private volatile ConcurrencyLimitCallback callback;
+
+	// Guarded by this
+	private double limit;
+	private int inFlight;
+	private double shortLatency;
+	private double baseline;
+	private long samples;
+	private long lastBackoff;
+
+	/**
+	 * Constructs a limiter with the default initial and maximum limits.
+	 */
+	public AdaptiveConcurrencyLimiter() {
+		this(DEFAULT_INITIAL_LIMIT, 1, DEFAULT_MAX_LIMIT);
+	}
+
+	/**
+	 * Constructs a limiter.
+	 *
+	 * @param initialLimit The number of requests allowed in flight before any have completed.
+	 * @param minLimit The lowest the limit can be backed off to.
+	 * @param maxLimit The highest the limit can grow to.
+	 */
+	public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit) {
+		this.minLimit = Math.max(1, minLimit);
+		this.maxLimit = Math.max(this.minLimit, maxLimit);
+		this.limit = Math.min(this.maxLimit, Math.max(this.minLimit, initialLimit));
+		this.lastBackoff = System.nanoTime() - MIN_BACKOFF_INTERVAL;
+	}
+
+	/**
+	 * Sets the callback notified when the limit changes. Called from the thread that completed the
+	 * request.
+	 */
+	public void setCallback(ConcurrencyLimitCallback callback) {
+		this.callback = callback;
+	}
+
+	/**
+	 * The number of requests currently allowed in flight at once.
+	 */
+	public synchronized int getLimit() {
+		return (int) limit;
+	}
+
+	/**
+	 * The number of requests currently in flight.
+	 */
+	public synchronized int getInFlight() {
+		return inFlight;
+	}
+
+	/**
+	 * Waits for a slot to send a request in. Every acquired slot must be given back with one of
+	 * {@link #onSuccess(long)}, {@link #onOverload()} or {@link #onIgnore()}.
+	 *
+	 * @throws InterruptedException If the thread is interrupted while waiting.
+	 */
+	public void acquire() throws InterruptedException {
+		CompletableFuture<Void> slot = acquireAsync();
+
+		try {
+			slot.get();
+		} catch (InterruptedException e) {
+			if (!slot.cancel(false)) onIgnore(); // The slot was handed over while being interrupted
+			throw e;
+		} catch (ExecutionException | CancellationException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Takes a slot to send a request in.
+	 *
+	 * @return A future completed once the slot is free.
+	 */
+	private CompletableFuture<Void> acquireAsync() {
+		synchronized (this) {
+			if (inFlight < (int) limit) {
+				inFlight++;
+				return CompletableFuture.completedFuture(null);
+			}
+
+			CompletableFuture<Void> slot = new CompletableFuture<>();
+			waiting.add(slot);
+			return slot;
+		}
+	}
+
+	/**
+	 * Gives back a slot whose request succeeded.
+	 *
+	 * @param latency How long the request took, in nanoseconds.
+	 */
+	public void onSuccess(long latency) {
+		int before, after;
+		List<CompletableFuture<Void>> granted;
+
+		synchronized (this) {
+			before = (int) limit;
+			sampleLatency(latency);
+
+			if (shortLatency > baseline * LATENCY_TOLERANCE) {
+				backOff(LATENCY_BACKOFF, (long) shortLatency);
+			} else if (inFlight >= (int) limit - 1) {
+				limit = Math.min(maxLimit, limit + 1 / limit); // Only growing when the limit is being used
+			}
+
+			after = (int) limit;
+			granted = release();
+		}
+
+		finish(granted, before, after);
+	}
+
+	/**
+	 * Gives back a slot whose request was rejected because the server is overloaded.
+	 */
+	public void onOverload() {
+		int before, after;
+		List<CompletableFuture<Void>> granted;
+
+		synchronized (this) {
+			before = (int) limit;
+			backOff(OVERLOAD_BACKOFF, (long) baseline);
+			after = (int) limit;
+			granted = release();
+		}
+
+		finish(granted, before, after);
+	}
+
+	/**
+	 * Gives back a slot whose request failed for a reason that says nothing about the server's load.
+	 */
+	public void onIgnore() {
+		List<CompletableFuture<Void>> granted;
+		synchronized (this) {
+			granted = release();
+		}
+
+		finish(granted, 0, 0);
+	}
+
+	private void sampleLatency(long latency) {
+		// Plain means of the samples so far until there are enough for the averages, so one
+		// unusually fast first response doesn't set the baseline
+		double mean = 1.0 / ++samples;
+		shortLatency += Math.max(SHORT_SMOOTHING, mean) * (latency - shortLatency);
+		// The baseline moves slowly, so it follows the server's capacity through the day but not a queue building up
+		baseline += Math.max(BASELINE_SMOOTHING, mean) * (latency - baseline);
+	}
+
+	private void backOff(double factor, long roundTrip) {
+		long now = System.nanoTime();
+		if (now - lastBackoff < Math.max(MIN_BACKOFF_INTERVAL, roundTrip)) return;
+
+		limit = Math.max(minLimit, limit * factor);
+		lastBackoff = now;
+	}
+
+	/**
+	 * Frees the caller's slot and hands free slots to waiting callers.
+	 *
+	 * @return The waiting callers that were given a slot, to be completed outside the lock.
+	 */
+	private List<CompletableFuture<Void>> release() {
+		inFlight--;
+
+		List<CompletableFuture<Void>> granted = new ArrayList<>();
+		while (inFlight < (int) limit && !waiting.isEmpty()) {
+			CompletableFuture<Void> slot = waiting.poll();
+			if (slot.isDone()) continue; // Cancelled while waiting
+
+			inFlight++;
+			granted.add(slot);
+		}
+
+		return granted;
+	}
+
+	private void finish(List<CompletableFuture<Void>> granted, int before, int after) {
+		for (CompletableFuture<Void> slot : granted) {
+			if (!slot.complete(null)) onIgnore(); // Cancelled after being granted
+		}
+
+		ConcurrencyLimitCallback callback = this.callback;
+		if (before != after && callback != null) callback.onLimitChanged(after);
+	}
+}
@@ -0,0 +1,332 @@
+package model.network;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import utils.callbacks.CircuitStateCallback;
+
+/**
+ * Stops requests going to a host that is failing, and lets them through again once it recovers.
+ *
+ * The breaker keeps the outcome of the last {@code windowSize} requests. While closed, every request
+ * goes through; once enough requests have been seen and too many of them failed or were slow, the
+ * breaker opens. While open, callers wait rather than fail, so the run pauses instead of spending
+ * requests on a host that isn't answering. After the open period a few probe requests are let
+ * through (half open): if they all succeed the breaker closes, otherwise it opens again.
+ *
+ * Every change of state starts a new generation, and each call is let through with a {@link Permit}
+ * of the generation it was let through in. Outcomes are only counted for the current generation, so a
+ * call let through while closed that finishes during the half open period isn't taken for a probe,
+ * and calls from before a trip don't count against the host once it has recovered.
+ */
+public class CircuitBreaker {
+	/**
+	 * The states of a circuit breaker.
+	 */
+	public enum State {
+		/** Requests go through. */
+		CLOSED("Closed"),
+		/** Requests wait until the open period is over. */
+		OPEN("Open"),
+		/** A few probe requests go through to check if the host has recovered. */
+		HALF_OPEN("Half open");
+
+		final private String name;
+
+		State(String name) {
+			this.name = name;
+		}
+
+		public String getName() {
+			return name;
+		}
+	}
+
+	public static final int DEFAULT_WINDOW_SIZE = 20;
+	public static final int DEFAULT_MIN_CALLS = 10;
+	public static final double DEFAULT_FAILURE_RATE = 0.5;
+	public static final double DEFAULT_SLOW_CALL_RATE = 0.8;
+	public static final long DEFAULT_SLOW_CALL_MILLIS = 5_000;
+	public static final long DEFAULT_OPEN_MILLIS = 30_000;
+	public static final int DEFAULT_PROBES = 3;
+
+	final private int minCalls;
+	final private double failureRate;
+	final private double slowCallRate;
+	final private long slowCallNanos;
+	final private long openMillis;
+	final private int probes;
+	final private Queue<CompletableFuture<Permit>> waiting = new ArrayDeque<>();
+	private volatile CircuitStateCallback callback;
+
+	// Guarded by this
+	final private byte[] window; // Outcome of each recent call, OK, FAILED or SLOW
+	private int windowCount;
+	private int windowNext;
+	private int failures;
+	private int slowCalls;
+	private State state = State.CLOSED;
+	private long generation; // Moved on with every change of state
+	private int tripCount;
+	private int probesStarted;
+	private int probesSucceeded;
+
+	private static final byte OK = 0, FAILED = 1, SLOW = 2;
+
+	/**
+	 * Constructs a circuit breaker with the default thresholds.
+	 */
+	public CircuitBreaker() {
+		this(DEFAULT_WINDOW_SIZE, DEFAULT_MIN_CALLS, DEFAULT_FAILURE_RATE, DEFAULT_SLOW_CALL_RATE, DEFAULT_SLOW_CALL_MILLIS, DEFAULT_OPEN_MILLIS, DEFAULT_PROBES);
+	}
+
+	/**
+	 * Constructs a circuit breaker.
+	 *
+	 * @param windowSize      The number of recent calls the rates are measured over.
+	 * @param minCalls        The fewest calls in the window before the breaker can open.
+	 * @param failureRate     The share of failed calls that opens the breaker.
+	 * @param slowCallRate    The share of slow calls that opens the breaker.
+	 * @param slowCallMillis  How long a call can take before it counts as slow.
+	 * @param openMillis      How long the breaker stays open before probing the host.
+	 * @param probes          The number of probe calls that must succeed to close the breaker.
+	 */
+	public CircuitBreaker(int windowSize, int minCalls, double failureRate, double slowCallRate, long slowCallMillis, long openMillis, int probes) {
+		this.window = new byte[Math.max(1, windowSize)];
+		this.minCalls = Math.min(window.length, Math.max(1, minCalls));
+		this.failureRate = failureRate;
+		this.slowCallRate = slowCallRate;
+		this.slowCallNanos = TimeUnit.MILLISECONDS.toNanos(slowCallMillis);
+		this.openMillis = Math.max(1, openMillis);
+		this.probes = Math.max(1, probes);
+	}
+
+	/**
+	 * Sets the callback notified when the breaker changes state. Called from the thread that caused
+	 * the change while holding the breaker's lock, so notifications arrive in order and the callback
+	 * must not block.
+	 */
+	public void setCallback(CircuitStateCallback callback) {
+		this.callback = callback;
+	}
+
+	public synchronized State getState() {
+		return state;
+	}
+
+	/**
+	 * The number of times the breaker has opened.
+	 */
+	public synchronized int getTripCount() {
+		return tripCount;
+	}
+
+	/**
+	 * Waits until the breaker lets a call through. Every call let through must report its outcome
+	 * with {@link #onSuccess(Permit, long)}, {@link #onFailure(Permit)} or {@link #onIgnore(Permit)}.
+	 *
+	 * @return The permit the call was let through with.
+	 * @throws InterruptedException If the thread is interrupted while waiting.
+	 */
+	public Permit acquire() throws InterruptedException {
+		CompletableFuture<Permit> permission = acquireAsync();
+
+		try {
+			return permission.get();
+		} catch (InterruptedException e) {
+			if (!permission.cancel(false)) onIgnore(permission.join()); // Let through while being interrupted
+			throw e;
+		} catch (ExecutionException | CancellationException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Asks to make a call.
+	 *
+	 * @return A future completed once the breaker lets the call through.
+	 */
+	private synchronized CompletableFuture<Permit> acquireAsync() {
+		if (state == State.CLOSED || (state == State.HALF_OPEN && probesStarted < probes)) {
+			if (state == State.HALF_OPEN) probesStarted++;
+			return CompletableFuture.completedFuture(new Permit(generation));
+		}
+
+		CompletableFuture<Permit> permission = new CompletableFuture<>();
+		waiting.add(permission);
+		return permission;
+	}
+
+	/**
+	 * Records a call that succeeded.
+	 *
+	 * @param permit The permit the call was let through with.
+	 * @param latency How long the call took on the network, in nanoseconds.
+	 */
+	public void onSuccess(Permit permit, long latency) {
+		record(permit, latency > slowCallNanos ? SLOW : OK);
+	}
+
+	/**
+	 * Records a call that failed because of the host (a timeout, connection error or server error).
+	 *
+	 * @param permit The permit the call was let through with.
+	 */
+	public void onFailure(Permit permit) {
+		record(permit, FAILED);
+	}
+
+	/**
+	 * Records a call whose outcome says nothing about the host's health.
+	 *
+	 * @param permit The permit the call was let through with.
+	 */
+	public void onIgnore(Permit permit) {
+		List<CompletableFuture<Permit>> granted;
+		Permit grantedPermit;
+		State before, after;
+
+		synchronized (this) {
+			before = state;
+			// Giving the probe to someone else
+			if (state == State.HALF_OPEN && permit.generation == generation && probesStarted > probesSucceeded) probesStarted--;
+			granted = grant();
+			grantedPermit = new Permit(generation);
+			after = state;
+		}
+
+		finish(granted, grantedPermit, before, after);
+	}
+
+	private void record(Permit permit, byte outcome) {
+		List<CompletableFuture<Permit>> granted;
+		Permit grantedPermit;
+		State before, after;
+
+		synchronized (this) {
+			before = state;
+
+			// Calls let through in an earlier state say nothing about this one
+			if (permit.generation == generation) {
+				if (state == State.HALF_OPEN) {
+					if (outcome == FAILED) {
+						open();
+					} else if (++probesSucceeded >= probes) {
+						close();
+					}
+				} else if (state == State.CLOSED) {
+					addToWindow(outcome);
+					if (windowCount >= minCalls && (failures >= failureRate * windowCount || slowCalls >= slowCallRate * windowCount)) open();
+				}
+			}
+
+			granted = grant();
+			grantedPermit = new Permit(generation);
+			after = state;
+		}
+
+		finish(granted, grantedPermit, before, after);
+	}
+
+	private void addToWindow(byte outcome) {
+		if (windowCount == window.length) {
+			byte oldest = window[windowNext];
+			if (oldest == FAILED) failures--;
+			if (oldest == SLOW) slowCalls--;
+		} else {
+			windowCount++;
+		}
+
+		window[windowNext] = outcome;
+		windowNext = (windowNext + 1) % window.length;
+		if (outcome == FAILED) failures++;
+		if (outcome == SLOW) slowCalls++;
+	}
+
+	private void open() {
+		state = State.OPEN;
+		generation++;
+		tripCount++;
+		CompletableFuture.delayedExecutor(openMillis, TimeUnit.MILLISECONDS).execute(this::halfOpen);
+	}
+
+	private void close() {
+		state = State.CLOSED;
+		generation++;
+		windowCount = windowNext = failures = slowCalls = 0; // Judging the recovered host afresh
+	}
+
+	/**
+	 * Ends the open period, letting the probe calls through.
+	 */
+	private void halfOpen() {
+		List<CompletableFuture<Permit>> granted;
+		Permit grantedPermit;
+		State before, after;
+
+		synchronized (this) {
+			before = state;
+			if (state == State.OPEN) {
+				state = State.HALF_OPEN;
+				generation++;
+				probesStarted = probesSucceeded = 0;
+			}
+
+			granted = grant();
+			grantedPermit = new Permit(generation);
+			after = state;
+		}
+
+		finish(granted, grantedPermit, before, after);
+	}
+
+	/**
+	 * Lets through as many waiting callers as the state allows.
+	 *
+	 * @return The callers let through, to be completed outside the lock with a permit of this generation.
+	 */
+	private List<CompletableFuture<Permit>> grant() {
+		List<CompletableFuture<Permit>> granted = new ArrayList<>();
+
+		while (!waiting.isEmpty() && (state == State.CLOSED || (state == State.HALF_OPEN && probesStarted < probes))) {
+			CompletableFuture<Permit> permission = waiting.poll();
+			if (permission.isDone()) continue; // Cancelled while waiting
+
+			if (state == State.HALF_OPEN) probesStarted++;
+			granted.add(permission);
+		}
+
+		return granted;
+	}
+
+	private void finish(List<CompletableFuture<Permit>> granted, Permit permit, State before, State after) {
+		for (CompletableFuture<Permit> permission : granted) {
+			if (!permission.complete(permit)) onIgnore(permit); // Cancelled after being let through
+		}
+
+		CircuitStateCallback callback = this.callback;
+		if (before == after || callback == null) return;
+
+		synchronized (this) {
+			callback.onCircuitStateChanged(state, tripCount); // The latest state, in case it has moved on again
+		}
+	}
+
+	/**
+	 * Lets a call through the breaker, marked with the generation it was let through in. Permits can
+	 * be shared, as they only tell the breaker which state the call started in.
+	 */
+	public static final class Permit {
+		final private long generation;
+
+		private Permit(long generation) {
+			this.generation = generation;
+		}
+	}
+}
@@ -1,19 +1,32 @@
 package model.network;
 
 public class NetworkConfig {
+    public static final int DEFAULT_BURST = 1;
+
     private String host;
     private User user;
     private int maxRequestsPerMinute;
-    private int requestsMade;
-    private long lastRequestTime;
+    private int burst;
+    private int maxConcurrentRequests;
+    private volatile RateLimiter rateLimiter;
 
     public NetworkConfig(User user, String host, int maxRequestsPerMinute) {
+        this(user, host, maxRequestsPerMinute, DEFAULT_BURST);
+    }
+
+    public NetworkConfig(User user, String host, int maxRequestsPerMinute, int burst) {
+        this(user, host, maxRequestsPerMinute, burst, 0);
+    }
+
+    public NetworkConfig(User user, String host, int maxRequestsPerMinute, int burst, int maxConcurrentRequests) {
     	if (maxRequestsPerMinute < 0) maxRequestsPerMinute = 0;
+    	if (burst < 1) burst = DEFAULT_BURST;
         this.host = host;
         this.user = user;
         this.maxRequestsPerMinute = maxRequestsPerMinute;
-        this.requestsMade = 0;
-        this.lastRequestTime = System.currentTimeMillis();
+        this.burst = burst;
+        this.maxConcurrentRequests = Math.max(0, maxConcurrentRequests);
+        this.rateLimiter = new RateLimiter(maxRequestsPerMinute, burst);
     }
 
     public String getHost() {
@@ -28,46 +41,62 @@ public class NetworkConfig {
         this.user = user;
     }
 
+    /**
+     * The most requests to send each minute, 0 for no limit.
+     */
     public int getMaxRequestsPerMinute() {
         return maxRequestsPerMinute;
     }
 
     public void setMaxRequestsPerMinute(int maxRequestsPerMinute) {
-        this.maxRequestsPerMinute = maxRequestsPerMinute;
+        this.maxRequestsPerMinute = Math.max(0, maxRequestsPerMinute);
+        this.rateLimiter = new RateLimiter(this.maxRequestsPerMinute, burst);
     }
 
-    public int getRequestsMade() {
-        return requestsMade;
+    /**
+     * The most requests that can be sent back to back once the rate limiter has been idle.
+     */
+    public int getBurst() {
+        return burst;
     }
 
-    public void setRequestsMade(int requestsMade) {
-        this.requestsMade = requestsMade;
+    public void setBurst(int burst) {
+        this.burst = Math.max(1, burst);
+        this.rateLimiter = new RateLimiter(maxRequestsPerMinute, this.burst);
     }
 
-    public long getLastRequestTime() {
-        return lastRequestTime;
+    /**
+     * The most requests to have in flight at once, 0 for the pipeline's default. Separate from the
+     * rate, which limits how often requests start rather than how many are waiting on the server.
+     */
+    public int getMaxConcurrentRequests() {
+        return maxConcurrentRequests;
     }
 
-    public void setLastRequestTime(long lastRequestTime) {
-        this.lastRequestTime = lastRequestTime;
+    public void setMaxConcurrentRequests(int maxConcurrentRequests) {
+        this.maxConcurrentRequests = Math.max(0, maxConcurrentRequests);
     }
 
-    public synchronized boolean canMakeRequest() {
-        long currentTime = System.currentTimeMillis();
-        if ((currentTime - lastRequestTime) / 1000 >= 60) { // If a minute has passed
-            requestsMade = 0;
-            lastRequestTime = currentTime;
-        }
+    /**
+     * The rate limiter every request sent with this config waits on.
+     */
+    public RateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
 
-        if (requestsMade >= maxRequestsPerMinute) {
-            return false;
-        } 
-        
-        requestsMade++;
-        
-        return false;
+    /**
+     * Carries over the rate limiter of the config this one replaces, so replacing the config (for
+     * example to change the user) doesn't hand out a fresh burst of permits. The limiter is only
+     * kept if the rate and burst are unchanged.
+     *
+     * @param previous The config being replaced, may be null.
+     */
+    public void preserveRateLimit(NetworkConfig previous) {
+        if (previous == null) return;
+
+        RateLimiter limiter = previous.getRateLimiter();
+        if (limiter.getPermitsPerMinute() == maxRequestsPerMinute && limiter.getBurst() == burst) {
+            this.rateLimiter = limiter;
+        }
     }
 }
-
-
-
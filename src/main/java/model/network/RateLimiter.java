@@ -0,0 +1,97 @@
+package model.network;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A lock-free token bucket that spreads requests evenly over a minute.
+ *
+ * The bucket refills smoothly at {@code permitsPerMinute / 60} permits a second and holds at most
+ * {@code burst} permits. Rather than counting tokens it keeps the time the next permit is due (the
+ * generic cell rate algorithm), so taking a permit is a single compare-and-set. Callers that can't
+ * take a permit straight away reserve the next free one and wait for it, so no request is turned away
+ * and the configured rate is never exceeded.
+ */
+public class RateLimiter {
+	private static final long NANOS_PER_MINUTE = TimeUnit.MINUTES.toNanos(1);
+
+	final private int permitsPerMinute;
+	final private int burst;
+	final private long interval; // Nanoseconds between permits
+	final private long tolerance; // How far ahead of schedule a burst can run
+	final private AtomicLong nextFree; // The time the bucket is next empty, in System.nanoTime
+
+	/**
+	 * Constructs a rate limiter.
+	 *
+	 * @param permitsPerMinute The permits handed out each minute, 0 or less for no limit.
+	 * @param burst The most permits that can be taken at once after the bucket has filled up.
+	 */
+	public RateLimiter(int permitsPerMinute, int burst) {
+		this.permitsPerMinute = Math.max(0, permitsPerMinute);
+		this.burst = Math.max(1, burst);
+		this.interval = this.permitsPerMinute == 0 ? 0 : Math.max(1, NANOS_PER_MINUTE / this.permitsPerMinute);
+		this.tolerance = interval * (this.burst - 1);
+		this.nextFree = new AtomicLong(System.nanoTime() - tolerance); // Starting with a full bucket
+	}
+
+	public int getPermitsPerMinute() {
+		return permitsPerMinute;
+	}
+
+	public int getBurst() {
+		return burst;
+	}
+
+	/**
+	 * Checks if the limiter lets every request through.
+	 */
+	public boolean isUnlimited() {
+		return interval == 0;
+	}
+
+	/**
+	 * Takes a permit if one is free right now.
+	 *
+	 * @return true if a permit was taken.
+	 */
+	public boolean tryAcquire() {
+		if (isUnlimited()) return true;
+
+		while (true) {
+			long now = System.nanoTime();
+			long free = nextFree.get();
+			long start = Math.max(free, now - tolerance);
+			if (start - now > 0) return false;
+
+			if (nextFree.compareAndSet(free, start + interval)) return true;
+		}
+	}
+
+	/**
+	 * Takes a permit, waiting until one is free.
+	 *
+	 * @throws InterruptedException If the thread is interrupted while waiting. The permit is still used up.
+	 */
+	public void acquire() throws InterruptedException {
+		long wait = reserve();
+		if (wait > 0) TimeUnit.NANOSECONDS.sleep(wait);
+	}
+
+	/**
+	 * Reserves the next free permit.
+	 *
+	 * @return The nanoseconds until the permit can be used, 0 or less if it can be used now.
+	 */
+	private long reserve() {
+		if (isUnlimited()) return 0;
+
+		while (true) {
+			long now = System.nanoTime();
+			long free = nextFree.get();
+			long start = Math.max(free, now - tolerance);
+
+			if (nextFree.compareAndSet(free, start + interval)) return start - now;
+		}
+	}
+}
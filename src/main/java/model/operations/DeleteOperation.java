@@ -9,6 +9,7 @@ import java.util.Objects;
  */
 public class DeleteOperation implements Operation<String> {
     final private String searchPhrase;
+    final private Pattern pattern;
 
     /**
      * Constructs a DeleteOperation, setting the replacement text to an empty string.
@@ -17,6 +18,9 @@ public class DeleteOperation implements Operation<String> {
      */
     public DeleteOperation(String searchPhrase) {
         this.searchPhrase = searchPhrase; // Deleting text means setting it to an empty string
+
+        // Regex to remove the phrase and any spaces/punctuation on the right side only
+        this.pattern = Pattern.compile("\\b" + Pattern.quote(searchPhrase) + "\\b\\s*");
     }
 
     /**
@@ -27,9 +31,9 @@ public class DeleteOperation implements Operation<String> {
      */
     @Override
     public String operate(String element) {
-        // Regex to remove the phrase and any spaces/punctuation on the right side only
-        String regex = "\\b" + Pattern.quote(searchPhrase) + "\\b\\s*";
-        return element.replaceAll(regex, "").trim();
+        if (!element.contains(searchPhrase)) return element; // Nothing to delete, leave the spacing alone
+
+        return pattern.matcher(element).replaceAll("").trim();
     }
     
     @Override
@@ -37,6 +41,11 @@ public class DeleteOperation implements Operation<String> {
         return "Delete";
     }
 
+    @Override
+    public String getSearchPhrase() {
+        return searchPhrase;
+    }
+
     @Override
     public boolean equals(Object obj) {
         if (this == obj) return true;  // Check if they are the same instance
@@ -15,4 +15,24 @@ public interface Operation<Element> {
     public Element operate(Element element); 
     
     public String getName();
+
+    /**
+     * The phrase this operation acts on. An operation with a search phrase must leave any element
+     * that does not contain the phrase unchanged, which lets callers skip it for those elements.
+     *
+     * @return The search phrase, or null if the operation has to see every element.
+     */
+    public default String getSearchPhrase() {
+        return null;
+    }
+
+    /**
+     * Describes everything that affects what this operation does, so two operations with the same
+     * signature always give the same result.
+     *
+     * @return The operation's type followed by its settings.
+     */
+    public default String getSignature() {
+        return getClass().getSimpleName() + "(" + getSearchPhrase() + ", " + getName() + ")";
+    }
 }
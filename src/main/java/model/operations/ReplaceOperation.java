@@ -34,6 +34,11 @@ public class ReplaceOperation implements Operation<String> {
 	public String getName() {
 		return "Replace with " + replacementText;
 	}
+
+	@Override
+	public String getSearchPhrase() {
+		return searchPhrase;
+	}
 	
 	@Override
     public boolean equals(Object obj) {
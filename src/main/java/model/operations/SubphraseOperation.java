@@ -7,6 +7,7 @@ package model.operations;
 public class SubphraseOperation implements Operation<String> {
     private Operation<String> subOperation;
     private String searchPhrase;
+    private String modifiedSubphrase; // Result of the sub-operation on the search phrase, worked out once
 
     /**
      * Constructs a SubphraseOperation that targets a specific search phrase and applies a specified sub-operation to it.
@@ -17,6 +18,7 @@ public class SubphraseOperation implements Operation<String> {
     public SubphraseOperation(String searchPhrase, Operation<String> subOperation) {
         this.searchPhrase = searchPhrase;
         this.subOperation = subOperation;
+        this.modifiedSubphrase = subOperation.operate(searchPhrase);
     }
     
     /**
@@ -29,7 +31,6 @@ public class SubphraseOperation implements Operation<String> {
     public String operate(String element) {
         if (element.contains(searchPhrase)) {
             // Replace the exact search phrase within the text with the result of the sub-operation
-            String modifiedSubphrase = subOperation.operate(searchPhrase);
             return element.replace(searchPhrase, modifiedSubphrase);
         }
         return element;
@@ -39,6 +40,16 @@ public class SubphraseOperation implements Operation<String> {
 	public String getName() {
 		return subOperation.getName();
 	}
+
+	@Override
+	public String getSearchPhrase() {
+		return searchPhrase;
+	}
+
+	@Override
+	public String getSignature() {
+		return "SubphraseOperation(" + searchPhrase + ", " + subOperation.getSignature() + ")";
+	}
 	
 	@Override
     public boolean equals(Object obj) {
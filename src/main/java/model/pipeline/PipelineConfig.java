@@ -0,0 +1,118 @@
+package model.pipeline;
+
+/**
+ * Settings for how answers are run through the fetch, transform and update stages.
+ */
+public class PipelineConfig {
+
+    /**
+     * How the network stages (fetch and update) are run.
+     */
+    public enum ExecutionMode {
+        /** A fixed pool of worker threads for each network stage. */
+        POOLED,
+        /** A virtual thread for every request, capped by {@code maxConcurrentRequests} for each stage. */
+        VIRTUAL_THREADS
+    }
+
+    public static final int DEFAULT_FETCH_WORKERS = 4;
+    public static final int DEFAULT_TRANSFORM_WORKERS = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+    public static final int DEFAULT_UPDATE_WORKERS = 4;
+    public static final int DEFAULT_QUEUE_CAPACITY = 32;
+    public static final int DEFAULT_MAX_CONCURRENT_REQUESTS = 64;
+
+    private int fetchWorkers;
+    private int transformWorkers;
+    private int updateWorkers;
+    private int queueCapacity;
+    private ExecutionMode executionMode;
+    private int maxConcurrentRequests;
+    private RetryPolicy retryPolicy;
+
+    /**
+     * Constructs a PipelineConfig with the default pooled settings.
+     */
+    public PipelineConfig() {
+        this(DEFAULT_FETCH_WORKERS, DEFAULT_TRANSFORM_WORKERS, DEFAULT_UPDATE_WORKERS, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * Constructs a pooled PipelineConfig with the given number of workers for each stage.
+     *
+     * @param fetchWorkers     The number of threads fetching answers.
+     * @param transformWorkers The number of threads parsing and transforming answers.
+     * @param updateWorkers    The number of threads sending updated answers.
+     * @param queueCapacity    The number of answers each stage can have waiting.
+     */
+    public PipelineConfig(int fetchWorkers, int transformWorkers, int updateWorkers, int queueCapacity) {
+        setFetchWorkers(fetchWorkers);
+        setTransformWorkers(transformWorkers);
+        setUpdateWorkers(updateWorkers);
+        setQueueCapacity(queueCapacity);
+        this.executionMode = ExecutionMode.POOLED;
+        this.maxConcurrentRequests = DEFAULT_MAX_CONCURRENT_REQUESTS;
+        this.retryPolicy = new RetryPolicy();
+    }
+
+    public int getFetchWorkers() {
+        return fetchWorkers;
+    }
+
+    public void setFetchWorkers(int fetchWorkers) {
+        this.fetchWorkers = Math.max(1, fetchWorkers);
+    }
+
+    public int getTransformWorkers() {
+        return transformWorkers;
+    }
+
+    public void setTransformWorkers(int transformWorkers) {
+        this.transformWorkers = Math.max(1, transformWorkers);
+    }
+
+    public int getUpdateWorkers() {
+        return updateWorkers;
+    }
+
+    public void setUpdateWorkers(int updateWorkers) {
+        this.updateWorkers = Math.max(1, updateWorkers);
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = Math.max(1, queueCapacity);
+    }
+
+    public ExecutionMode getExecutionMode() {
+        return executionMode;
+    }
+
+    public void setExecutionMode(ExecutionMode executionMode) {
+        this.executionMode = executionMode == null ? ExecutionMode.POOLED : executionMode;
+    }
+
+    /**
+     * The most requests each network stage can have in flight at once when running with virtual threads.
+     */
+    public int getMaxConcurrentRequests() {
+        return maxConcurrentRequests;
+    }
+
+    public void setMaxConcurrentRequests(int maxConcurrentRequests) {
+        this.maxConcurrentRequests = Math.max(1, maxConcurrentRequests);
+    }
+
+    /**
+     * How requests that fail with a transient error are retried.
+     */
+    public RetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    public void setRetryPolicy(RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy == null ? new RetryPolicy(1, 1, 1) : retryPolicy;
+    }
+}
@@ -0,0 +1,101 @@
+package model.pipeline;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+
+import data.dataSources.OracleStatusException;
+
+/**
+ * Decides which failed requests are worth retrying and how long to wait before each retry.
+ *
+ * Failures that may clear up by themselves are transient: timeouts and other connection errors,
+ * 408 Request Timeout, 429 Too Many Requests and 5xx server errors. Everything else (404 Not Found,
+ * 401 and 403 auth failures, missing user details, malformed responses) is permanent and fails the
+ * answer straight away. Delays double with each attempt up to a cap, and are picked at random between
+ * half and all of that bound, so answers that failed together don't all retry together.
+ */
+public class RetryPolicy {
+    public static final int DEFAULT_MAX_ATTEMPTS = 5;
+    public static final long DEFAULT_BASE_DELAY_MILLIS = 500;
+    public static final long DEFAULT_MAX_DELAY_MILLIS = 30_000;
+
+    final private int maxAttempts;
+    final private long baseDelayMillis;
+    final private long maxDelayMillis;
+
+    /**
+     * Constructs a retry policy with the default attempts and delays.
+     */
+    public RetryPolicy() {
+        this(DEFAULT_MAX_ATTEMPTS, DEFAULT_BASE_DELAY_MILLIS, DEFAULT_MAX_DELAY_MILLIS);
+    }
+
+    /**
+     * Constructs a retry policy.
+     *
+     * @param maxAttempts     The most times a request is tried, including the first. 1 turns retrying off.
+     * @param baseDelayMillis The upper bound of the delay before the first retry.
+     * @param maxDelayMillis  The upper bound of the delay before any retry.
+     */
+    public RetryPolicy(int maxAttempts, long baseDelayMillis, long maxDelayMillis) {
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.baseDelayMillis = Math.max(1, baseDelayMillis);
+        this.maxDelayMillis = Math.max(this.baseDelayMillis, maxDelayMillis);
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public long getBaseDelayMillis() {
+        return baseDelayMillis;
+    }
+
+    public long getMaxDelayMillis() {
+        return maxDelayMillis;
+    }
+
+    /**
+     * Checks if a request that failed should be tried again.
+     *
+     * @param error    The reason the request failed.
+     * @param attempts The number of times the request has been tried so far.
+     * @return true if the failure is transient and attempts remain.
+     */
+    public boolean shouldRetry(Throwable error, int attempts) {
+        return attempts < maxAttempts && isTransient(error);
+    }
+
+    /**
+     * Picks how long to wait before the next attempt.
+     *
+     * @param attempts The number of times the request has been tried so far.
+     * @return The delay in milliseconds.
+     */
+    public long nextDelayMillis(int attempts) {
+        int doublings = Math.min(Math.max(0, attempts - 1), 30);
+        long bound = Math.min(maxDelayMillis, baseDelayMillis << doublings);
+
+        return ThreadLocalRandom.current().nextLong(bound / 2, bound + 1);
+    }
+
+    /**
+     * Checks if a failure may clear up if the request is tried again.
+     *
+     * @param error The reason the request failed.
+     * @return true for timeouts, connection errors, 408, 429 and 5xx responses.
+     */
+    public static boolean isTransient(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof OracleStatusException) {
+                int status = ((OracleStatusException) cause).getStatus();
+                return status == 408 || status == 429 || status >= 500;
+            }
+
+            if (cause instanceof IOException) return true; // Timeouts, refused and reset connections
+            if (cause.getCause() == cause) break;
+        }
+
+        return false;
+    }
+}
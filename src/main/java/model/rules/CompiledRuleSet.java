@@ -0,0 +1,338 @@
+package model.rules;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.jsoup.nodes.Attribute;
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.TextNode;
+import org.jsoup.parser.Parser;
+
+import model.operations.Operation;
+import model.rules.TargetConfig.TargetType;
+import utils.PhraseMatcher;
+
+/**
+ * An immutable, ready to run form of an ordered list of {@link HtmlTransformationRule}s.
+ *
+ * Compiling a rule set builds one {@link PhraseMatcher} over every rule's search phrase and flattens
+ * each rule's {@link TargetConfig} into simple predicates, so none of that work is repeated for each
+ * element or answer. A compiled rule set holds no per-document state and can be shared between threads.
+ */
+public class CompiledRuleSet implements TransformationRule<Element> {
+	// Tags the parser can add to the body without them being in the html: tbody and tr around table
+	// cells, colgroup around a bare col, img for an image tag and the form an obsolete isindex becomes
+	private static final String[] IMPLICIT_TAGS = {"body", "tbody", "tr", "colgroup", "img", "form", "hr", "label", "input"};
+
+	final private List<HtmlTransformationRule> rules;
+	final private List<Operation<String>> operations;
+	final private int[] phraseIds; // Phrase id of each rule in the matcher, -1 if the rule must always run
+	final private PhraseMatcher matcher;
+
+	final private TargetPredicate[] tagTargets;
+	final private TargetPredicate[] attributeTargets;
+
+	// Indexes of the rules that can ever apply to each kind of value, in rule order
+	final private int[] tagRules;
+	final private int[] attributeRules;
+	final private int[] textRules;
+
+	final private boolean alwaysMatches; // Set when a rule could change a document without its phrase in the raw html
+	final private long fingerprint;
+
+	private CompiledRuleSet(List<HtmlTransformationRule> rules) {
+		int size = rules.size();
+		this.rules = Collections.unmodifiableList(new ArrayList<>(rules));
+		this.operations = new ArrayList<>(size);
+		this.phraseIds = new int[size];
+		this.tagTargets = new TargetPredicate[size];
+		this.attributeTargets = new TargetPredicate[size];
+
+		List<String> phrases = new ArrayList<>();
+		List<Integer> tags = new ArrayList<>();
+		List<Integer> attributes = new ArrayList<>();
+		List<Integer> text = new ArrayList<>();
+
+		for (int i = 0; i < size; i++) {
+			HtmlTransformationRule rule = rules.get(i);
+			operations.add(rule.getOperation());
+
+			String phrase = rule.getOperation().getSearchPhrase();
+			if (phrase == null || phrase.isEmpty()) {
+				phraseIds[i] = -1;
+			} else {
+				phraseIds[i] = phrases.size();
+				phrases.add(phrase);
+			}
+
+			// Same conditions as HtmlTransformationRule.targetsTag and targetsAttribute
+			TargetConfig config = rule.getTargetConfig();
+			boolean targetTags = config.checkTarget(TargetType.TAGS);
+			boolean targetAttributes = config.checkTarget(TargetType.ATTRIBUTES);
+			tagTargets[i] = new TargetPredicate(targetTags, !targetTags, specifics(config, TargetType.TAGS));
+			attributeTargets[i] = new TargetPredicate(!targetAttributes, targetAttributes, specifics(config, TargetType.ATTRIBUTES));
+
+			if (tagTargets[i].canMatch()) tags.add(i);
+			if (attributeTargets[i].canMatch()) attributes.add(i);
+			if (config.checkTarget(TargetType.TEXT)) text.add(i);
+		}
+
+		this.matcher = new PhraseMatcher(phrases);
+		this.tagRules = tags.stream().mapToInt(Integer::intValue).toArray();
+		this.attributeRules = attributes.stream().mapToInt(Integer::intValue).toArray();
+		this.textRules = text.stream().mapToInt(Integer::intValue).toArray();
+		this.alwaysMatches = checkAlwaysMatches();
+		this.fingerprint = computeFingerprint(this.rules);
+	}
+
+	/**
+	 * Compiles the rules into a rule set. Later changes to the list do not affect the compiled set.
+	 *
+	 * @param rules The rules to compile, in the order they should be applied.
+	 * @return The compiled rule set.
+	 */
+	public static CompiledRuleSet compile(List<HtmlTransformationRule> rules) {
+		if (rules == null) rules = List.of();
+		return new CompiledRuleSet(rules);
+	}
+
+	/**
+	 * The rules this set was compiled from, in order.
+	 */
+	public List<HtmlTransformationRule> getRules() {
+		return rules;
+	}
+
+	/**
+	 * Identifies what the rule set does: rule sets with the same rules in the same order have the
+	 * same fingerprint, whichever session they were created in. Used to tell if work recorded for an
+	 * answer was done with the current rules.
+	 *
+	 * @return The first 8 bytes of a SHA-256 hash of the rules.
+	 */
+	public long getFingerprint() {
+		return fingerprint;
+	}
+
+	/**
+	 * The number of rules in the set.
+	 */
+	public int size() {
+		return rules.size();
+	}
+
+	/**
+	 * Checks if the rule set has no rules.
+	 */
+	public boolean isEmpty() {
+		return rules.isEmpty();
+	}
+
+	/**
+	 * Checks the raw html of a document for any of the rules' search phrases, without parsing it.
+	 *
+	 * A false result means no rule can change the document, so it does not need to be parsed or
+	 * transformed. A true result only means a rule might apply. Entities are decoded before giving up
+	 * so a phrase written as "&amp;" in the html is still found.
+	 *
+	 * @param html The raw html of the document.
+	 * @return false if the rule set is certain to leave the document unchanged.
+	 */
+	public boolean mayMatch(String html) {
+		if (alwaysMatches) return true;
+		if (html == null || html.isEmpty()) return false;
+
+		if (matcher.matchesAny(html)) return true;
+		return html.indexOf('&') != -1 && matcher.matchesAny(Parser.unescapeEntities(html, false));
+	}
+
+	/**
+	 * Applies the whole rule chain to the element's tag name, own text nodes and attribute values.
+	 *
+	 * @param element The element to transform.
+	 * @return true if any rule changed the element.
+	 */
+	@Override
+	public boolean transform(Element element) {
+		return transform(element, null);
+	}
+
+	/**
+	 * Applies the whole rule chain to the element, counting the changes each rule makes.
+	 *
+	 * @param element The element to transform.
+	 * @param ruleHits Incremented at a rule's index each time the rule changes a value, may be null.
+	 * @return true if any rule changed the element.
+	 */
+	public boolean transform(Element element, int[] ruleHits) {
+		boolean changed = false;
+
+		// Transforming the tag name
+		if (tagRules.length > 0) {
+			String tagName = element.tagName();
+			changed = !applyRules(tagName, tagRules, TargetType.TAGS, null, element, ruleHits).equals(tagName);
+		}
+
+		// Transforming text nodes
+		if (textRules.length > 0) {
+			for (TextNode textNode : element.textNodes()) {
+				String text = textNode.getWholeText();
+				String newText = applyRules(text, textRules, TargetType.TEXT, null, element, ruleHits);
+				if (newText.equals(text)) continue;
+
+				textNode.text(newText);
+				changed = true;
+			}
+		}
+
+		// Transforming attribute values
+		if (attributeRules.length == 0 || element.attributesSize() == 0) return changed;
+		for (Attribute attribute : element.attributes()) {
+			String value = attribute.getValue();
+			String newValue = applyRules(value, attributeRules, TargetType.ATTRIBUTES, attribute.getKey(), element, ruleHits);
+			if (newValue.equals(value)) continue;
+
+			attribute.setValue(newValue);
+			changed = true;
+		}
+
+		return changed;
+	}
+
+	/**
+	 * Runs the value through every rule that targets it and whose phrase occurs in it.
+	 *
+	 * @param value The tag name, text or attribute value to transform.
+	 * @param chain The rules that can apply to this kind of value.
+	 * @param type The kind of value being transformed.
+	 * @param key The attribute key when transforming an attribute value.
+	 * @param element The element the value belongs to, renamed straight away when transforming tags.
+	 * @param ruleHits Counts of the changes made by each rule, may be null.
+	 * @return The transformed value.
+	 */
+	private String applyRules(String value, int[] chain, TargetType type, String key, Element element, int[] ruleHits) {
+		BitSet found = null; // Only scanned once a rule needs it
+
+		for (int i : chain) {
+			if (type == TargetType.TAGS && !tagTargets[i].test(value)) continue; // Earlier rules may have renamed the tag
+			if (type == TargetType.ATTRIBUTES && !attributeTargets[i].test(key)) continue;
+
+			if (phraseIds[i] != -1) {
+				if (found == null) found = matcher.match(value);
+				if (!found.get(phraseIds[i])) continue;
+			}
+
+			String result = operations.get(i).operate(value);
+			if (!result.equals(value)) {
+				if (ruleHits != null) ruleHits[i]++;
+
+				if (type == TargetType.TAGS) {
+					element.tagName(result);
+					result = element.tagName(); // Later rules see the normalised tag name
+				}
+
+				value = result;
+				found = null; // The change may introduce phrases for later rules
+			}
+		}
+
+		return value;
+	}
+
+	/**
+	 * Checks for rules that can change a document whose raw html does not contain their phrase: rules
+	 * that always run, and tag rules matching a tag the parser adds by itself.
+	 */
+	private boolean checkAlwaysMatches() {
+		for (int i = 0; i < phraseIds.length; i++) {
+			if (phraseIds[i] == -1) return true;
+		}
+
+		for (String implicitTag : IMPLICIT_TAGS) {
+			BitSet found = matcher.match(implicitTag);
+			for (int i : tagRules) {
+				if (found.get(phraseIds[i])) return true;
+			}
+		}
+
+		return false;
+	}
+
+	private static long computeFingerprint(List<HtmlTransformationRule> rules) {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 is not available", e); // Every JVM has to provide it
+		}
+
+		// Hashing a canonical description of each rule, with sets sorted so their order doesn't matter
+		for (HtmlTransformationRule rule : rules) {
+			update(digest, rule.getSearchPhrase());
+			update(digest, rule.getOperation().getSignature());
+
+			TargetConfig config = rule.getTargetConfig();
+			for (TargetType type : TargetType.values()) {
+				update(digest, type.name() + "=" + config.checkTarget(type));
+
+				Set<String> specifics = config.getSpecificTargets().get(type);
+				if (specifics != null) {
+					for (String specific : new TreeSet<>(specifics)) update(digest, specific);
+				}
+				update(digest, null); // Ending the list of specific targets
+			}
+		}
+
+		return ByteBuffer.wrap(digest.digest()).getLong();
+	}
+
+	private static void update(MessageDigest digest, String value) {
+		if (value == null) {
+			digest.update(ByteBuffer.allocate(4).putInt(-1).array());
+			return;
+		}
+
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		digest.update(ByteBuffer.allocate(4).putInt(bytes.length).array()); // Length prefixed so values can't run together
+		digest.update(bytes);
+	}
+
+	private static Set<String> specifics(TargetConfig config, TargetType type) {
+		Set<String> specifics = config.getSpecificTargets().get(type);
+		return specifics == null || specifics.isEmpty() ? Set.of() : Collections.unmodifiableSet(new HashSet<>(specifics));
+	}
+
+	/**
+	 * A flattened tag or attribute target check: names in the specific set give one answer, every
+	 * other name gives the other.
+	 */
+	private static class TargetPredicate {
+		final private boolean whenListed;
+		final private boolean otherwise;
+		final private Set<String> names;
+
+		TargetPredicate(boolean whenListed, boolean otherwise, Set<String> names) {
+			this.whenListed = whenListed;
+			this.otherwise = otherwise;
+			this.names = names;
+		}
+
+		boolean test(String name) {
+			if (names.isEmpty()) return otherwise;
+			return names.contains(name) ? whenListed : otherwise;
+		}
+
+		boolean canMatch() {
+			return otherwise || (whenListed && !names.isEmpty());
+		}
+	}
+}
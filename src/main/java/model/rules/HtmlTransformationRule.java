@@ -68,35 +68,83 @@ public class HtmlTransformationRule implements TransformationRule<Element> {
     }
 
     @Override
-    public void transform(Element element) {
-        _transformTag(element); // Transforming the tag name
-        _transformText(element.textNodes()); // Transforming text nodes
-        _transformAttributes(element.attributes().asList()); // Transforming attribute nodes
+    public boolean transform(Element element) {
+        boolean changed = _transformTag(element); // Transforming the tag name
+        changed |= _transformText(element.textNodes()); // Transforming text nodes
+        changed |= _transformAttributes(element.attributes().asList()); // Transforming attribute nodes
+        return changed;
     }
 
-    public void _transformTag(Element element) {
-        boolean targetTags = targetConfig.checkTarget(TargetType.TAGS);
-        boolean validTag = (targetTags && !targetConfig.containsSpecific(TargetType.TAGS, element.tagName())) || (!targetTags && targetConfig.containsSpecific(TargetType.TAGS, element.tagName()));
+    public boolean _transformTag(Element element) {
+        if (!targetsTag(element.tagName())) return false; // Checking if the element is valid to transform
 
-        if (validTag) return; // Checking if the element is valid to transform
+        String tagName = operation.operate(element.tagName());
+        if (tagName.equals(element.tagName())) return false;
 
-        element.tagName(operation.operate(element.tagName()));
+        element.tagName(tagName);
+        return true;
     }
 
-    public void _transformAttributes(List<Attribute> attributes) {
-        boolean targetAttr = targetConfig.checkTarget(TargetType.ATTRIBUTES);
+    public boolean _transformAttributes(List<Attribute> attributes) {
+        boolean changed = false;
+        for (Attribute att : attributes) {
+            if (!targetsAttribute(att.getKey())) continue;
+
+            String value = operation.operate(att.getValue());
+            if (value.equals(att.getValue())) continue;
+
+            att.setValue(value);
+            changed = true;
+        }
+        return changed;
+    }
+
+    public boolean _transformText(List<TextNode> textNodes) {
+        if (!targetsText()) return false;
 
-        attributes.stream()
-            .filter((a) -> (targetAttr && !targetConfig.containsSpecific(TargetType.ATTRIBUTES, a.getKey())) || (!targetAttr && targetConfig.containsSpecific(TargetType.ATTRIBUTES, a.getKey())))
-            .forEach(att -> {
-                att.setValue(operation.operate(att.getValue()));
-            });
+        boolean changed = false;
+        for (TextNode tn : textNodes) {
+            String text = operation.operate(tn.getWholeText());
+            if (text.equals(tn.getWholeText())) continue;
+
+            tn.text(text);
+            changed = true;
+        }
+        return changed;
     }
 
-    public void _transformText(List<TextNode> textNodes) {
-        if (!targetConfig.checkTarget(TargetType.TEXT)) return;
+    /**
+     * Checks if this rule applies to an element with the given tag name.
+     *
+     * @param tagName The tag name of the element.
+     * @return true if the operation should be applied to the tag name.
+     */
+    public boolean targetsTag(String tagName) {
+        boolean targetTags = targetConfig.checkTarget(TargetType.TAGS);
+        boolean validTag = (targetTags && !targetConfig.containsSpecific(TargetType.TAGS, tagName)) || (!targetTags && targetConfig.containsSpecific(TargetType.TAGS, tagName));
 
-        textNodes.forEach(tn -> tn.text(operation.operate(tn.toString())));
+        return !validTag;
+    }
+
+    /**
+     * Checks if this rule applies to the attribute with the given key.
+     *
+     * @param key The attribute key.
+     * @return true if the operation should be applied to the attribute value.
+     */
+    public boolean targetsAttribute(String key) {
+        boolean targetAttr = targetConfig.checkTarget(TargetType.ATTRIBUTES);
+
+        return (targetAttr && !targetConfig.containsSpecific(TargetType.ATTRIBUTES, key)) || (!targetAttr && targetConfig.containsSpecific(TargetType.ATTRIBUTES, key));
+    }
+
+    /**
+     * Checks if this rule applies to text nodes.
+     *
+     * @return true if the operation should be applied to text.
+     */
+    public boolean targetsText() {
+        return targetConfig.checkTarget(TargetType.TEXT);
     }
 
     @Override
@@ -1,5 +1,11 @@
 package model.rules;
 
 public interface TransformationRule<Element> {
-	public void transform(Element element);
+	/**
+	 * Applies the rule to the element.
+	 *
+	 * @param element The element to transform.
+	 * @return true if the element was changed.
+	 */
+	public boolean transform(Element element);
 }
\ No newline at end of file
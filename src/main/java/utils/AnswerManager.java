@@ -1,36 +1,332 @@
 package utils;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
 
 import model.answers.states.Answer;
+import model.answers.states.AnswerState;
 
+/*
+ * Holds the latest state of each answer. Safe to use from the pipeline's worker threads and the EDT at once.
+ *
+ * Answers are kept in an open-addressed table of int ids and states, so each answer costs a few bytes
+ * on top of its state rather than a boxed key, an Answer and a map entry. Reading and changing the
+ * state of an answer never locks; only adding new ids takes a lock. Growing the table copies each slot
+ * into the new table before marking it moved, so reads carry on through to the new table during the
+ * copy, while updates to a moved slot wait for the lock and retry on the new table instead of being lost.
+ *
+ * A count of answers is kept for each state name as states change, so asking how many answers are
+ * Finished or Error doesn't go through the answers.
+ *
+ * The html the states refer to is kept in the manager's HtmlArena, outside the heap.
+ */
 public class AnswerManager {
-	Map<Integer, Answer> answers;
-	
-	public AnswerManager() {
-		answers = new HashMap<Integer, Answer>();
-	}
-	
+	private static final int EMPTY = Integer.MIN_VALUE; // Not a valid answer id
+	private static final int INITIAL_CAPACITY = 1024;
+	private static final AnswerState MOVED = new AnswerState("Moved", null, null, null); // Marks a slot copied to a newer table
+
+	private volatile Table table = new Table(INITIAL_CAPACITY);
+	private int size; // Slots in use, including deleted answers; guarded by this
+	final private Map<String, LongAdder> counts = new ConcurrentHashMap<>();
+	final private HtmlArena htmlArena = new HtmlArena();
+
 	public Answer getAnswerById(int id) {
-		return answers.get(id);
+		AnswerState state = getState(id);
+		return state == null ? null : new Answer(id, state);
+	}
+
+	/*
+	 * Where the html of the answers' states is stored
+	 */
+	public HtmlArena getHtmlArena() {
+		return htmlArena;
+	}
+
+	/*
+	 * The state of an answer, or null if there is no answer with the id
+	 */
+	public AnswerState getState(int id) {
+		return table.read(id);
 	}
-	
+
+	/*
+	 * A snapshot of every answer. Answers changed while it is taken may show either state
+	 */
 	public List<Answer> getAnswers() {
-		return new ArrayList<Answer>(answers.values());
+		List<Answer> answers = new ArrayList<Answer>();
+		Table t = table;
+
+		for (int slot = 0; slot < t.capacity; slot++) {
+			int id = t.keys.get(slot);
+			if (id == EMPTY) continue;
+
+			AnswerState state = t.states.get(slot);
+			if (state == MOVED) state = t.next.read(id); // Resized while copying, the state is in the new table
+			if (state != null) answers.add(new Answer(id, state));
+		}
+
+		return answers;
+	}
+
+	/*
+	 * The ids of every answer, in no particular order
+	 */
+	public IntList getIds() {
+		IntList ids = new IntList(Math.max(1, size()));
+		Table t = table;
+
+		for (int slot = 0; slot < t.capacity; slot++) {
+			int id = t.keys.get(slot);
+			if (id == EMPTY) continue;
+
+			AnswerState state = t.states.get(slot);
+			if (state == MOVED) state = t.next.read(id);
+			if (state != null) ids.add(id);
+		}
+
+		return ids;
 	}
-	
+
+	/*
+	 * Adds the answers, keeping the current state of any that are already held
+	 */
 	public void setAnswers(List<Answer> answers) {
-		answers.stream().forEach((a) -> this.answers.putIfAbsent(a.getId(), a));
+		answers.forEach(a -> put(a.getId(), a.getState(), false));
+	}
+
+	/*
+	 * Adds an answer if there's no answer with the id yet. States hold no id, so one state can be
+	 * given to many answers
+	 *
+	 * Returns true if the answer was added
+	 */
+	public boolean addAnswer(int id, AnswerState state) {
+		return put(id, state, false);
 	}
-	
+
 	public void deleteAnswer(int id) {
-		answers.remove(id);
+		while (true) {
+			Table t = table;
+			int slot = t.find(id);
+			if (slot < 0) return;
+
+			AnswerState current = t.states.get(slot);
+			if (current == MOVED) {
+				awaitResize(t);
+				continue;
+			}
+			if (current == null) return;
+
+			// The id keeps its slot, so the answer can be added again without probing
+			if (t.states.compareAndSet(slot, current, null)) {
+				count(current, -1);
+				return;
+			}
+		}
 	}
-	
+
 	public void setAnswer(Answer answer) {
-		answers.put(answer.getId(), answer);
+		put(answer.getId(), answer.getState(), true);
+	}
+
+	/*
+	 * Moves an answer to a new state only if it is still in the expected state, so concurrent
+	 * workers can't overwrite each other's transitions
+	 *
+	 * Returns false if the answer's state had changed or there is no answer with the id
+	 */
+	public boolean compareAndSetState(int id, AnswerState expected, AnswerState next) {
+		if (expected == null || next == null) throw new IllegalArgumentException("States can't be null");
+
+		while (true) {
+			Table t = table;
+			int slot = t.find(id);
+			if (slot < 0) return false;
+
+			if (t.states.compareAndSet(slot, expected, next)) {
+				count(expected, -1);
+				count(next, 1);
+				return true;
+			}
+
+			if (t.states.get(slot) != MOVED) return false;
+			awaitResize(t);
+		}
+	}
+
+	/*
+	 * The number of answers currently in the state with the given name, e.g. "Finished"
+	 */
+	public long getCount(String stateName) {
+		LongAdder count = counts.get(stateName);
+		return count == null ? 0 : count.sum();
+	}
+
+	/*
+	 * The number of answers held
+	 */
+	public int size() {
+		long total = 0;
+		for (LongAdder count : counts.values()) total += count.sum();
+		return (int) total;
+	}
+
+	/*
+	 * Returns false if an answer was kept instead of being replaced
+	 */
+	private boolean put(int id, AnswerState state, boolean replace) {
+		if (id == EMPTY) throw new IllegalArgumentException("Invalid answer id " + id);
+		if (state == null) throw new IllegalArgumentException("Answers need a state");
+
+		while (true) {
+			Table t = table;
+			int slot = t.find(id);
+			if (slot < 0) {
+				if (insert(id, state)) return true;
+				continue; // Another thread added the id first
+			}
+
+			AnswerState current = t.states.get(slot);
+			if (current == MOVED) {
+				awaitResize(t);
+				continue;
+			}
+			if (current != null && !replace) return false;
+
+			if (t.states.compareAndSet(slot, current, state)) {
+				if (current != null) count(current, -1);
+				count(state, 1);
+				return true;
+			}
+		}
+	}
+
+	/*
+	 * Adds an id that wasn't in the table, growing it first if needed
+	 *
+	 * Returns false if the id was added by another thread in the meantime
+	 */
+	private synchronized boolean insert(int id, AnswerState state) {
+		if (table.find(id) >= 0) return false;
+
+		if ((size + 1) * 4L > table.capacity * 3L) resize();
+
+		Table t = table;
+		int slot = t.findFree(id);
+		t.states.set(slot, state); // The state is in place before the id makes it visible
+		t.keys.set(slot, id);
+		size++;
+		count(state, 1);
+		return true;
+	}
+
+	/*
+	 * Copies every answer into a table twice the size, called with the lock held
+	 */
+	private void resize() {
+		Table old = table;
+		Table grown = new Table(old.capacity * 2);
+		old.next = grown;
+		int kept = 0;
+
+		for (int slot = 0; slot < old.capacity; slot++) {
+			int id = old.keys.get(slot);
+			if (id == EMPTY) continue;
+
+			// Copying the state before marking the slot, so readers that see MOVED find it in the new table.
+			// If an update lands in between, the marking fails and the newer state is copied instead
+			AnswerState state = old.states.get(slot);
+			int target = -1;
+			while (true) {
+				if (state != null && target < 0) {
+					target = grown.findFree(id);
+					grown.states.set(target, state);
+					grown.keys.set(target, id);
+					kept++;
+				} else if (target >= 0) {
+					grown.states.set(target, state); // Deleted answers keep their slot, as in the old table
+				}
+
+				if (old.states.compareAndSet(slot, state, MOVED)) break;
+				state = old.states.get(slot);
+			}
+		}
+
+		size = kept;
+		table = grown;
+	}
+
+	/*
+	 * Blocks until the resize that moved a slot of the table has finished. The resize holds the lock
+	 * until the new table is in place, so getting the lock is enough
+	 */
+	private synchronized void awaitResize(Table old) {
+		assert table != old;
+	}
+
+	private void count(AnswerState state, int delta) {
+		counts.computeIfAbsent(state.getName(), name -> new LongAdder()).add(delta);
+	}
+
+	/*
+	 * One generation of the table. Slots are claimed under the lock and never reused for another id
+	 */
+	private static class Table {
+		final private int capacity; // A power of two
+		final private AtomicIntegerArray keys;
+		final private AtomicReferenceArray<AnswerState> states; // null marks a deleted answer
+		private volatile Table next; // The table being copied into, set before any slot is marked MOVED
+
+		Table(int capacity) {
+			this.capacity = capacity;
+			this.keys = new AtomicIntegerArray(capacity);
+			this.states = new AtomicReferenceArray<AnswerState>(capacity);
+			for (int i = 0; i < capacity; i++) keys.set(i, EMPTY);
+		}
+
+		/*
+		 * The state of the id, following moved slots into the newer tables, or null if there is no answer with the id
+		 */
+		AnswerState read(int id) {
+			for (Table t = this; ; t = t.next) {
+				int slot = t.find(id);
+				if (slot < 0) return null;
+
+				AnswerState state = t.states.get(slot);
+				if (state != MOVED) return state;
+			}
+		}
+
+		/*
+		 * The slot holding the id, or -1
+		 */
+		int find(int id) {
+			int mask = capacity - 1;
+			for (int slot = mix(id) & mask; ; slot = (slot + 1) & mask) {
+				int key = keys.get(slot);
+				if (key == id) return slot;
+				if (key == EMPTY) return -1;
+			}
+		}
+
+		/*
+		 * The first empty slot on the id's probe path
+		 */
+		int findFree(int id) {
+			int mask = capacity - 1;
+			int slot = mix(id) & mask;
+			while (keys.get(slot) != EMPTY) slot = (slot + 1) & mask;
+			return slot;
+		}
+
+		private static int mix(int id) {
+			int h = id * 0x9E3779B9;
+			return h ^ (h >>> 16);
+		}
 	}
 }
@@ -0,0 +1,569 @@
+package utils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+
+import com.mashape.unirest.http.exceptions.UnirestException;
+
+import data.repositories.IOracleRepository;
+import data.storage.AnswerSnapshotStore;
+import data.storage.ProgressJournal;
+import data.storage.ProgressJournal.Event;
+import model.answers.states.Answer;
+import model.answers.states.AnswerState;
+import model.answers.states.CompleteAnswerState;
+import model.answers.states.ErrorAnswerState;
+import model.answers.states.LoadingAnswerState;
+import model.answers.states.UnchangedAnswerState;
+import model.answers.states.UpdatingAnswerState;
+import model.network.OracleResponse;
+import model.pipeline.PipelineConfig;
+import model.pipeline.PipelineConfig.ExecutionMode;
+import model.pipeline.RetryPolicy;
+import model.rules.CompiledRuleSet;
+import utils.callbacks.AnswerChangedCallback;
+
+/**
+ * Runs answers through three stages: fetching from Oracle, transforming with the rule set, and
+ * updating Oracle with the result.
+ *
+ * Each stage has its own pool of worker threads and the stages are connected by bounded queues, so
+ * network round trips overlap with transform work. When a queue is full the stage feeding it waits,
+ * which keeps the number of answers (and parsed documents) in flight bounded.
+ *
+ * In {@link ExecutionMode#VIRTUAL_THREADS} mode the fetch and update stages start a thread per request
+ * instead of using a fixed pool, with a semaphore for each stage capping how many of its requests are
+ * in flight at once. Waiting on the network then costs a parked virtual thread rather than a pooled
+ * platform thread. The stages don't share permits: a fetch keeps its permit while it waits for room
+ * on the transform queue, and the update stage must still be able to drain the queue behind it.
+ *
+ * Requests that fail with a transient error are handed to a {@link RetryScheduler} and put back on
+ * their stage's queue once their backoff has passed, so the workers carry on with other answers in
+ * the meantime. If that queue is full the retry is pushed back a little rather than waited on, so one
+ * busy stage never holds up the retries of the other. An answer only counts as finished once it
+ * succeeds or runs out of attempts.
+ *
+ * With a {@link ProgressJournal} each answer's progress is recorded as it moves through the stages,
+ * and answers the journal shows were finished with the same rules are skipped. Each update is
+ * recorded as sending before it goes out, so an answer updated just before a crash is recognised by
+ * its html rather than transformed a second time. If the journal can't be written the answers fail
+ * rather than carry on without a record of their progress. With an
+ * {@link AnswerSnapshotStore} the fetched and transformed html of each answer is kept locally; an
+ * answer is never updated until its original has been synced to the disk, so it can always be
+ * rolled back, even after a crash.
+ *
+ * The html answers finish with, and transformed html waiting to be sent, is kept compressed in the
+ * answer manager's {@link HtmlArena} rather than on the heap.
+ *
+ * With a {@link DiffReportWriter} the pipeline makes a dry run: answers are fetched and transformed as
+ * usual, but instead of being sent to Oracle their changes are written to the report.
+ *
+ * With a {@link TransformCache} html that was already transformed with the same rules, by another
+ * answer or in an earlier run, takes the cached result instead of being parsed and transformed again.
+ * A dry run still transforms every answer, so its report has the rules that changed each one.
+ */
+public class AnswerPipeline {
+	private static final long REQUEUE_DELAY_MILLIS = 100; // How long a due retry waits when its queue is full
+
+	final private IOracleRepository oracleRepository;
+	final private CompiledRuleSet ruleSet;
+	final private AnswerManager answerManager;
+	final private HtmlArena htmlArena;
+	final private AnswerChangedCallback callback;
+	final private HtmlRuleProcessor processor = new HtmlRuleProcessor();
+
+	final private PipelineConfig config;
+	final private Semaphore fetchPermits; // Only used when running with virtual threads
+	final private Semaphore updatePermits; // Only used when running with virtual threads
+	final private RetryPolicy retryPolicy;
+	final private RetryScheduler<Job> retries;
+	final private ProgressJournal journal; // May be null
+	final private AnswerSnapshotStore snapshots; // May be null
+	final private DiffReportWriter report; // Only set for dry runs
+	final private TransformCache cache; // May be null
+	private ExecutorService requestExecutor;
+
+	final private BlockingQueue<Job> fetchQueue;
+	final private BlockingQueue<Job> transformQueue;
+	final private BlockingQueue<Job> updateQueue;
+
+	final private List<Thread> workers = new ArrayList<>();
+	final private AtomicInteger pending = new AtomicInteger(); // Answers submitted but not yet finished
+	final private CountDownLatch finished = new CountDownLatch(1);
+	private volatile boolean inputClosed = false;
+
+	/**
+	 * Constructs a pipeline with the default settings.
+	 *
+	 * @param oracleRepository The repository to fetch and update answers with.
+	 * @param ruleSet The compiled rules to transform answers with.
+	 * @param answerManager The manager the answers' states are stored in.
+	 * @param callback Called from the worker threads every time an answer changes state.
+	 */
+	public AnswerPipeline(IOracleRepository oracleRepository, CompiledRuleSet ruleSet, AnswerManager answerManager, AnswerChangedCallback callback) {
+		this(oracleRepository, ruleSet, answerManager, callback, new PipelineConfig(), null, null, null, null);
+	}
+
+	/**
+	 * Constructs a pipeline with the given settings.
+	 *
+	 * @param oracleRepository The repository to fetch and update answers with.
+	 * @param ruleSet The compiled rules to transform answers with.
+	 * @param answerManager The manager the answers' states are stored in.
+	 * @param callback Called from the worker threads every time an answer changes state.
+	 * @param config The number of workers, queue sizes and execution mode to run with.
+	 * @param journal The journal to record progress in and resume from, or null to keep no record.
+	 * @param snapshots The store to keep copies of the html in, or null to keep no copies.
+	 * @param report The report to write the changes to instead of updating Oracle, or null to update it.
+	 * @param cache The cache of earlier transforms to reuse and add to, or null to transform every answer.
+	 */
+	public AnswerPipeline(
+			IOracleRepository oracleRepository,
+			CompiledRuleSet ruleSet,
+			AnswerManager answerManager,
+			AnswerChangedCallback callback,
+			PipelineConfig config,
+			ProgressJournal journal,
+			AnswerSnapshotStore snapshots,
+			DiffReportWriter report,
+			TransformCache cache) {
+		this.oracleRepository = oracleRepository;
+		this.ruleSet = ruleSet;
+		this.answerManager = answerManager;
+		this.htmlArena = answerManager.getHtmlArena();
+		this.callback = callback;
+		this.config = config;
+
+		this.fetchQueue = new ArrayBlockingQueue<>(config.getQueueCapacity());
+		this.transformQueue = new ArrayBlockingQueue<>(config.getQueueCapacity());
+		this.updateQueue = new ArrayBlockingQueue<>(config.getQueueCapacity());
+		this.fetchPermits = new Semaphore(config.getMaxConcurrentRequests());
+		this.updatePermits = new Semaphore(config.getMaxConcurrentRequests());
+		this.retryPolicy = config.getRetryPolicy();
+		this.retries = new RetryScheduler<>("pipeline-retry", this::resubmit);
+		this.journal = journal;
+		this.snapshots = snapshots;
+		this.report = report;
+		this.cache = cache;
+	}
+
+	/**
+	 * Processes every answer and waits for all of them to finish.
+	 *
+	 * @param answerIds The ids of the answers to process.
+	 * @throws InterruptedException If the thread is interrupted while waiting.
+	 */
+	public void run(List<Integer> answerIds) throws InterruptedException {
+		IntList ids = new IntList(answerIds.size());
+		answerIds.forEach(ids::add);
+		run(ids);
+	}
+
+	/**
+	 * Processes every answer and waits for all of them to finish.
+	 *
+	 * @param answerIds The ids of the answers to process.
+	 * @throws InterruptedException If the thread is interrupted while waiting.
+	 */
+	public void run(IntList answerIds) throws InterruptedException {
+		start();
+		try {
+			for (int i = 0; i < answerIds.size(); i++) submit(answerIds.get(i));
+			close();
+			await();
+		} finally {
+			stop();
+		}
+	}
+
+	/**
+	 * Starts the worker threads of every stage.
+	 */
+	public void start() {
+		retries.start();
+
+		if (config.getExecutionMode() == ExecutionMode.VIRTUAL_THREADS) {
+			requestExecutor = newThreadPerTaskExecutor();
+			startRequestStage("fetch", fetchQueue, fetchPermits, this::fetch);
+			startRequestStage("update", updateQueue, updatePermits, this::update);
+		} else {
+			startStage("fetch", config.getFetchWorkers(), fetchQueue, this::fetch);
+			startStage("update", config.getUpdateWorkers(), updateQueue, this::update);
+		}
+
+		// Transforming is CPU bound so always has a fixed pool
+		startStage("transform", config.getTransformWorkers(), transformQueue, this::transform);
+	}
+
+	/**
+	 * Adds an answer to the pipeline, waiting while the fetch queue is full. Answers the journal shows
+	 * were already finished with the same rules are marked as such without being fetched.
+	 *
+	 * @param answerId The id of the answer to process.
+	 * @throws InterruptedException If the thread is interrupted while waiting.
+	 */
+	public void submit(int answerId) throws InterruptedException {
+		if (journal != null && journal.isComplete(answerId, ruleSet.getFingerprint())) {
+			publish(answerId, journal.getLastEvent(answerId) == Event.UPDATED
+					? new CompleteAnswerState(null, "Updated in an earlier run")
+					: new UnchangedAnswerState(null, "Found unchanged in an earlier run"));
+			return;
+		}
+
+		pending.incrementAndGet();
+		fetchQueue.put(new Job(answerId));
+	}
+
+	/**
+	 * Marks the end of the input; {@link #await()} returns once the submitted answers are done.
+	 */
+	public void close() {
+		inputClosed = true;
+		if (pending.get() == 0) finished.countDown();
+	}
+
+	/**
+	 * Waits until the input is closed and every submitted answer has finished.
+	 *
+	 * @throws InterruptedException If the thread is interrupted while waiting.
+	 */
+	public void await() throws InterruptedException {
+		finished.await();
+	}
+
+	/**
+	 * Stops the worker threads. Answers still in the pipeline are abandoned.
+	 */
+	public void stop() {
+		workers.forEach(Thread::interrupt);
+		retries.stop();
+		if (requestExecutor != null) requestExecutor.shutdownNow();
+	}
+
+	private void startStage(String name, int count, BlockingQueue<Job> queue, Stage stage) {
+		for (int i = 1; i <= count; i++) {
+			startWorker("pipeline-" + name + "-" + i, () -> {
+				while (true) {
+					runStage(stage, queue.take());
+				}
+			});
+		}
+	}
+
+	/**
+	 * Starts a thread that hands each job of a network stage to its own request thread, waiting for
+	 * one of the stage's permits first so no more than the configured number of its requests are in
+	 * flight.
+	 */
+	private void startRequestStage(String name, BlockingQueue<Job> queue, Semaphore permits, Stage stage) {
+		startWorker("pipeline-" + name + "-dispatcher", () -> {
+			while (true) {
+				Job job = queue.take();
+				permits.acquire();
+
+				requestExecutor.execute(() -> {
+					try {
+						runStage(stage, job);
+					} catch (InterruptedException e) {
+						// Pipeline stopped
+					} finally {
+						permits.release();
+					}
+				});
+			}
+		});
+	}
+
+	private void startWorker(String name, WorkerLoop loop) {
+		Thread worker = new Thread(() -> {
+			try {
+				loop.run();
+			} catch (InterruptedException e) {
+				// Pipeline stopped
+			}
+		}, name);
+
+		worker.setDaemon(true);
+		workers.add(worker);
+		worker.start();
+	}
+
+	/**
+	 * Processes a job, failing the answer on anything but an interrupt, e.g. an OutOfMemoryError
+	 * parsing a huge answer, so the worker carries on and the job is never left pending.
+	 */
+	private void runStage(Stage stage, Job job) throws InterruptedException {
+		try {
+			stage.process(job);
+		} catch (InterruptedException e) {
+			throw e;
+		} catch (Throwable e) {
+			String reason = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+			fail(job, "An error occurred while processing the answer: " + reason);
+		}
+	}
+
+	/**
+	 * Creates an executor that starts a virtual thread for every task.
+	 *
+	 * Virtual threads need Java 21, so they are looked up by reflection. On older runtimes each task
+	 * gets a new daemon platform thread instead, which is still capped by the request permits.
+	 */
+	private static ExecutorService newThreadPerTaskExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			AtomicInteger count = new AtomicInteger();
+			return Executors.newCachedThreadPool(task -> {
+				Thread thread = new Thread(task, "pipeline-request-" + count.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+	}
+
+	/**
+	 * Fetches the answer, passing it on only if the rule set could change it.
+	 */
+	private void fetch(Job job) throws InterruptedException {
+		long start = System.nanoTime();
+		try {
+			job.response = oracleRepository.fetchAnswer(job.id);
+		} catch (UnirestException e) {
+			retryOrFail(job, e, e.getMessage());
+			return;
+		}
+		job.fetchNanos = System.nanoTime() - start;
+
+		// An update that reached Oracle before an earlier run stopped, without being recorded as done
+		if (journal != null && journal.wasSent(job.id, ruleSet.getFingerprint(), job.response.html)) {
+			if (!record(job, Event.UPDATED)) return;
+			finish(job, new CompleteAnswerState(null, "Updated in an earlier run"));
+			return;
+		}
+
+		if (!record(job, Event.FETCHED)) return;
+
+		// Keeping the original so the update can be rolled back
+		try {
+			if (snapshots != null) job.contentHash = snapshots.putOriginal(job.id, job.response.html).getContentHash();
+		} catch (IOException e) {
+			fail(job, "The original answer could not be saved: " + e.getMessage());
+			return;
+		}
+
+		// Skipping the parse and update when none of the rules can apply
+		if (!ruleSet.mayMatch(job.response.html)) {
+			if (report != null) report.writeUnchanged(job.fetchNanos, 0);
+			if (!record(job, Event.UNCHANGED)) return;
+			finish(job, new UnchangedAnswerState(null, null));
+			return;
+		}
+
+		transformQueue.put(job);
+	}
+
+	/**
+	 * Parses and transforms the answer, or takes an earlier result for the same html from the cache,
+	 * passing it on only if the rules changed it.
+	 */
+	private void transform(Job job) throws InterruptedException {
+		long start = System.nanoTime();
+		long fingerprint = ruleSet.getFingerprint();
+		long inputHash = cache == null ? 0 : snapshots != null ? job.contentHash : ContentHash.of(job.response.html);
+		TransformCache.Result cached = cache == null || report != null ? null : cache.get(inputHash, fingerprint);
+
+		int[] ruleHits = null; // Only known when the rules were applied
+		String html;
+		if (cached != null) {
+			html = cached.getHtml();
+		} else {
+			Document doc = Jsoup.parse(job.response.html);
+			publish(job.id, new UpdatingAnswerState(null, null));
+
+			ruleHits = new int[ruleSet.size()];
+			html = processor.apply(doc, ruleSet, ruleHits) ? doc.toString() : null;
+			if (job.response.html.equals(html)) html = null;
+		}
+		long transformNanos = System.nanoTime() - start;
+
+		// Finishing without a network write when nothing changed
+		if (html == null) {
+			if (cached == null && cache != null) cache.put(inputHash, fingerprint, null);
+			if (report != null) report.writeUnchanged(job.fetchNanos, transformNanos);
+			if (!record(job, Event.UNCHANGED)) return;
+			finish(job, new UnchangedAnswerState(htmlArena.put(job.response.html), cached == null
+					? "The transformation rules made no changes to this answer"
+					: "The transformation rules made no changes to this html when it was last transformed"));
+			return;
+		}
+
+		// A dry run sends nothing, so its html mustn't be stored as a transformed snapshot that a
+		// rollback or preview would take for what Oracle holds
+		if (report == null) {
+			try {
+				if (snapshots != null) snapshots.putTransformed(job.id, html, fingerprint);
+			} catch (IOException e) {
+				fail(job, "The transformed answer could not be saved: " + e.getMessage());
+				return;
+			}
+
+			// Cached after the snapshot, so the disk tier can always read the html back
+			if (cached == null && cache != null) cache.put(inputHash, fingerprint, html);
+		}
+
+		if (!record(job, Event.TRANSFORMED)) return;
+
+		// A dry run stops here, reporting the changes instead of sending them
+		if (report != null) {
+			report.writeChanged(job.id, job.response.html, html, ruleHits, job.fetchNanos, transformNanos);
+			finish(job, new CompleteAnswerState(htmlArena.put(html), "Dry run: the changes were written to the report and not sent to Oracle"));
+			return;
+		}
+
+		// Only the compressed copy waits for the update, however long its retries take
+		job.html = htmlArena.put(html);
+		job.response = null;
+		job.attempts = 0; // The update gets its own attempts
+		publish(job.id, new LoadingAnswerState(job.html, "The knowledge base is being updated"));
+		updateQueue.put(job);
+	}
+
+	/**
+	 * Sends the transformed answer to Oracle, once its snapshots and the journal's record of the
+	 * update are safely on the disk.
+	 */
+	private void update(Job job) {
+		String html = job.html.read();
+
+		// Answers updating at the same time share the syncs
+		try {
+			if (snapshots != null) snapshots.sync();
+		} catch (IOException e) {
+			fail(job, "The answer's snapshots could not be saved to the disk: " + e.getMessage());
+			return;
+		}
+		try {
+			if (journal != null) journal.recordSending(job.id, html);
+		} catch (IOException e) {
+			fail(job, "The progress journal could not be written: " + e.getMessage());
+			return;
+		}
+
+		try {
+			oracleRepository.updateAnswer(job.id, html);
+		} catch (Exception e) {
+			retryOrFail(job, e, "An error occurred while updating the knowledge base");
+			return;
+		}
+
+		if (!record(job, Event.UPDATED)) return;
+		finish(job, new CompleteAnswerState(job.html, null));
+	}
+
+	/**
+	 * Schedules the job's request to be tried again if the failure is transient, otherwise fails the answer.
+	 */
+	private void retryOrFail(Job job, Exception error, String message) {
+		job.attempts++;
+		if (!retryPolicy.shouldRetry(error, job.attempts)) {
+			fail(job, message);
+			return;
+		}
+
+		long delay = retryPolicy.nextDelayMillis(job.attempts);
+		publish(job.id, new LoadingAnswerState(job.html, String.format("Retrying in %.1fs (attempt %d of %d): %s",
+				delay / 1000.0, job.attempts + 1, retryPolicy.getMaxAttempts(), message)));
+
+		retries.schedule(job, delay);
+	}
+
+	/**
+	 * Puts a job whose retry is due back on the queue of the stage it failed in, or schedules it again
+	 * shortly if that queue is full. Called on the retry thread, which must never block.
+	 */
+	private void resubmit(Job job) {
+		if (!(job.html == null ? fetchQueue : updateQueue).offer(job)) retries.schedule(job, REQUEUE_DELAY_MILLIS);
+	}
+
+	private void fail(Job job, String message) {
+		if (report != null) report.writeError(job.id, message);
+		try {
+			if (journal != null) journal.record(job.id, Event.ERROR, ruleSet.getFingerprint());
+		} catch (IOException e) {
+			// The answer fails either way, and the journal failing is reported by the other answers
+		}
+		finish(job, new ErrorAnswerState(null, message));
+	}
+
+	private void finish(Job job, AnswerState state) {
+		publish(job.id, state);
+
+		if (pending.decrementAndGet() == 0 && inputClosed) finished.countDown();
+	}
+
+	/**
+	 * Records the answer's progress in the journal, failing the answer if the journal can't be written.
+	 *
+	 * @return false if the answer was failed.
+	 */
+	private boolean record(Job job, Event event) {
+		if (journal == null) return true;
+
+		try {
+			journal.record(job.id, event, ruleSet.getFingerprint());
+			return true;
+		} catch (IOException e) {
+			fail(job, (event == Event.UPDATED ? "The answer was updated, but the progress journal could not be written: "
+					: "The progress journal could not be written: ") + e.getMessage());
+			return false;
+		}
+	}
+
+	private void publish(int answerId, AnswerState state) {
+		Answer answer = new Answer(answerId, state);
+		answerManager.setAnswer(answer);
+		callback.onAnswerChanged(answer);
+	}
+
+	/**
+	 * The work a stage does for a single answer.
+	 */
+	private interface Stage {
+		void process(Job job) throws InterruptedException;
+	}
+
+	/**
+	 * The body of a worker thread, run until the pipeline is stopped.
+	 */
+	private interface WorkerLoop {
+		void run() throws InterruptedException;
+	}
+
+	/**
+	 * An answer moving through the pipeline, collecting the results of each stage.
+	 */
+	private static class Job {
+		final private int id;
+		private OracleResponse response;
+		private HtmlArena.Handle html; // The transformed html, once there is some to send
+		private int attempts; // Failed attempts at the current stage's request
+		private long fetchNanos; // How long the successful fetch took
+		private long contentHash; // The hash of the fetched html, when it was saved to the snapshots
+
+		Job(int id) {
+			this.id = id;
+		}
+	}
+}
@@ -0,0 +1,37 @@
+package utils;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Hashes content to a 64 bit value for spotting identical html without comparing it.
+ */
+public class ContentHash {
+	private ContentHash() {}
+
+	/**
+	 * Hashes the UTF-8 bytes of the text.
+	 *
+	 * @param text The text to hash.
+	 * @return The first 8 bytes of the text's SHA-256 hash.
+	 */
+	public static long of(String text) {
+		return of(text.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Hashes the bytes.
+	 *
+	 * @param bytes The bytes to hash.
+	 * @return The first 8 bytes of their SHA-256 hash.
+	 */
+	public static long of(byte[] bytes) {
+		try {
+			return ByteBuffer.wrap(MessageDigest.getInstance("SHA-256").digest(bytes)).getLong();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 is not available", e); // Every JVM has to provide it
+		}
+	}
+}
@@ -0,0 +1,277 @@
+package utils;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import model.rules.CompiledRuleSet;
+import model.rules.HtmlTransformationRule;
+
+/**
+ * Writes the report of a dry run: what each answer would have become, which rules changed it and
+ * how long it took, followed by totals for the whole run.
+ *
+ * Each answer is written out as soon as it is transformed, and the totals only keep fixed size
+ * counters (one per rule, plus timing histograms), so the memory used doesn't grow with the number
+ * of answers. Sizes are counted in UTF-8 bytes, as the html is sent to Oracle. Writing never throws;
+ * the first failure is kept and thrown by {@link #close()}.
+ */
+public class DiffReportWriter implements Closeable {
+	private static final int MAX_HUNK_CHARS = 2000; // Longer changes are cut short in the report
+
+	final private Path file;
+	final private CompiledRuleSet ruleSet;
+	final private Writer out;
+	final private long startTime = System.nanoTime();
+
+	// Guarded by this
+	final private long[] ruleHits;
+	final private int[] answersHit;
+	final private TimingHistogram fetchTimes = new TimingHistogram();
+	final private TimingHistogram transformTimes = new TimingHistogram();
+	private int changed;
+	private int unchanged;
+	private int errors;
+	private long bytesBefore;
+	private long bytesAfter;
+	private long bytesChanged;
+	private IOException failure;
+
+	/**
+	 * Creates the report file and writes its heading.
+	 *
+	 * @param file The file to write the report to, replaced if it exists.
+	 * @param ruleSet The rules being tried out.
+	 * @throws IOException If the file can't be created.
+	 */
+	public DiffReportWriter(Path file, CompiledRuleSet ruleSet) throws IOException {
+		this.file = file;
+		this.ruleSet = ruleSet;
+		this.ruleHits = new long[ruleSet.size()];
+		this.answersHit = new int[ruleSet.size()];
+
+		if (file.getParent() != null) Files.createDirectories(file.getParent());
+		this.out = new BufferedWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8), 1 << 16);
+
+		write("# Dry run report, started " + LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME) + "\n");
+		write(String.format("# Rule set %016x with %d rules:%n", ruleSet.getFingerprint(), ruleSet.size()));
+		List<HtmlTransformationRule> rules = ruleSet.getRules();
+		for (int i = 0; i < rules.size(); i++) write("#   " + describe(i) + "\n");
+		write("\n");
+	}
+
+	public Path getFile() {
+		return file;
+	}
+
+	/**
+	 * Writes what an answer would become. The diff is worked out before taking the lock, which is only
+	 * held to add to the totals and write the entry, so answers can be diffed in parallel.
+	 *
+	 * @param answerId The answer's id.
+	 * @param before The html fetched from Oracle.
+	 * @param after The html the rules produced.
+	 * @param hits The number of changes each rule made to the answer.
+	 * @param fetchNanos How long fetching took.
+	 * @param transformNanos How long parsing and transforming took.
+	 */
+	public void writeChanged(int answerId, String before, String after, int[] hits, long fetchNanos, long transformNanos) {
+		List<HtmlDiff.Hunk> hunks = HtmlDiff.diff(before, after);
+		long answerBytesBefore = utf8Length(before);
+		long answerBytesAfter = utf8Length(after);
+		long answerBytesChanged = 0;
+		for (HtmlDiff.Hunk hunk : hunks) answerBytesChanged += utf8Length(hunk.getRemoved()) + utf8Length(hunk.getAdded());
+
+		StringBuilder rules = new StringBuilder();
+		for (int i = 0; i < hits.length && i < ruleHits.length; i++) {
+			if (hits[i] == 0) continue;
+
+			if (rules.length() > 0) rules.append(", ");
+			rules.append('[').append(i).append("] x").append(hits[i]);
+		}
+
+		StringBuilder entry = new StringBuilder();
+		entry.append("=== Answer ").append(answerId).append(" ===\n");
+		entry.append("Rules: ").append(rules.length() == 0 ? "none" : rules).append('\n');
+		entry.append(String.format("Bytes: %d -> %d (%+d), %d changed in %d places%n",
+				answerBytesBefore, answerBytesAfter, answerBytesAfter - answerBytesBefore, answerBytesChanged, hunks.size()));
+		entry.append(String.format("Timings: fetch %.1f ms, transform %.1f ms%n", millis(fetchNanos), millis(transformNanos)));
+
+		for (HtmlDiff.Hunk hunk : hunks) {
+			entry.append("@@ ").append(hunk.getOffset()).append(" @@\n");
+			if (!hunk.getRemoved().isEmpty()) entry.append("- ").append(excerpt(hunk.getRemoved())).append('\n');
+			if (!hunk.getAdded().isEmpty()) entry.append("+ ").append(excerpt(hunk.getAdded())).append('\n');
+		}
+		entry.append('\n');
+
+		synchronized (this) {
+			changed++;
+			bytesBefore += answerBytesBefore;
+			bytesAfter += answerBytesAfter;
+			bytesChanged += answerBytesChanged;
+			fetchTimes.add(fetchNanos);
+			transformTimes.add(transformNanos);
+
+			for (int i = 0; i < hits.length && i < ruleHits.length; i++) {
+				if (hits[i] == 0) continue;
+
+				ruleHits[i] += hits[i];
+				answersHit[i]++;
+			}
+
+			write(entry.toString());
+		}
+	}
+
+	/**
+	 * Counts an answer the rules left as it was.
+	 *
+	 * @param fetchNanos How long fetching took.
+	 * @param transformNanos How long parsing and transforming took, 0 if it was skipped.
+	 */
+	public synchronized void writeUnchanged(long fetchNanos, long transformNanos) {
+		unchanged++;
+		fetchTimes.add(fetchNanos);
+		if (transformNanos > 0) transformTimes.add(transformNanos);
+	}
+
+	/**
+	 * Writes an answer that couldn't be fetched or transformed.
+	 *
+	 * @param message The reason it failed.
+	 */
+	public synchronized void writeError(int answerId, String message) {
+		errors++;
+		write("=== Answer " + answerId + " ===\nError: " + message + "\n\n");
+	}
+
+	/**
+	 * Writes the totals for the run and closes the file.
+	 *
+	 * @throws IOException If any part of the report couldn't be written.
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		double seconds = (System.nanoTime() - startTime) / 1e9;
+		int total = changed + unchanged + errors;
+
+		write("=== Summary ===\n");
+		write(String.format("Answers: %d (%d would change, %d unchanged, %d errors)%n", total, changed, unchanged, errors));
+		write(String.format("Bytes of changed answers: %d -> %d (%+d), %d changed%n", bytesBefore, bytesAfter, bytesAfter - bytesBefore, bytesChanged));
+		write("Rule hits:\n");
+		for (int i = 0; i < ruleHits.length; i++) {
+			write(String.format("  %s: %d changes in %d answers%n", describe(i), ruleHits[i], answersHit[i]));
+		}
+		write("Fetch time: " + fetchTimes + "\n");
+		write("Transform time: " + transformTimes + "\n");
+		write(String.format("Elapsed: %.1f s (%.1f answers/s)%n", seconds, seconds > 0 ? total / seconds : 0));
+
+		try {
+			out.close();
+		} catch (IOException e) {
+			if (failure == null) failure = e;
+		}
+
+		if (failure != null) throw failure;
+	}
+
+	private void write(String text) {
+		if (failure != null) return;
+
+		try {
+			out.write(text);
+		} catch (IOException e) {
+			failure = e;
+		}
+	}
+
+	private String describe(int rule) {
+		HtmlTransformationRule r = ruleSet.getRules().get(rule);
+		return "[" + rule + "] \"" + r.getSearchPhrase() + "\" " + r.getOperation().getName();
+	}
+
+	/**
+	 * Fits changed text onto one line of the report.
+	 */
+	private static String excerpt(String text) {
+		String line = text.replace("\r", "\\r").replace("\n", "\\n");
+		if (line.length() <= MAX_HUNK_CHARS) return line;
+
+		return line.substring(0, MAX_HUNK_CHARS) + "... (" + (line.length() - MAX_HUNK_CHARS) + " more characters)";
+	}
+
+	/**
+	 * The number of bytes the text takes up in UTF-8, without encoding it.
+	 */
+	static long utf8Length(CharSequence text) {
+		long bytes = 0;
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if (c < 0x80) {
+				bytes += 1;
+			} else if (c < 0x800) {
+				bytes += 2;
+			} else if (Character.isHighSurrogate(c) && i + 1 < text.length() && Character.isLowSurrogate(text.charAt(i + 1))) {
+				bytes += 4; // A supplementary character, written as one 4 byte sequence
+				i++;
+			} else if (Character.isSurrogate(c)) {
+				bytes += 1; // Half a pair is written as '?'
+			} else {
+				bytes += 3;
+			}
+		}
+		return bytes;
+	}
+
+	private static double millis(long nanos) {
+		return nanos / 1e6;
+	}
+
+	/**
+	 * Counts timings in power of two buckets of microseconds, which is enough for rough percentiles in
+	 * a fixed amount of memory.
+	 */
+	private static class TimingHistogram {
+		final private long[] buckets = new long[64];
+		private long count;
+		private long total;
+		private long max;
+
+		void add(long nanos) {
+			long micros = Math.max(0, TimeUnit.NANOSECONDS.toMicros(nanos));
+			buckets[64 - Long.numberOfLeadingZeros(micros)]++;
+			count++;
+			total += nanos;
+			max = Math.max(max, nanos);
+		}
+
+		/**
+		 * The upper bound of the bucket holding the given share of timings, in milliseconds.
+		 */
+		double percentile(double share) {
+			long target = (long) Math.ceil(count * share);
+			long seen = 0;
+			for (int i = 0; i < buckets.length; i++) {
+				seen += buckets[i];
+				if (seen >= target) return Math.min(millis(max), ((1L << i) - 1) / 1000.0);
+			}
+			return millis(max);
+		}
+
+		@Override
+		public String toString() {
+			if (count == 0) return "none";
+
+			return String.format("mean %.1f ms, p50 <= %.1f ms, p95 <= %.1f ms, max %.1f ms",
+					millis(total / count), percentile(0.5), percentile(0.95), millis(max));
+		}
+	}
+}
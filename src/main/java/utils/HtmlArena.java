@@ -0,0 +1,221 @@
+package utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/*
+ * Keeps html outside the Java heap, so the html of every answer the app holds doesn't have to be
+ * traced by the garbage collector.
+ *
+ * Html is Deflate compressed and appended to segments of a memory-mapped temporary file; each piece
+ * of html is referred to by a small Handle holding its segment, offset and lengths. The operating
+ * system pages the segments in and out as needed, so they don't count against the heap or the
+ * direct memory limit. The file is deleted as soon as it's mapped, so its space is given back when the
+ * arena is closed or the process ends, even if the process is killed. Arena files left behind by
+ * earlier versions are deleted when a new arena creates its file.
+ *
+ * Html is never removed, the arena only grows until it's closed. Safe to use from any thread:
+ * appends take a lock, reads don't.
+ */
+public class HtmlArena implements Closeable {
+	private static final String FILE_PREFIX = "oracle-html-transformer-";
+	private static final String FILE_SUFFIX = ".arena";
+	private static final int SEGMENT_SIZE = 64 * 1024 * 1024;
+
+	final private Queue<Deflater> deflaters = new ConcurrentLinkedQueue<>(); // Reused, as each holds a few hundred KB of native memory
+
+	// Guarded by this
+	private FileChannel file; // Created with the first html
+	private long fileEnd;
+	private int segmentEnd; // The end of the data in the last segment
+	private boolean closed;
+	private volatile MappedByteBuffer[] segments = new MappedByteBuffer[0];
+
+	/*
+	 * Compresses and stores html
+	 *
+	 * Throws UncheckedIOException if the arena's file can't be created or grown
+	 */
+	public Handle put(String html) {
+		byte[] bytes = html.getBytes(StandardCharsets.UTF_8);
+		byte[] compressed = compress(bytes);
+
+		synchronized (this) {
+			if (closed) throw new IllegalStateException("The html arena is closed");
+			try {
+				if (segments.length == 0 || segmentEnd + compressed.length > segments[segments.length - 1].capacity()) {
+					addSegment(Math.max(SEGMENT_SIZE, compressed.length));
+				}
+			} catch (IOException e) {
+				throw new UncheckedIOException("The html could not be stored: " + e.getMessage(), e);
+			}
+
+			int segment = segments.length - 1;
+			int offset = segmentEnd;
+			segments[segment].put(offset, compressed);
+			segmentEnd += compressed.length;
+
+			return new Handle(this, segment, offset, compressed.length, bytes.length);
+		}
+	}
+
+	/*
+	 * The number of bytes the arena's file has grown to
+	 */
+	public synchronized long getSize() {
+		return fileEnd;
+	}
+
+	/*
+	 * Closes the arena's file, giving back its space once the segments are garbage collected.
+	 * Handles into the arena can't be read afterwards.
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		if (closed) return;
+		closed = true;
+
+		segments = new MappedByteBuffer[0];
+		if (file != null) file.close();
+	}
+
+	private String read(Handle handle) {
+		MappedByteBuffer[] current = segments;
+		if (handle.segment >= current.length) throw new IllegalStateException("The html arena is closed");
+
+		byte[] compressed = new byte[handle.compressedLength];
+		current[handle.segment].get(handle.offset, compressed);
+
+		Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(compressed);
+			byte[] bytes = new byte[handle.length];
+			int read = 0;
+			while (read < bytes.length && !inflater.finished()) {
+				int count = inflater.inflate(bytes, read, bytes.length - read);
+				if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) break;
+				read += count;
+			}
+
+			if (read != bytes.length) throw new IllegalStateException("Stored html is corrupt");
+			return new String(bytes, StandardCharsets.UTF_8);
+		} catch (DataFormatException e) {
+			throw new IllegalStateException("Stored html is corrupt", e);
+		} finally {
+			inflater.end();
+		}
+	}
+
+	private byte[] compress(byte[] bytes) {
+		Deflater deflater = deflaters.poll();
+		if (deflater == null) deflater = new Deflater(Deflater.BEST_SPEED);
+
+		try {
+			deflater.setInput(bytes);
+			deflater.finish();
+
+			ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, bytes.length / 4));
+			byte[] chunk = new byte[8192];
+			while (!deflater.finished()) {
+				int count = deflater.deflate(chunk);
+				out.write(chunk, 0, count);
+			}
+			return out.toByteArray();
+		} finally {
+			deflater.reset();
+			deflaters.add(deflater);
+		}
+	}
+
+	/*
+	 * Maps a new segment at the end of the file, called with the lock held
+	 */
+	private void addSegment(int size) throws IOException {
+		if (file == null) {
+			deleteStaleFiles(Paths.get(System.getProperty("java.io.tmpdir")));
+			Path path = Files.createTempFile(FILE_PREFIX, FILE_SUFFIX);
+			file = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+			try {
+				// The open channel and mappings keep the data, the name is only needed to open it
+				Files.delete(path);
+			} catch (IOException e) {
+				path.toFile().deleteOnExit(); // Deleted when the channel is closed instead
+			}
+		}
+
+		MappedByteBuffer segment = file.map(FileChannel.MapMode.READ_WRITE, fileEnd, size);
+		fileEnd += size;
+		segmentEnd = 0;
+
+		MappedByteBuffer[] grown = Arrays.copyOf(segments, segments.length + 1);
+		grown[grown.length - 1] = segment;
+		segments = grown;
+	}
+
+	/*
+	 * Deletes the files of arenas that were never deleted, left by versions that kept the file until
+	 * the process exited. Files of running arenas either have no name or can't be deleted.
+	 */
+	private static void deleteStaleFiles(Path directory) {
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, FILE_PREFIX + "*" + FILE_SUFFIX)) {
+			for (Path stale : files) {
+				try {
+					Files.deleteIfExists(stale);
+				} catch (IOException e) {
+					// In use by another process
+				}
+			}
+		} catch (IOException e) {
+			// Only tidying up, the new file can still be used
+		}
+	}
+
+	/*
+	 * Where a piece of html is stored in an arena
+	 */
+	public static class Handle {
+		final private HtmlArena arena;
+		final private int segment;
+		final private int offset;
+		final private int compressedLength;
+		final private int length; // Of the UTF-8 bytes
+
+		private Handle(HtmlArena arena, int segment, int offset, int compressedLength, int length) {
+			this.arena = arena;
+			this.segment = segment;
+			this.offset = offset;
+			this.compressedLength = compressedLength;
+			this.length = length;
+		}
+
+		/*
+		 * Decompresses the html
+		 */
+		public String read() {
+			return arena.read(this);
+		}
+
+		/*
+		 * The number of bytes the html takes in the arena
+		 */
+		public int getCompressedLength() {
+			return compressedLength;
+		}
+	}
+}
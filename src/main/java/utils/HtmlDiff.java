@@ -0,0 +1,253 @@
+package utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Works out what changed between two versions of an html document, at the level of tags, words and
+ * runs of whitespace.
+ *
+ * The common start and end of the documents are skipped first, which usually leaves only a small
+ * region to compare. That region is diffed with Myers' algorithm; if the two versions differ by more
+ * than {@link #MAX_EDITS} tokens the whole region is reported as one change instead, so a rewritten
+ * document can't make the diff slow or large.
+ */
+public class HtmlDiff {
+	public static final int MAX_EDITS = 1000;
+
+	/**
+	 * A run of consecutive changes.
+	 */
+	public static class Hunk {
+		final private int offset;
+		final private String removed;
+		final private String added;
+
+		Hunk(int offset, String removed, String added) {
+			this.offset = offset;
+			this.removed = removed;
+			this.added = added;
+		}
+
+		/**
+		 * Where the change starts, as a character offset in the old document.
+		 */
+		public int getOffset() {
+			return offset;
+		}
+
+		/**
+		 * The text taken out of the old document, empty for a pure insertion.
+		 */
+		public String getRemoved() {
+			return removed;
+		}
+
+		/**
+		 * The text put in its place, empty for a pure deletion.
+		 */
+		public String getAdded() {
+			return added;
+		}
+	}
+
+	private HtmlDiff() {}
+
+	/**
+	 * Diffs two versions of a document.
+	 *
+	 * @param before The old html.
+	 * @param after The new html.
+	 * @return The changes in document order, empty if the documents are the same.
+	 */
+	public static List<Hunk> diff(String before, String after) {
+		List<Hunk> hunks = new ArrayList<>();
+		if (before.equals(after)) return hunks;
+
+		List<String> a = tokenize(before);
+		List<String> b = tokenize(after);
+
+		// Skipping the common start and end
+		int start = 0;
+		while (start < a.size() && start < b.size() && a.get(start).equals(b.get(start))) start++;
+
+		int endA = a.size(), endB = b.size();
+		while (endA > start && endB > start && a.get(endA - 1).equals(b.get(endB - 1))) {
+			endA--;
+			endB--;
+		}
+
+		int[] offsets = offsets(a);
+		byte[] script = editScript(a.subList(start, endA), b.subList(start, endB));
+
+		if (script == null) {
+			// Too different to diff token by token
+			hunks.add(new Hunk(offsets[start], join(a, start, endA), join(b, start, endB)));
+			return hunks;
+		}
+
+		// Grouping the edit script into runs of changes
+		int i = start, j = start;
+		int k = 0;
+		while (k < script.length) {
+			if (script[k] == KEEP) {
+				i++;
+				j++;
+				k++;
+				continue;
+			}
+
+			int fromA = i, fromB = j;
+			while (k < script.length && script[k] != KEEP) {
+				if (script[k] == DELETE) i++;
+				else j++;
+				k++;
+			}
+
+			hunks.add(new Hunk(offsets[fromA], join(a, fromA, i), join(b, fromB, j)));
+		}
+
+		return hunks;
+	}
+
+	private static final byte KEEP = 0, DELETE = 1, INSERT = 2;
+
+	/**
+	 * Finds the shortest edit script turning a into b (Myers, "An O(ND) Difference Algorithm").
+	 *
+	 * @return The edits in order, or null if more than MAX_EDITS are needed.
+	 */
+	private static byte[] editScript(List<String> a, List<String> b) {
+		int n = a.size(), m = b.size();
+		int max = Math.min(n + m, MAX_EDITS);
+
+		// The furthest x reached on each diagonal k after each number of edits d, kept for backtracking
+		List<int[]> trace = new ArrayList<>();
+		int[] v = new int[2 * max + 3];
+		int offset = max + 1;
+
+		for (int d = 0; d <= max; d++) {
+			for (int k = -d; k <= d; k += 2) {
+				int x;
+				if (k == -d || (k != d && v[offset + k - 1] < v[offset + k + 1])) {
+					x = v[offset + k + 1]; // Inserting
+				} else {
+					x = v[offset + k - 1] + 1; // Deleting
+				}
+
+				int y = x - k;
+				while (x < n && y < m && a.get(x).equals(b.get(y))) {
+					x++;
+					y++;
+				}
+
+				v[offset + k] = x;
+				if (x >= n && y >= m) {
+					trace.add(slice(v, offset, d));
+					return backtrack(trace, n, m);
+				}
+			}
+
+			trace.add(slice(v, offset, d));
+		}
+
+		return null;
+	}
+
+	/**
+	 * Copies the diagonals -d to d of v, which are all that step d can have reached.
+	 */
+	private static int[] slice(int[] v, int offset, int d) {
+		int[] copy = new int[2 * d + 1];
+		System.arraycopy(v, offset - d, copy, 0, copy.length);
+		return copy;
+	}
+
+	/**
+	 * Walks back from the end through the recorded steps, turning them into an edit script.
+	 */
+	private static byte[] backtrack(List<int[]> trace, int n, int m) {
+		byte[] reversed = new byte[n + m];
+		int length = 0;
+		int x = n, y = m;
+
+		for (int d = trace.size() - 1; d > 0; d--) {
+			int[] previous = trace.get(d - 1);
+			int k = x - y;
+
+			boolean inserted = k == -d || (k != d && at(previous, d - 1, k - 1) < at(previous, d - 1, k + 1));
+			int previousK = inserted ? k + 1 : k - 1;
+			int previousX = at(previous, d - 1, previousK);
+			int previousY = previousX - previousK;
+
+			// The matching run after the edit
+			while (x > previousX && y > previousY) {
+				reversed[length++] = KEEP;
+				x--;
+				y--;
+			}
+
+			if (x == previousX) {
+				reversed[length++] = INSERT;
+				y--;
+			} else {
+				reversed[length++] = DELETE;
+				x--;
+			}
+		}
+
+		// The matching run before the first edit
+		while (x > 0 && y > 0) {
+			reversed[length++] = KEEP;
+			x--;
+			y--;
+		}
+
+		byte[] script = new byte[length];
+		for (int i = 0; i < length; i++) script[i] = reversed[length - 1 - i];
+		return script;
+	}
+
+	private static int at(int[] slice, int d, int k) {
+		return slice[k + d];
+	}
+
+	/**
+	 * Splits html into tags, words, runs of whitespace and single other characters.
+	 */
+	static List<String> tokenize(String html) {
+		List<String> tokens = new ArrayList<>();
+		int i = 0, length = html.length();
+
+		while (i < length) {
+			char c = html.charAt(i);
+			int end = i + 1;
+
+			if (c == '<') {
+				int close = html.indexOf('>', i);
+				end = close == -1 ? length : close + 1;
+			} else if (Character.isLetterOrDigit(c)) {
+				while (end < length && Character.isLetterOrDigit(html.charAt(end))) end++;
+			} else if (Character.isWhitespace(c)) {
+				while (end < length && Character.isWhitespace(html.charAt(end))) end++;
+			}
+
+			tokens.add(html.substring(i, end));
+			i = end;
+		}
+
+		return tokens;
+	}
+
+	private static int[] offsets(List<String> tokens) {
+		int[] offsets = new int[tokens.size() + 1];
+		for (int i = 0; i < tokens.size(); i++) offsets[i + 1] = offsets[i] + tokens.get(i).length();
+		return offsets;
+	}
+
+	private static String join(List<String> tokens, int from, int to) {
+		StringBuilder text = new StringBuilder();
+		for (int i = from; i < to; i++) text.append(tokens.get(i));
+		return text.toString();
+	}
+}
@@ -3,28 +3,96 @@ package utils;
 import java.util.List;
 
 import org.jsoup.nodes.Document;
-import org.jsoup.select.Elements;
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+import org.jsoup.select.NodeTraversor;
+import org.jsoup.select.NodeVisitor;
 
+import model.rules.CompiledRuleSet;
 import model.rules.HtmlTransformationRule;
 
 public class HtmlRuleProcessor {
     /**
      * Processes the given HTML content according to the specified list of transformation rules.
      *
+     * Compiles the rules on every call, prefer {@link #process(Document, CompiledRuleSet)} when the
+     * same rules are applied to many documents.
+     *
      * @param htmlContent the HTML content to process
      * @param rules the list of transformation rules to apply
      * @return the processed HTML content
      */
-    public Document process(Document doc, List<HtmlTransformationRule> rules) {     
-    	if (doc == null) return doc;
+    public Document process(Document doc, List<HtmlTransformationRule> rules) {
+        return process(doc, CompiledRuleSet.compile(rules));
+    }
+
+    /**
+     * Processes the given HTML content according to a compiled rule set.
+     *
+     * The body is walked once and the whole rule chain is applied to each element in turn. A rule
+     * only ever modifies the element it is given (its tag, attributes and own text nodes), so this
+     * produces the same output as running every rule over the whole body one after another.
+     *
+     * @param doc the HTML content to process
+     * @param ruleSet the compiled transformation rules to apply
+     * @return the processed HTML content
+     */
+    public Document process(Document doc, CompiledRuleSet ruleSet) {
+        apply(doc, ruleSet);
+        return doc;
+    }
+
+    /**
+     * Transforms the document in place according to a compiled rule set, reporting whether any
+     * rule actually changed it.
+     *
+     * @param doc the HTML content to process
+     * @param ruleSet the compiled transformation rules to apply
+     * @return true if the document was changed
+     */
+    public boolean apply(Document doc, CompiledRuleSet ruleSet) {
+        return apply(doc, ruleSet, null);
+    }
+
+    /**
+     * Transforms the document in place according to a compiled rule set, counting the changes each
+     * rule makes.
+     *
+     * @param doc the HTML content to process
+     * @param ruleSet the compiled transformation rules to apply
+     * @param ruleHits incremented at a rule's index each time the rule changes a value, may be null
+     * @return true if the document was changed
+     */
+    public boolean apply(Document doc, CompiledRuleSet ruleSet, int[] ruleHits) {
+    	if (doc == null) return false;
         doc.outputSettings().prettyPrint(false);
-		
-		for (HtmlTransformationRule rule : rules) {
-            Elements elements = doc.body().getAllElements(); // Simple selector based on searchPhrase
-            
-            elements.stream().forEach((e) -> rule.transform(e)); // Transforming the elements
-        }
-		
-		return doc;
+
+        if (ruleSet.isEmpty()) return false;
+
+        RuleSetVisitor visitor = new RuleSetVisitor(ruleSet, ruleHits);
+        NodeTraversor.traverse(visitor, doc.body()); // Single pass over the body
+
+		return visitor.changed;
+    }
+
+    /**
+     * Visits each element of the document once, applying the rule set to it.
+     */
+    private static class RuleSetVisitor implements NodeVisitor {
+    	final private CompiledRuleSet ruleSet;
+    	final private int[] ruleHits;
+    	private boolean changed = false;
+
+    	RuleSetVisitor(CompiledRuleSet ruleSet, int[] ruleHits) {
+    		this.ruleSet = ruleSet;
+    		this.ruleHits = ruleHits;
+    	}
+
+		@Override
+		public void head(Node node, int depth) {
+			if (!(node instanceof Element)) return; // Text nodes are handled by their parent element
+
+			changed |= ruleSet.transform((Element) node, ruleHits);
+		}
     }
 }
@@ -0,0 +1,221 @@
+package utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import utils.callbacks.AnswerIdCallback;
+
+/**
+ * Reads a file of answer ids, one per line, without building a string or boxed integer per line.
+ *
+ * The file is memory-mapped and parsed byte by byte straight into an {@link IntList}. Spaces and tabs
+ * around an id, blank lines, Windows line endings and a UTF-8 byte order mark are accepted; any
+ * other line is reported as malformed by its line number and skipped. Repeated ids are dropped using
+ * a bitset, so each answer is only processed once.
+ *
+ * A callback can be given to receive each new id as soon as it's parsed, so a pipeline can start
+ * fetching while the rest of the file is still being read.
+ */
+public class IdFileReader {
+	public static final int MAX_REPORTED_LINES = 100; // Malformed lines beyond this are only counted
+
+	private static final long MAX_MAPPED_BYTES = 1L << 28;
+	private static final int BITSET_LIMIT = 1 << 28; // Larger ids are tracked in a set so one can't allocate a huge bitset
+	private static final int EXCERPT_LENGTH = 40;
+
+	/**
+	 * What was read from an id file.
+	 */
+	public static class Result {
+		final private IntList ids;
+		final private long lineCount;
+		final private long duplicateCount;
+		final private long malformedCount;
+		final private List<String> malformedLines;
+
+		Result(IntList ids, long lineCount, long duplicateCount, long malformedCount, List<String> malformedLines) {
+			this.ids = ids;
+			this.lineCount = lineCount;
+			this.duplicateCount = duplicateCount;
+			this.malformedCount = malformedCount;
+			this.malformedLines = malformedLines;
+		}
+
+		/**
+		 * The unique ids, in the order they first appear.
+		 */
+		public IntList getIds() {
+			return ids;
+		}
+
+		public long getLineCount() {
+			return lineCount;
+		}
+
+		public long getDuplicateCount() {
+			return duplicateCount;
+		}
+
+		public long getMalformedCount() {
+			return malformedCount;
+		}
+
+		/**
+		 * Descriptions of the first {@link #MAX_REPORTED_LINES} malformed lines, such as
+		 * {@code Line 12: "12a4"}.
+		 */
+		public List<String> getMalformedLines() {
+			return malformedLines;
+		}
+	}
+
+	final private AnswerIdCallback callback; // May be null
+
+	final private IntList ids = new IntList(1024);
+	final private BitSet seen = new BitSet();
+	final private Set<Integer> seenLarge = new HashSet<>();
+	final private List<String> malformedLines = new ArrayList<>();
+	private long duplicateCount;
+	private long malformedCount;
+
+	// The state of the line being parsed, carried across mapped windows
+	private long line = 1;
+	private long value;
+	private int digits;
+	private boolean trailing; // Only spaces are allowed after the id
+	private boolean malformed;
+	final private byte[] excerpt = new byte[EXCERPT_LENGTH];
+	private int excerptLength;
+	private int lineLength;
+
+	private IdFileReader(AnswerIdCallback callback) {
+		this.callback = callback;
+	}
+
+	/**
+	 * Reads every id in a file.
+	 *
+	 * @param file The id file.
+	 * @return The ids and any problems with the file.
+	 * @throws IOException If the file can't be read.
+	 */
+	public static Result read(File file) throws IOException {
+		try {
+			return read(file, null);
+		} catch (InterruptedException e) {
+			throw new IllegalStateException(e); // Only the callback can be interrupted
+		}
+	}
+
+	/**
+	 * Reads every id in a file, handing each new id to the callback as it's parsed.
+	 *
+	 * @param file The id file.
+	 * @param callback Called with each id the first time it appears, or null.
+	 * @return The ids and any problems with the file.
+	 * @throws IOException If the file can't be read.
+	 * @throws InterruptedException If the callback is interrupted.
+	 */
+	public static Result read(File file, AnswerIdCallback callback) throws IOException, InterruptedException {
+		IdFileReader reader = new IdFileReader(callback);
+
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			long size = channel.size();
+			for (long position = 0; position < size; ) {
+				long length = Math.min(size - position, MAX_MAPPED_BYTES);
+				MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+
+				reader.parse(window, position == 0 ? skipByteOrderMark(window) : 0);
+				position += length;
+			}
+		}
+
+		if (reader.lineLength > 0) reader.endLine(); // The last line may not end with a newline
+		return new Result(reader.ids, reader.line - 1, reader.duplicateCount, reader.malformedCount, reader.malformedLines);
+	}
+
+	private void parse(MappedByteBuffer window, int start) throws InterruptedException {
+		int limit = window.limit();
+		for (int i = start; i < limit; i++) {
+			byte b = window.get(i);
+
+			if (b == '\n') {
+				endLine();
+				continue;
+			}
+
+			if (excerptLength < EXCERPT_LENGTH) excerpt[excerptLength++] = b;
+			lineLength++;
+			if (malformed) continue;
+
+			if (b >= '0' && b <= '9') {
+				if (trailing) {
+					malformed = true; // Something after the id
+					continue;
+				}
+
+				value = value * 10 + (b - '0');
+				if (value > Integer.MAX_VALUE) malformed = true;
+				digits++;
+			} else if (b == ' ' || b == '\t' || b == '\r') {
+				if (digits > 0) trailing = true;
+			} else {
+				malformed = true;
+			}
+		}
+	}
+
+	private void endLine() throws InterruptedException {
+		if (malformed) {
+			malformedCount++;
+			if (malformedLines.size() < MAX_REPORTED_LINES) malformedLines.add("Line " + line + ": \"" + excerpt() + "\"");
+		} else if (digits > 0) {
+			add((int) value);
+		}
+
+		line++;
+		value = 0;
+		digits = 0;
+		trailing = false;
+		malformed = false;
+		excerptLength = 0;
+		lineLength = 0;
+	}
+
+	private void add(int id) throws InterruptedException {
+		boolean repeated;
+		if (id < BITSET_LIMIT) {
+			repeated = seen.get(id);
+			seen.set(id);
+		} else {
+			repeated = !seenLarge.add(id);
+		}
+
+		if (repeated) {
+			duplicateCount++;
+			return;
+		}
+
+		ids.add(id);
+		if (callback != null) callback.onAnswerId(id);
+	}
+
+	private String excerpt() {
+		String text = new String(excerpt, 0, excerptLength, StandardCharsets.UTF_8).trim();
+		return lineLength > EXCERPT_LENGTH ? text + "..." : text;
+	}
+
+	private static int skipByteOrderMark(MappedByteBuffer window) {
+		boolean bom = window.limit() >= 3 && window.get(0) == (byte) 0xEF && window.get(1) == (byte) 0xBB && window.get(2) == (byte) 0xBF;
+		return bom ? 3 : 0;
+	}
+}
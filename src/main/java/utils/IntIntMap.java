@@ -0,0 +1,113 @@
+package utils;
+
+import java.util.Arrays;
+
+/*
+ * A map from int keys to int values in open-addressed arrays, so large maps don't need boxed keys and entries.
+ * Not thread safe
+ */
+public class IntIntMap {
+	public static final int MISSING = -1; // Returned by get for keys that aren't in the map
+
+	private static final int EMPTY = Integer.MIN_VALUE;
+
+	private int[] keys;
+	private int[] values;
+	private int size;
+
+	public IntIntMap() {
+		this(16);
+	}
+
+	public IntIntMap(int expectedSize) {
+		int capacity = Integer.highestOneBit(Math.max(4, expectedSize) * 2 - 1) << 1;
+		keys = new int[capacity];
+		values = new int[capacity];
+		Arrays.fill(keys, EMPTY);
+	}
+
+	/*
+	 * The value for the key, or MISSING
+	 */
+	public int get(int key) {
+		int slot = find(key);
+		return keys[slot] == EMPTY ? MISSING : values[slot];
+	}
+
+	public boolean containsKey(int key) {
+		return keys[find(key)] != EMPTY;
+	}
+
+	public void put(int key, int value) {
+		if (key == EMPTY) throw new IllegalArgumentException("Invalid key " + key);
+
+		int slot = find(key);
+		if (keys[slot] == EMPTY) {
+			if ((size + 1) * 4 > keys.length * 3) {
+				grow();
+				slot = find(key);
+			}
+			keys[slot] = key;
+			size++;
+		}
+		values[slot] = value;
+	}
+
+	public void remove(int key) {
+		int slot = find(key);
+		if (keys[slot] == EMPTY) return;
+
+		// Shifting later entries of the probe run back so lookups never stop at the gap early
+		int mask = keys.length - 1;
+		int gap = slot;
+		for (int next = (gap + 1) & mask; keys[next] != EMPTY; next = (next + 1) & mask) {
+			int home = mix(keys[next]) & mask;
+			boolean between = gap <= next ? (home > gap && home <= next) : (home > gap || home <= next);
+			if (between) continue; // Still reachable from its home slot
+
+			keys[gap] = keys[next];
+			values[gap] = values[next];
+			gap = next;
+		}
+
+		keys[gap] = EMPTY;
+		size--;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public void clear() {
+		Arrays.fill(keys, EMPTY);
+		size = 0;
+	}
+
+	private int find(int key) {
+		int mask = keys.length - 1;
+		int slot = mix(key) & mask;
+		while (keys[slot] != EMPTY && keys[slot] != key) slot = (slot + 1) & mask;
+		return slot;
+	}
+
+	private void grow() {
+		int[] oldKeys = keys;
+		int[] oldValues = values;
+		keys = new int[oldKeys.length * 2];
+		values = new int[oldKeys.length * 2];
+		Arrays.fill(keys, EMPTY);
+
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] == EMPTY) continue;
+
+			int slot = find(oldKeys[i]);
+			keys[slot] = oldKeys[i];
+			values[slot] = oldValues[i];
+		}
+	}
+
+	private static int mix(int key) {
+		int h = key * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+}
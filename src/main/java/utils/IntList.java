@@ -0,0 +1,44 @@
+package utils;
+
+import java.util.Arrays;
+
+/*
+ * A growable list of ints backed by an array, so large lists of answer ids don't need an Integer each
+ */
+public class IntList {
+	private int[] values;
+	private int size;
+	
+	public IntList() {
+		this(16);
+	}
+	
+	public IntList(int capacity) {
+		values = new int[Math.max(1, capacity)];
+	}
+	
+	public void add(int value) {
+		if (size == values.length) values = Arrays.copyOf(values, values.length * 2);
+		values[size++] = value;
+	}
+	
+	public int get(int index) {
+		if (index < 0 || index >= size) throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + size);
+		return values[index];
+	}
+	
+	public int size() {
+		return size;
+	}
+	
+	public boolean isEmpty() {
+		return size == 0;
+	}
+	
+	/*
+	 * A copy of the values, trimmed to the size of the list
+	 */
+	public int[] toArray() {
+		return Arrays.copyOf(values, size);
+	}
+}
@@ -0,0 +1,165 @@
+package utils;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * An Aho-Corasick automaton built from a fixed list of phrases.
+ *
+ * Finds every phrase occurring in a string with a single left to right scan, no matter how many
+ * phrases there are. Matching is case-insensitive, so a reported phrase is only a candidate: it tells
+ * the caller which operations are worth running, the operations still do the exact comparison.
+ */
+public class PhraseMatcher {
+	private static final int ROOT = 0;
+
+	final private char[][] keys;      // Sorted transition characters of each node
+	final private int[][] children;   // Node reached through the transition at the same index in keys
+	final private int[] fail;         // Node for the longest proper suffix that is also in the trie
+	final private int[][] outputs;    // Ids of the phrases ending at each node, or null
+	final private int[] outputLink;   // Nearest node on the fail chain that ends a phrase, or -1
+	final private int phraseCount;
+
+	/**
+	 * Builds the automaton. The id of each phrase is its index in the list; null or empty phrases
+	 * are given an id but never match.
+	 *
+	 * @param phrases The phrases to search for.
+	 */
+	public PhraseMatcher(List<String> phrases) {
+		this.phraseCount = phrases.size();
+
+		// Building the trie
+		List<TreeMap<Character, Integer>> trie = new ArrayList<>();
+		List<List<Integer>> ends = new ArrayList<>();
+		trie.add(new TreeMap<>());
+		ends.add(null);
+
+		for (int id = 0; id < phrases.size(); id++) {
+			String phrase = phrases.get(id);
+			if (phrase == null || phrase.isEmpty()) continue;
+
+			int node = ROOT;
+			for (int i = 0; i < phrase.length(); i++) {
+				char c = fold(phrase.charAt(i));
+				Integer next = trie.get(node).get(c);
+				if (next == null) {
+					next = trie.size();
+					trie.add(new TreeMap<>());
+					ends.add(null);
+					trie.get(node).put(c, next);
+				}
+				node = next;
+			}
+
+			if (ends.get(node) == null) ends.set(node, new ArrayList<>());
+			ends.get(node).add(id);
+		}
+
+		// Flattening the trie into arrays
+		int size = trie.size();
+		keys = new char[size][];
+		children = new int[size][];
+		outputs = new int[size][];
+		for (int node = 0; node < size; node++) {
+			TreeMap<Character, Integer> edges = trie.get(node);
+			keys[node] = new char[edges.size()];
+			children[node] = new int[edges.size()];
+
+			int i = 0;
+			for (Map.Entry<Character, Integer> edge : edges.entrySet()) {
+				keys[node][i] = edge.getKey();
+				children[node][i] = edge.getValue();
+				i++;
+			}
+
+			List<Integer> ids = ends.get(node);
+			if (ids != null) outputs[node] = ids.stream().mapToInt(Integer::intValue).toArray();
+		}
+
+		// Linking each node to its longest suffix, breadth first so suffixes are always done first
+		fail = new int[size];
+		outputLink = new int[size];
+		Arrays.fill(outputLink, -1);
+
+		Deque<Integer> queue = new ArrayDeque<>();
+		for (int child : children[ROOT]) {
+			fail[child] = ROOT;
+			queue.add(child);
+		}
+
+		while (!queue.isEmpty()) {
+			int node = queue.poll();
+			for (int i = 0; i < keys[node].length; i++) {
+				int child = children[node][i];
+				fail[child] = step(fail[node], keys[node][i]);
+				outputLink[child] = outputs[fail[child]] != null ? fail[child] : outputLink[fail[child]];
+				queue.add(child);
+			}
+		}
+	}
+
+	/**
+	 * Finds the phrases that occur in the text.
+	 *
+	 * @param text The text to scan.
+	 * @return A set of the ids of every phrase found.
+	 */
+	public BitSet match(CharSequence text) {
+		BitSet found = new BitSet(phraseCount);
+
+		int node = ROOT;
+		for (int i = 0; i < text.length(); i++) {
+			node = step(node, fold(text.charAt(i)));
+
+			for (int out = outputs[node] != null ? node : outputLink[node]; out != -1; out = outputLink[out]) {
+				for (int id : outputs[out]) found.set(id);
+			}
+		}
+
+		return found;
+	}
+
+	/**
+	 * Checks if any of the phrases occur in the text, stopping at the first one found.
+	 *
+	 * @param text The text to scan.
+	 * @return true if at least one phrase occurs in the text.
+	 */
+	public boolean matchesAny(CharSequence text) {
+		int node = ROOT;
+		for (int i = 0; i < text.length(); i++) {
+			node = step(node, fold(text.charAt(i)));
+			if (outputs[node] != null || outputLink[node] != -1) return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * The number of phrase ids in this matcher.
+	 */
+	public int size() {
+		return phraseCount;
+	}
+
+	private int step(int node, char c) {
+		while (true) {
+			int i = Arrays.binarySearch(keys[node], c);
+			if (i >= 0) return children[node][i];
+			if (node == ROOT) return ROOT;
+
+			node = fail[node];
+		}
+	}
+
+	private static char fold(char c) {
+		return Character.toLowerCase(c);
+	}
+}
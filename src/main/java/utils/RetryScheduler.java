@@ -0,0 +1,104 @@
+package utils;
+
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import utils.callbacks.RetryDueCallback;
+
+/**
+ * Holds items waiting to be retried, in the order they are due, and hands each one back once its
+ * delay has passed.
+ *
+ * Scheduling never blocks, and the waiting is done by a single thread, so a worker that hits a
+ * transient failure can move straight on to the next item.
+ */
+public class RetryScheduler<T> {
+	final private DelayQueue<Entry<T>> queue = new DelayQueue<>();
+	final private AtomicLong sequence = new AtomicLong(); // Keeps items due at the same time in order
+	final private RetryDueCallback<T> callback;
+	final private String name;
+	private Thread thread;
+
+	/**
+	 * Constructs a retry scheduler.
+	 *
+	 * @param name The name of the thread handing back due items.
+	 * @param callback Called with each item once it is due.
+	 */
+	public RetryScheduler(String name, RetryDueCallback<T> callback) {
+		this.name = name;
+		this.callback = callback;
+	}
+
+	/**
+	 * Starts the thread handing back due items.
+	 */
+	public synchronized void start() {
+		if (thread != null) return;
+
+		thread = new Thread(() -> {
+			try {
+				while (true) {
+					callback.onRetryDue(queue.take().item);
+				}
+			} catch (InterruptedException e) {
+				// Scheduler stopped
+			}
+		}, name);
+
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Schedules an item to be handed back after a delay.
+	 *
+	 * @param item The item to retry.
+	 * @param delayMillis How long to wait before handing it back.
+	 */
+	public void schedule(T item, long delayMillis) {
+		queue.put(new Entry<>(item, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMillis), sequence.getAndIncrement()));
+	}
+
+	/**
+	 * The number of items waiting for their retry.
+	 */
+	public int size() {
+		return queue.size();
+	}
+
+	/**
+	 * Stops handing back items. Items still waiting are dropped.
+	 */
+	public synchronized void stop() {
+		if (thread != null) thread.interrupt();
+		thread = null;
+		queue.clear();
+	}
+
+	private static class Entry<T> implements Delayed {
+		final private T item;
+		final private long dueAt;
+		final private long sequence;
+
+		Entry(T item, long dueAt, long sequence) {
+			this.item = item;
+			this.dueAt = dueAt;
+			this.sequence = sequence;
+		}
+
+		@Override
+		public long getDelay(TimeUnit unit) {
+			return unit.convert(dueAt - System.nanoTime(), TimeUnit.NANOSECONDS);
+		}
+
+		@Override
+		public int compareTo(Delayed other) {
+			Entry<?> entry = (Entry<?>) other;
+			int order = Long.compare(dueAt - entry.dueAt, 0);
+			return order != 0 ? order : Long.compare(sequence, entry.sequence);
+		}
+	}
+}
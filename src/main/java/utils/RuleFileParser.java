@@ -0,0 +1,131 @@
+package utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import model.operations.DeleteOperation;
+import model.operations.Operation;
+import model.operations.ReplaceOperation;
+import model.rules.HtmlTransformationRule;
+import model.rules.TargetConfig;
+import model.rules.TargetConfig.TargetType;
+
+/**
+ * Reads transformation rules from a JSON file, for runs without the rule dialog. The file holds an
+ * array of rules with the same fields as the dialog:
+ *
+ * <pre>
+ * [
+ *   {"search": "Colour", "operation": "replace", "replacement": "Color"},
+ *   {"search": "legacy", "operation": "delete", "text": true, "tags": true, "tagNames": ["code", "pre"]}
+ * ]
+ * </pre>
+ *
+ * {@code text}, {@code attributes} and {@code tags} are the dialog's target checkboxes, with
+ * {@code attributeNames} and {@code tagNames} as their specific fields. A rule without any of them
+ * targets everything, like a rule built without a target config.
+ */
+public class RuleFileParser {
+	private RuleFileParser() {}
+
+	/**
+	 * Reads the rules in a file.
+	 *
+	 * @param file The JSON rule file.
+	 * @return The rules, in the order they appear in the file.
+	 * @throws IOException If the file can't be read or a rule is invalid.
+	 */
+	public static List<HtmlTransformationRule> getRules(File file) throws IOException {
+		String json = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+
+		JSONArray array;
+		try {
+			array = new JSONArray(json);
+		} catch (JSONException e) {
+			throw new IOException(file + " is not a JSON array of rules: " + e.getMessage());
+		}
+
+		List<HtmlTransformationRule> rules = new ArrayList<>();
+		for (int i = 0; i < array.length(); i++) {
+			try {
+				rules.add(parseRule(array.getJSONObject(i)));
+			} catch (JSONException | IllegalArgumentException e) {
+				throw new IOException("Rule " + (i + 1) + " in " + file + " is invalid: " + e.getMessage());
+			}
+		}
+
+		return rules;
+	}
+
+	private static HtmlTransformationRule parseRule(JSONObject json) {
+		String searchPhrase = json.getString("search");
+		if (searchPhrase.isEmpty()) throw new IllegalArgumentException("the search phrase is empty");
+
+		Operation<String> operation;
+		String type = json.getString("operation");
+		switch (type.toLowerCase()) {
+			case "replace":
+				String replacement = json.getString("replacement");
+				if (replacement.isEmpty()) throw new IllegalArgumentException("the replacement is empty");
+				operation = new ReplaceOperation(searchPhrase, replacement);
+				break;
+			case "delete":
+				operation = new DeleteOperation(searchPhrase);
+				break;
+			default:
+				throw new IllegalArgumentException("unknown operation \"" + type + "\"");
+		}
+
+		return new HtmlTransformationRule(searchPhrase, operation, parseTargets(json));
+	}
+
+	/**
+	 * Builds the target config the same way the rule dialog does from its checkboxes.
+	 *
+	 * @return The target config, or null if the rule doesn't set any targets.
+	 */
+	private static TargetConfig parseTargets(JSONObject json) {
+		if (!json.has("text") && !json.has("attributes") && !json.has("tags")) return null;
+
+		EnumSet<TargetType> targetTypes = EnumSet.noneOf(TargetType.class);
+		Map<TargetType, Set<String>> specificTargets = new HashMap<>();
+
+		if (json.optBoolean("text")) {
+			targetTypes.add(TargetType.TEXT);
+		}
+		if (json.optBoolean("attributes")) {
+			targetTypes.add(TargetType.ATTRIBUTES);
+			specificTargets.put(TargetType.ATTRIBUTES, parseNames(json.optJSONArray("attributeNames")));
+		}
+		if (json.optBoolean("tags")) {
+			targetTypes.add(TargetType.TAGS);
+			specificTargets.put(TargetType.TAGS, parseNames(json.optJSONArray("tagNames")));
+		}
+
+		return new TargetConfig(targetTypes, specificTargets);
+	}
+
+	private static Set<String> parseNames(JSONArray array) {
+		Set<String> names = new HashSet<>();
+		if (array == null) return names;
+
+		for (int i = 0; i < array.length(); i++) {
+			String name = array.getString(i).trim();
+			if (!name.isEmpty()) names.add(name);
+		}
+		return names;
+	}
+}
@@ -0,0 +1,201 @@
+package utils;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+import data.storage.AnswerSnapshotStore;
+import data.storage.AnswerSnapshotStore.Snapshot;
+import data.storage.TransformIndex;
+
+/**
+ * Remembers the result of applying a rule set to some html, so html that was already transformed, by
+ * another answer or in an earlier run, is never parsed or walked again.
+ *
+ * Results are keyed by the content hash of the fetched html and the fingerprint of the rule set, so
+ * editing the rules never reuses an old result. The most recently used results are kept in memory up
+ * to a size limit. With a disk tier attached, results are also looked up in and added to a
+ * {@link TransformIndex}, with the transformed html read back from the {@link AnswerSnapshotStore}.
+ *
+ * The cache never fails a transform: a result that can't be read back is a miss, and a disk tier that
+ * can't be written to is dropped for the rest of the run.
+ */
+public class TransformCache {
+	public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+	private static final int ENTRY_OVERHEAD = 96; // Rough cost of the key, entry and string headers
+
+	final private long maxBytes;
+	final private LongAdder hits = new LongAdder();
+	final private LongAdder misses = new LongAdder();
+
+	// Guarded by this
+	final private LinkedHashMap<Key, Result> results = new LinkedHashMap<>(1024, 0.75f, true); // In access order
+	private long bytes;
+
+	private volatile DiskTier disk;
+
+	/**
+	 * Constructs an empty cache.
+	 *
+	 * @param maxBytes Roughly how much memory the cached results may take.
+	 */
+	public TransformCache(long maxBytes) {
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 * Sets the disk tier to use from now on.
+	 *
+	 * @param index The index to look up and record transforms in, or null to only use memory.
+	 * @param snapshots The store holding the transformed html the index refers to.
+	 */
+	public void setDiskTier(TransformIndex index, AnswerSnapshotStore snapshots) {
+		disk = index == null ? null : new DiskTier(index, snapshots);
+	}
+
+	/**
+	 * Looks up the result of applying a rule set to some html.
+	 *
+	 * @param inputHash The {@link ContentHash} of the html.
+	 * @param ruleFingerprint The fingerprint of the rule set.
+	 * @return The result, or null if it isn't known.
+	 */
+	public Result get(long inputHash, long ruleFingerprint) {
+		Key key = new Key(inputHash, ruleFingerprint);
+		Result result;
+		synchronized (this) {
+			result = results.get(key);
+		}
+
+		if (result == null) {
+			result = readDisk(inputHash, ruleFingerprint);
+			if (result != null) remember(key, result);
+		}
+
+		(result == null ? misses : hits).increment();
+		return result;
+	}
+
+	/**
+	 * Remembers the result of applying a rule set to some html.
+	 *
+	 * @param inputHash The {@link ContentHash} of the html.
+	 * @param ruleFingerprint The fingerprint of the rule set.
+	 * @param html The transformed html, or null if the rules changed nothing. With a disk tier it must
+	 *             already be in the snapshot store.
+	 */
+	public void put(long inputHash, long ruleFingerprint, String html) {
+		remember(new Key(inputHash, ruleFingerprint), new Result(html));
+
+		DiskTier tier = disk;
+		if (tier == null) return;
+
+		try {
+			tier.index.put(inputHash, ruleFingerprint, html == null ? TransformIndex.UNCHANGED : ContentHash.of(html));
+		} catch (IOException e) {
+			disk = null;
+		}
+	}
+
+	public long getHitCount() {
+		return hits.sum();
+	}
+
+	public long getMissCount() {
+		return misses.sum();
+	}
+
+	private Result readDisk(long inputHash, long ruleFingerprint) {
+		DiskTier tier = disk;
+		if (tier == null) return null;
+
+		Long outputHash = tier.index.getOutputHash(inputHash, ruleFingerprint);
+		if (outputHash == null) return null;
+		if (outputHash == TransformIndex.UNCHANGED) return new Result(null);
+
+		Snapshot snapshot = tier.snapshots.getSnapshotByHash(outputHash);
+		if (snapshot == null) return null;
+
+		try {
+			return new Result(tier.snapshots.read(snapshot));
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Adds a result to memory, dropping the least recently used results to stay within the limit.
+	 */
+	private synchronized void remember(Key key, Result result) {
+		Result previous = results.put(key, result);
+		if (previous != null) bytes -= previous.size();
+		bytes += result.size();
+
+		Iterator<Result> eldest = results.values().iterator();
+		while (bytes > maxBytes && eldest.hasNext()) {
+			bytes -= eldest.next().size();
+			eldest.remove();
+		}
+	}
+
+	/**
+	 * The outcome of a transform.
+	 */
+	public static class Result {
+		final private String html; // null if nothing changed
+
+		Result(String html) {
+			this.html = html;
+		}
+
+		public boolean isChanged() {
+			return html != null;
+		}
+
+		/**
+		 * The transformed html, or null if the rules changed nothing.
+		 */
+		public String getHtml() {
+			return html;
+		}
+
+		private long size() {
+			return ENTRY_OVERHEAD + (html == null ? 0 : 2L * html.length());
+		}
+	}
+
+	private static class DiskTier {
+		final private TransformIndex index;
+		final private AnswerSnapshotStore snapshots;
+
+		DiskTier(TransformIndex index, AnswerSnapshotStore snapshots) {
+			this.index = index;
+			this.snapshots = snapshots;
+		}
+	}
+
+	private static class Key {
+		final private long inputHash;
+		final private long ruleFingerprint;
+
+		Key(long inputHash, long ruleFingerprint) {
+			this.inputHash = inputHash;
+			this.ruleFingerprint = ruleFingerprint;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Key)) return false;
+			Key other = (Key) o;
+			return inputHash == other.inputHash && ruleFingerprint == other.ruleFingerprint;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(inputHash, ruleFingerprint);
+		}
+	}
+}
@@ -0,0 +1,74 @@
+package utils;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import javax.swing.Timer;
+
+import utils.callbacks.AnswerBatchCallback;
+
+/**
+ * Gathers answer changes from the worker threads and hands them to the Event Dispatch Thread in
+ * batches, at most once per interval.
+ *
+ * Publishing only adds the id to a lock-free queue, so workers never wait on the UI and a faster
+ * pipeline doesn't flood the event queue. An id already waiting isn't queued again, so the queue never
+ * holds more than one entry per answer however often it changes. A Swing timer drains the queue on
+ * the EDT and passes the batch to the callback in one go.
+ */
+public class UpdateCoalescer {
+	public static final int DEFAULT_INTERVAL_MILLIS = 100;
+	private static final int MAX_BATCH = 100_000; // More changes wait for the next tick, so one batch can't stall the EDT
+
+	final private ConcurrentLinkedQueue<Integer> changed = new ConcurrentLinkedQueue<>();
+	final private Set<Integer> waiting = ConcurrentHashMap.newKeySet(); // The ids in the queue
+	final private AnswerBatchCallback callback;
+	final private Timer timer;
+
+	/**
+	 * Constructs a coalescer and starts its timer.
+	 *
+	 * @param intervalMillis The shortest time between batches.
+	 * @param callback Called on the EDT with each batch of changed answers.
+	 */
+	public UpdateCoalescer(int intervalMillis, AnswerBatchCallback callback) {
+		this.callback = callback;
+
+		this.timer = new Timer(intervalMillis, e -> drain());
+		timer.setCoalesce(true); // Skipping ticks the EDT was too busy for rather than queueing them
+		timer.start();
+	}
+
+	/**
+	 * Records that an answer changed. Can be called from any thread and never blocks.
+	 *
+	 * @param answerId The id of the answer that changed.
+	 */
+	public void publish(int answerId) {
+		if (waiting.add(answerId)) changed.add(answerId);
+	}
+
+	/**
+	 * Stops the timer; changes published afterwards are never delivered.
+	 */
+	public void stop() {
+		timer.stop();
+	}
+
+	/**
+	 * Hands everything published since the last batch to the callback.
+	 */
+	private void drain() {
+		if (changed.isEmpty()) return;
+
+		IntList ids = new IntList();
+		Integer id;
+		while (ids.size() < MAX_BATCH && (id = changed.poll()) != null) {
+			waiting.remove(id); // Changes from now on are queued for the next batch, the rows read the latest state
+			ids.add(id);
+		}
+
+		callback.onAnswersChanged(ids);
+	}
+}
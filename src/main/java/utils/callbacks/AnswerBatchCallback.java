@@ -0,0 +1,12 @@
+package utils.callbacks;
+
+import utils.IntList;
+
+public interface AnswerBatchCallback {
+    /**
+     * This method will be called on the Event Dispatch Thread with the answers that changed since the last batch.
+     *
+     * @param answerIds The ids of the changed answers, each listed once.
+     */
+    void onAnswersChanged(IntList answerIds);
+}
@@ -0,0 +1,12 @@
+package utils.callbacks;
+
+import model.answers.states.Answer;
+
+public interface AnswerChangedCallback {
+    /**
+     * This method will be called when an answer moves to a new state.
+     *
+     * @param answer The answer with its new state.
+     */
+    void onAnswerChanged(Answer answer);
+}
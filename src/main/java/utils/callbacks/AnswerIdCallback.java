@@ -0,0 +1,11 @@
+package utils.callbacks;
+
+public interface AnswerIdCallback {
+    /**
+     * This method will be called for each new answer id as the id file is read.
+     *
+     * @param answerId The id read from the file.
+     * @throws InterruptedException If interrupted while handing the id on.
+     */
+    void onAnswerId(int answerId) throws InterruptedException;
+}
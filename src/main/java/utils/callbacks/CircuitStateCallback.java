@@ -0,0 +1,13 @@
+package utils.callbacks;
+
+import model.network.CircuitBreaker.State;
+
+public interface CircuitStateCallback {
+    /**
+     * This method will be called when the circuit breaker moves to a new state.
+     *
+     * @param state     The breaker's new state.
+     * @param tripCount The number of times the breaker has opened.
+     */
+    void onCircuitStateChanged(State state, int tripCount);
+}
@@ -0,0 +1,10 @@
+package utils.callbacks;
+
+public interface ConcurrencyLimitCallback {
+    /**
+     * This method will be called when the adaptive concurrency limit changes.
+     *
+     * @param limit The number of requests now allowed in flight at once.
+     */
+    void onLimitChanged(int limit);
+}
@@ -0,0 +1,11 @@
+package utils.callbacks;
+
+public interface RetryDueCallback<T> {
+    /**
+     * This method will be called when a scheduled retry is due.
+     *
+     * @param item The item to retry.
+     * @throws InterruptedException If the thread is interrupted while handing the item on.
+     */
+    void onRetryDue(T item) throws InterruptedException;
+}
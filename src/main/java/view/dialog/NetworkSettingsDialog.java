@@ -16,6 +16,8 @@ public class NetworkSettingsDialog extends JDialog {
     private JTextField userField;
     private JTextField passwordField;
     private JTextField apiLimitField;
+    private JTextField burstField;
+    private JTextField inFlightField;
     private NetworkChangedCallback callback;
 
     public NetworkSettingsDialog(Frame parent, NetworkConfig existingConfig, NetworkChangedCallback callback) {
@@ -23,13 +25,17 @@ public class NetworkSettingsDialog extends JDialog {
         this.callback = callback;
         
         setResizable(false);
-        setPreferredSize(new Dimension(450, 250));
+        setPreferredSize(new Dimension(450, 320));
         
         // Initialize UI components
         hostField = new JTextField(20);
         userField = new JTextField(20);
         passwordField = new JPasswordField(20);
         apiLimitField = new JTextField(5);
+        burstField = new JTextField(5);
+        apiLimitField.setToolTipText("The most requests to send each minute, leave empty or 0 for no limit");
+        inFlightField = new JTextField(5);
+        inFlightField.setToolTipText("The most requests waiting on the server at once, leave empty for the default");
 
         // Populate fields with existing config if available
         if (existingConfig != null) {
@@ -37,6 +43,8 @@ public class NetworkSettingsDialog extends JDialog {
             userField.setText(existingConfig.getUser() != null && existingConfig.getUser().username() != null ? existingConfig.getUser().username() : "");
             passwordField.setText(existingConfig.getUser() != null && existingConfig.getUser().password() != null ? existingConfig.getUser().password() : "");
             apiLimitField.setText(existingConfig.getMaxRequestsPerMinute() > 0 ? String.valueOf(existingConfig.getMaxRequestsPerMinute()) : "");
+            burstField.setText(String.valueOf(existingConfig.getBurst()));
+            inFlightField.setText(existingConfig.getMaxConcurrentRequests() > 0 ? String.valueOf(existingConfig.getMaxConcurrentRequests()) : "");
         }
 
         // Setup layout with padding
@@ -77,6 +85,20 @@ public class NetworkSettingsDialog extends JDialog {
         gbc.gridx = 1;
         panel.add(apiLimitField, gbc);
 
+        // Add Burst field
+        gbc.gridx = 0;
+        gbc.gridy = 4;
+        panel.add(new JLabel("Burst (requests):"), gbc);
+        gbc.gridx = 1;
+        panel.add(burstField, gbc);
+
+        // Add In Flight field
+        gbc.gridx = 0;
+        gbc.gridy = 5;
+        panel.add(new JLabel("Max in flight (requests):"), gbc);
+        gbc.gridx = 1;
+        panel.add(inFlightField, gbc);
+
         // Add buttons
         JPanel buttonPanel = new JPanel();
         JButton addButton = new JButton("Add");
@@ -109,18 +131,24 @@ public class NetworkSettingsDialog extends JDialog {
         String username = userField.getText().trim();
         String password = passwordField.getText().trim();
         String apiLimitText = apiLimitField.getText().trim();
-
-        // Validate inputs
-        if (host.isEmpty() || username.isEmpty() || password.isEmpty() || !isValidApiLimit(apiLimitText)) {
-            JOptionPane.showMessageDialog(this, "All fields must be filled out correctly and API limit must be a positive integer.", "Input Error", JOptionPane.ERROR_MESSAGE);
+        String burstText = burstField.getText().trim();
+        String inFlightText = inFlightField.getText().trim();
+
+        // Validate inputs, the API limit, burst and max in flight are optional
+        if (host.isEmpty() || username.isEmpty() || password.isEmpty()
+                || (!apiLimitText.isEmpty() && !apiLimitText.equals("0") && !isValidApiLimit(apiLimitText))
+                || (!burstText.isEmpty() && !isValidApiLimit(burstText)) || (!inFlightText.isEmpty() && !isValidApiLimit(inFlightText))) {
+            JOptionPane.showMessageDialog(this, "All fields must be filled out correctly and API limit, burst and max in flight must be positive integers.", "Input Error", JOptionPane.ERROR_MESSAGE);
             return;
         }
 
-        int apiLimit = Integer.parseInt(apiLimitText);
+        int apiLimit = apiLimitText.isEmpty() ? 0 : Integer.parseInt(apiLimitText); // 0 sends requests without a limit
+        int burst = burstText.isEmpty() ? NetworkConfig.DEFAULT_BURST : Integer.parseInt(burstText);
+        int inFlight = inFlightText.isEmpty() ? 0 : Integer.parseInt(inFlightText);
 
         // Create or update NetworkConfig
         User user = new User(username, password);
-        NetworkConfig newConfig = new NetworkConfig(user, host, apiLimit);
+        NetworkConfig newConfig = new NetworkConfig(user, host, apiLimit, burst, inFlight);
 
         // Trigger callback
         if (callback != null) {
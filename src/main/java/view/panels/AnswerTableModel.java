@@ -0,0 +1,190 @@
+package view.panels;
+
+import java.util.Arrays;
+
+import javax.swing.table.AbstractTableModel;
+
+import model.answers.states.AnswerState;
+import utils.AnswerManager;
+import utils.IntIntMap;
+import utils.IntList;
+
+/**
+ * The rows of one answer tab: every answer, or only the answers in one state.
+ *
+ * The model only holds the ids of its rows; states are read from the {@link AnswerManager} when a row
+ * is painted, so the table only ever looks at the rows on screen. When an answer changes, only its
+ * row is updated, or added or removed if it moved in or out of the tab's state. Rows are removed by
+ * moving the last row into their place, so a removal doesn't shift every row below it.
+ *
+ * Must only be used on the Event Dispatch Thread.
+ */
+public class AnswerTableModel extends AbstractTableModel {
+    private static final long serialVersionUID = -2604471822468170823L;
+
+    public static final int ID_COLUMN = 0;
+    public static final int STATE_COLUMN = 1;
+    public static final int DESCRIPTION_COLUMN = 2;
+    private static final String[] COLUMN_NAMES = {"Id", "State", "Description"};
+
+    final private transient AnswerManager answerManager;
+    final private String stateName; // null for every answer
+
+    private int[] rowIds = new int[16];
+    private int rowCount;
+    final private transient IntIntMap rowsById = new IntIntMap();
+
+    /**
+     * Constructs a model for one tab.
+     *
+     * @param answerManager The manager the answers' states are read from.
+     * @param stateName     The name of the state to show, or null to show every answer.
+     */
+    public AnswerTableModel(AnswerManager answerManager, String stateName) {
+        this.answerManager = answerManager;
+        this.stateName = stateName;
+    }
+
+    /**
+     * The name of the state this model shows, or null if it shows every answer.
+     */
+    public String getStateName() {
+        return stateName;
+    }
+
+    /**
+     * Replaces the rows with the given answers, keeping those in this model's state.
+     *
+     * @param answerIds The ids of the answers, in the order to show them.
+     */
+    public void setAnswers(IntList answerIds) {
+        rowIds = new int[Math.max(16, stateName == null ? answerIds.size() : 16)];
+        rowCount = 0;
+        rowsById.clear();
+
+        for (int i = 0; i < answerIds.size(); i++) {
+            int id = answerIds.get(i);
+            if (shows(id) && !rowsById.containsKey(id)) addRow(id);
+        }
+
+        fireTableDataChanged();
+    }
+
+    /**
+     * Appends rows for answers added since the rows were set, keeping those in this model's state.
+     * Answers that already have a row are skipped.
+     *
+     * @param answerIds The ids of the answers, in the order to show them.
+     */
+    public void addAnswers(IntList answerIds) {
+        int first = rowCount;
+        for (int i = 0; i < answerIds.size(); i++) {
+            int id = answerIds.get(i);
+            if (shows(id) && !rowsById.containsKey(id)) addRow(id);
+        }
+
+        if (rowCount > first) fireTableRowsInserted(first, rowCount - 1);
+    }
+
+    /**
+     * Updates the row of an answer whose state changed, adding or removing it as needed.
+     *
+     * @param answerId The id of the answer that changed.
+     */
+    public void answerChanged(int answerId) {
+        int row = rowsById.get(answerId);
+        boolean shows = shows(answerId);
+
+        if (row == IntIntMap.MISSING) {
+            if (!shows) return;
+
+            addRow(answerId);
+            fireTableRowsInserted(rowCount - 1, rowCount - 1);
+        } else if (shows) {
+            fireTableRowsUpdated(row, row);
+        } else {
+            removeRow(row);
+        }
+    }
+
+    /**
+     * The id of the answer shown in a row.
+     *
+     * @param row The row index in the model.
+     * @return The answer's id.
+     */
+    public int getAnswerId(int row) {
+        return rowIds[row];
+    }
+
+    /**
+     * The current state of the answer shown in a row.
+     *
+     * @param row The row index in the model.
+     * @return The answer's state, or null if it has been removed from the manager.
+     */
+    public AnswerState getState(int row) {
+        return answerManager.getState(rowIds[row]);
+    }
+
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMN_NAMES.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMN_NAMES[column];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        return column == ID_COLUMN ? Integer.class : String.class;
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        if (column == ID_COLUMN) return rowIds[row];
+
+        AnswerState state = getState(row);
+        if (state == null) return "";
+        return column == STATE_COLUMN ? state.getName() : state.getDescription();
+    }
+
+    private boolean shows(int answerId) {
+        if (stateName == null) return answerManager.getState(answerId) != null;
+
+        AnswerState state = answerManager.getState(answerId);
+        return state != null && stateName.equals(state.getName());
+    }
+
+    private void addRow(int answerId) {
+        if (rowCount == rowIds.length) rowIds = Arrays.copyOf(rowIds, rowCount * 2);
+
+        rowIds[rowCount] = answerId;
+        rowsById.put(answerId, rowCount);
+        rowCount++;
+    }
+
+    /**
+     * Removes a row by moving the last row into its place.
+     */
+    private void removeRow(int row) {
+        int last = rowCount - 1;
+        rowsById.remove(rowIds[row]);
+
+        if (row != last) {
+            rowIds[row] = rowIds[last];
+            rowsById.put(rowIds[row], row);
+        }
+        rowCount--;
+
+        fireTableRowsDeleted(last, last);
+        if (row != last) fireTableRowsUpdated(row, row);
+    }
+}
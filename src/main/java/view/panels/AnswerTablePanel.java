@@ -0,0 +1,99 @@
+package view.panels;
+
+import javax.swing.*;
+import javax.swing.table.DefaultTableCellRenderer;
+
+import model.answers.states.AnswerState;
+
+import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+
+import org.jsoup.nodes.Document;
+
+/**
+ * Shows the answers of one tab in a table. Only the rows on screen are painted, so the tab stays
+ * responsive however many answers it holds.
+ *
+ * Clicking an answer's state shows the document it holds in that state. States only keep their html,
+ * so the document is parsed when the dialog opens.
+ */
+public class AnswerTablePanel extends JPanel {
+    private static final long serialVersionUID = -3164807411826120475L;
+    private static final int ROW_HEIGHT = 28;
+
+    final private JTable table;
+
+    public AnswerTablePanel(AnswerTableModel model) {
+        setLayout(new BorderLayout());
+
+        table = new JTable(model);
+        table.setRowHeight(ROW_HEIGHT);
+        table.setFillsViewportHeight(true);
+        table.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        table.getTableHeader().setReorderingAllowed(false);
+        table.getColumnModel().getColumn(AnswerTableModel.ID_COLUMN).setPreferredWidth(120);
+        table.getColumnModel().getColumn(AnswerTableModel.STATE_COLUMN).setPreferredWidth(150);
+        table.getColumnModel().getColumn(AnswerTableModel.DESCRIPTION_COLUMN).setPreferredWidth(400);
+        table.getColumnModel().getColumn(AnswerTableModel.STATE_COLUMN).setCellRenderer(new StateRenderer());
+
+        table.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int row = table.rowAtPoint(e.getPoint());
+                int column = table.columnAtPoint(e.getPoint());
+                if (row < 0 || table.convertColumnIndexToModel(column) != AnswerTableModel.STATE_COLUMN) return;
+
+                AnswerState state = model.getState(table.convertRowIndexToModel(row));
+                if (state != null) openStateDocumentDialog(state.getDocument());
+            }
+        });
+
+        add(new JScrollPane(table), BorderLayout.CENTER);
+    }
+
+    // Method to open a dialog displaying the state's document content or an empty string if null
+    private void openStateDocumentDialog(Document doc) {
+        String content = (doc != null) ? doc.toString() : "";
+        JTextArea textArea = new JTextArea(content);
+        textArea.setEditable(false); // Make the text area non editable
+        JScrollPane scrollPane = new JScrollPane(textArea); // Add scrollable functionality
+        scrollPane.setPreferredSize(new Dimension(700, 500));
+
+        // Show the dialog
+        JOptionPane.showMessageDialog(this, scrollPane, "State Document", JOptionPane.INFORMATION_MESSAGE);
+    }
+
+    /**
+     * Paints a state cell in the state's colour, with its description as the tooltip.
+     */
+    private static class StateRenderer extends DefaultTableCellRenderer {
+        private static final long serialVersionUID = 2279367125094637545L;
+
+        StateRenderer() {
+            setHorizontalAlignment(SwingConstants.CENTER);
+        }
+
+        @Override
+        public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected, boolean hasFocus, int row, int column) {
+            super.getTableCellRendererComponent(table, value, isSelected, hasFocus, row, column);
+
+            // setBackground and setForeground stick to the rows painted after this one, so every branch sets them
+            AnswerState state = ((AnswerTableModel) table.getModel()).getState(table.convertRowIndexToModel(row));
+            if (state == null) {
+                setBackground(isSelected ? table.getSelectionBackground() : table.getBackground());
+                setForeground(isSelected ? table.getSelectionForeground() : table.getForeground());
+                setToolTipText(null);
+            } else if (isSelected) {
+                setBackground(table.getSelectionBackground());
+                setForeground(table.getSelectionForeground());
+                setToolTipText(state.getDescription());
+            } else {
+                setBackground(state.getColour());
+                setForeground(Color.DARK_GRAY.darker()); // Dark text on the state's colour
+                setToolTipText(state.getDescription());
+            }
+            return this;
+        }
+    }
+}
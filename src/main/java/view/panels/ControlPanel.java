@@ -7,6 +7,8 @@ import java.awt.event.ActionEvent;
 public class ControlPanel extends JPanel {
     private static final long serialVersionUID = 8572143124845836804L;
     private JButton runStopButton, uploadButton, addTransformationButton, userButton, networkButton;
+    private JCheckBox dryRunCheckBox;
+    private JLabel concurrencyLabel, circuitLabel;
 
     public ControlPanel() {
         runStopButton = new JButton("Run");
@@ -14,6 +16,10 @@ public class ControlPanel extends JPanel {
         addTransformationButton = new JButton("Add Transformation");
         userButton = new JButton("User");
         networkButton = new JButton("Network");
+        dryRunCheckBox = new JCheckBox("Dry run");
+        dryRunCheckBox.setToolTipText("Write the changes to a report instead of updating Oracle");
+        concurrencyLabel = new JLabel();
+        circuitLabel = new JLabel();
 
         setLayout(new FlowLayout(FlowLayout.LEFT));
         add(runStopButton);
@@ -21,6 +27,9 @@ public class ControlPanel extends JPanel {
         add(addTransformationButton);
         // add(userButton);
         add(networkButton);
+        add(dryRunCheckBox);
+        add(concurrencyLabel);
+        add(circuitLabel);
 
         runStopButton.addActionListener(this::toggleRunStop);
         uploadButton.addActionListener(this::handleUpload);
@@ -68,6 +77,34 @@ public class ControlPanel extends JPanel {
     public void setRunStopButtonEnabled(boolean enabled) {
         runStopButton.setEnabled(enabled); // Enable or disable the button
     }
+
+    /**
+     * Checks if the next run should only report its changes rather than update Oracle.
+     *
+     * @return true if dry run is ticked.
+     */
+    public boolean isDryRun() {
+        return dryRunCheckBox.isSelected();
+    }
+
+    /**
+     * Shows how many requests can currently be sent to Oracle at once.
+     *
+     * @param limit The current concurrency limit.
+     */
+    public void setConcurrencyLimit(int limit) {
+        concurrencyLabel.setText("Concurrent requests: " + limit);
+    }
+
+    /**
+     * Shows the state of the circuit breaker guarding Oracle.
+     *
+     * @param state     The name of the breaker's state.
+     * @param tripCount The number of times the breaker has opened.
+     */
+    public void setCircuitState(String state, int tripCount) {
+        circuitLabel.setText("Circuit: " + state + " (trips: " + tripCount + ")");
+    }
 }
 
 
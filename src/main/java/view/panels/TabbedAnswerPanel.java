@@ -2,12 +2,14 @@ package view.panels;
 
 import javax.swing.*;
 import java.awt.BorderLayout;
+import java.util.List;
 
 public class TabbedAnswerPanel extends JPanel {
     /**
 	 * 
 	 */
 	private static final long serialVersionUID = 4661399326225405987L;
+	private static final List<String> TAB_NAMES = List.of("All", "Finished", "Updating", "Waiting", "Unchanged", "Error");
 	private JTabbedPane tabbedPane;
 
     public TabbedAnswerPanel() {
@@ -18,19 +20,29 @@ public class TabbedAnswerPanel extends JPanel {
     }
 
     private void initializeTabs() {
-        tabbedPane.addTab("All", new JPanel());
-        tabbedPane.addTab("Finished", new JPanel());
-        tabbedPane.addTab("Updating", new JPanel());
-        tabbedPane.addTab("Waiting", new JPanel());
-        tabbedPane.addTab("Error", new JPanel());
+        for (String tabName : TAB_NAMES) {
+            tabbedPane.addTab(tabName, new JPanel());
+        }
     }
 
     // Update the content of a specific tab
     public void updateTabContent(String tabName, JPanel content) {
-        int index = tabbedPane.indexOfTab(tabName);
+        int index = TAB_NAMES.indexOf(tabName);
         if (index != -1) {
             JScrollPane scrollPane = new JScrollPane(content);
             tabbedPane.setComponentAt(index, scrollPane);
         }
     }
+
+    // Show a table of answers in a tab, the table scrolls itself
+    public void setTabTable(String tabName, AnswerTablePanel table) {
+        int index = TAB_NAMES.indexOf(tabName);
+        if (index != -1) tabbedPane.setComponentAt(index, table);
+    }
+
+    // Show the number of answers in a tab next to its name
+    public void setTabCount(String tabName, long count) {
+        int index = TAB_NAMES.indexOf(tabName);
+        if (index != -1) tabbedPane.setTitleAt(index, tabName + " (" + count + ")");
+    }
 }
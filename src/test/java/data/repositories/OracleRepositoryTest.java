@@ -0,0 +1,123 @@
+package data.repositories;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.mashape.unirest.http.exceptions.UnirestException;
+
+import data.dataSources.IOracleDataSource;
+import model.network.AdaptiveConcurrencyLimiter;
+import model.network.CircuitBreaker;
+import model.network.NetworkConfig;
+
+public class OracleRepositoryTest {
+	private static final int REQUESTS_PER_MINUTE = 600; // One every 100ms
+	private static final long INTERVAL_MILLIS = 100;
+
+	@Test(timeout = 10_000)
+	public void keepsToTheRateWhenWaitingForAConcurrencySlot() throws Exception {
+		FakeDataSource source = new FakeDataSource(new NetworkConfig(null, "http://oracle", REQUESTS_PER_MINUTE, 1));
+		OracleRepository repository = new OracleRepository(source, new CircuitBreaker(), new AdaptiveConcurrencyLimiter(1, 1, 1));
+
+		// The first request holds the only slot while the others queue up behind it
+		source.slowUntil = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(500);
+		List<Thread> threads = new ArrayList<>();
+		threads.add(fetch(repository, 1));
+		Thread.sleep(50);
+		for (int id = 2; id <= 5; id++) threads.add(fetch(repository, id));
+		for (Thread thread : threads) thread.join();
+
+		List<Long> sent = source.getSent();
+		assertEquals(5, sent.size());
+		for (int i = 1; i < sent.size(); i++) {
+			long gap = TimeUnit.NANOSECONDS.toMillis(sent.get(i) - sent.get(i - 1));
+			assertTrue("Requests " + i + " and " + (i + 1) + " were sent " + gap + "ms apart", gap >= INTERVAL_MILLIS - 10);
+		}
+	}
+
+	@Test(timeout = 10_000)
+	public void givesBackTheSlotWhenInterruptedWaitingForTheRate() throws Exception {
+		FakeDataSource source = new FakeDataSource(new NetworkConfig(null, "http://oracle", 1, 1)); // One a minute
+		AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(2, 1, 2);
+		OracleRepository repository = new OracleRepository(source, new CircuitBreaker(), limiter);
+
+		repository.fetchAnswer(1); // Uses up the burst
+		Thread waiting = fetch(repository, 2);
+		while (limiter.getInFlight() == 0) Thread.sleep(1);
+
+		waiting.interrupt();
+		waiting.join();
+		assertEquals(0, limiter.getInFlight());
+		assertEquals(1, source.getSent().size());
+	}
+
+	private static Thread fetch(OracleRepository repository, int id) {
+		Thread thread = new Thread(() -> {
+			try {
+				repository.fetchAnswer(id);
+			} catch (UnirestException e) {
+				// Interrupted
+			}
+		});
+		thread.start();
+		return thread;
+	}
+
+	/*
+	 * Records when each request was sent
+	 */
+	private static class FakeDataSource implements IOracleDataSource {
+		final private List<Long> sent = new ArrayList<>();
+		private NetworkConfig config;
+		private volatile long slowUntil; // Requests sent before this take until then to answer
+
+		FakeDataSource(NetworkConfig config) {
+			this.config = config;
+		}
+
+		@Override
+		public String fetchAnswer(int answerId) throws UnirestException {
+			long now = System.nanoTime();
+			synchronized (sent) {
+				sent.add(now);
+			}
+
+			long wait = slowUntil - now;
+			if (wait > 0) {
+				try {
+					TimeUnit.NANOSECONDS.sleep(wait);
+				} catch (InterruptedException e) {
+					throw new UnirestException(e);
+				}
+			}
+			return "<p>" + answerId + "</p>";
+		}
+
+		@Override
+		public void updateAnswer(int answerId, String html) throws UnirestException {
+			fetchAnswer(answerId);
+		}
+
+		@Override
+		public void setNetworkConfig(NetworkConfig config) {
+			this.config = config;
+		}
+
+		@Override
+		public NetworkConfig getNetworkConfig() {
+			return config;
+		}
+
+		List<Long> getSent() {
+			synchronized (sent) {
+				return new ArrayList<>(sent);
+			}
+		}
+	}
+}
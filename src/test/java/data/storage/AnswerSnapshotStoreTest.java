@@ -0,0 +1,89 @@
+package data.storage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import data.storage.AnswerSnapshotStore.Kind;
+
+public class AnswerSnapshotStoreTest {
+	private static final long RULES = 0x1234L;
+	private static final int HEADER_SIZE = 16;
+	private static final int ENTRY_SIZE = 40;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void keepsSnapshotsAcrossRuns() throws IOException {
+		Path directory = folder.newFolder("snapshots").toPath();
+
+		try (AnswerSnapshotStore store = AnswerSnapshotStore.open(directory)) {
+			store.putOriginal(1, "<p>a cat</p>");
+			store.putTransformed(1, "<p>a dog</p>", RULES);
+			store.putOriginal(2, "<p>a cat</p>"); // Stored once, shared by both answers
+			store.putOriginal(1, "<p>a dog</p>");
+		}
+
+		try (AnswerSnapshotStore store = AnswerSnapshotStore.open(directory)) {
+			assertEquals(2, store.getAnswerCount());
+			assertEquals("<p>a dog</p>", store.getOriginal(1));
+			assertEquals("<p>a cat</p>", store.getEarliestOriginal(1));
+			assertEquals("<p>a dog</p>", store.getTransformed(1));
+			assertEquals(RULES, store.getSnapshot(1, Kind.TRANSFORMED).getRuleFingerprint());
+			assertEquals("<p>a cat</p>", store.getOriginal(2));
+			assertEquals(store.getSnapshot(1, Kind.ORIGINAL).getContentHash(), store.getSnapshot(1, Kind.TRANSFORMED).getContentHash());
+		}
+	}
+
+	@Test
+	public void onlyWritesIndexEntriesOnceTheirDataIsSynced() throws IOException {
+		Path directory = folder.newFolder("snapshots").toPath();
+		Path index = directory.resolve(AnswerSnapshotStore.INDEX_FILE);
+
+		try (AnswerSnapshotStore store = AnswerSnapshotStore.open(directory)) {
+			store.putOriginal(1, "<p>a cat</p>");
+			store.putOriginal(2, "<p>a dog</p>");
+			assertEquals(HEADER_SIZE, Files.size(index));
+			assertEquals("<p>a dog</p>", store.getOriginal(2)); // Readable before it's synced
+
+			store.sync();
+			assertEquals(HEADER_SIZE + 2 * ENTRY_SIZE, Files.size(index));
+
+			store.putTransformed(1, "<p>a cats</p>", RULES);
+			store.sync();
+			assertEquals(HEADER_SIZE + 3 * ENTRY_SIZE, Files.size(index));
+		}
+	}
+
+	@Test
+	public void dropsSnapshotsThatWereNeverSynced() throws IOException {
+		Path directory = folder.newFolder("snapshots").toPath();
+		Path crashed = folder.newFolder("crashed").toPath();
+
+		try (AnswerSnapshotStore store = AnswerSnapshotStore.open(directory)) {
+			store.putOriginal(1, "<p>a cat</p>");
+			store.sync();
+			store.putOriginal(2, "<p>a dog</p>");
+
+			// The files as a crash would leave them: the second answer's data without its entry
+			Files.copy(directory.resolve(AnswerSnapshotStore.DATA_FILE), crashed.resolve(AnswerSnapshotStore.DATA_FILE));
+			Files.copy(directory.resolve(AnswerSnapshotStore.INDEX_FILE), crashed.resolve(AnswerSnapshotStore.INDEX_FILE));
+		}
+
+		long syncedData;
+		try (AnswerSnapshotStore store = AnswerSnapshotStore.open(crashed)) {
+			assertEquals("<p>a cat</p>", store.getOriginal(1));
+			assertNull(store.getOriginal(2));
+			syncedData = store.getSnapshot(1, Kind.ORIGINAL).getCompressedLength();
+		}
+		assertEquals(syncedData, Files.size(crashed.resolve(AnswerSnapshotStore.DATA_FILE))); // The unindexed data is dropped
+	}
+}
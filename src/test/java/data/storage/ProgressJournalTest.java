@@ -0,0 +1,175 @@
+package data.storage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import data.storage.ProgressJournal.Event;
+
+public class ProgressJournalTest {
+	private static final long RULES = 0x1234L;
+	private static final long OTHER_RULES = 0x5678L;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void replaysTheLastEventOfEachAnswer() throws IOException {
+		Path file = folder.getRoot().toPath().resolve("ids.txt.journal");
+
+		// Enough answers to grow the replayed table a few times
+		try (ProgressJournal journal = ProgressJournal.open(file)) {
+			assertEquals(0, journal.getReplayedCount());
+			for (int id = 1; id <= 5000; id++) {
+				journal.record(id, Event.FETCHED, RULES);
+				journal.record(id, id % 3 == 0 ? Event.ERROR : Event.UPDATED, id % 5 == 0 ? OTHER_RULES : RULES);
+			}
+		}
+
+		try (ProgressJournal journal = ProgressJournal.open(file)) {
+			assertEquals(5000, journal.getReplayedCount());
+			assertEquals(Event.ERROR, journal.getLastEvent(3));
+			assertEquals(Event.UPDATED, journal.getLastEvent(4));
+			assertNull(journal.getLastEvent(5001));
+
+			assertTrue(journal.isComplete(4, RULES));
+			assertFalse(journal.isComplete(3, RULES)); // Failed
+			assertFalse(journal.isComplete(10, RULES)); // Updated with other rules
+			assertTrue(journal.isComplete(10, OTHER_RULES));
+		}
+	}
+
+	@Test
+	public void appendsToTheJournalWhenReopened() throws IOException {
+		Path file = folder.getRoot().toPath().resolve("ids.txt.journal");
+
+		try (ProgressJournal journal = ProgressJournal.open(file)) {
+			journal.record(1, Event.FETCHED, RULES);
+		}
+		try (ProgressJournal journal = ProgressJournal.open(file)) {
+			journal.record(1, Event.UNCHANGED, RULES);
+			journal.record(2, Event.FETCHED, RULES);
+		}
+
+		try (ProgressJournal journal = ProgressJournal.open(file)) {
+			assertEquals(2, journal.getReplayedCount());
+			assertTrue(journal.isComplete(1, RULES));
+			assertEquals(Event.FETCHED, journal.getLastEvent(2));
+		}
+	}
+
+	@Test
+	public void dropsARecordCutShortByACrash() throws IOException {
+		Path file = folder.getRoot().toPath().resolve("ids.txt.journal");
+
+		try (ProgressJournal journal = ProgressJournal.open(file)) {
+			journal.record(1, Event.UPDATED, RULES);
+		}
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.APPEND)) {
+			channel.write(ByteBuffer.wrap(new byte[] {0, 0, 0, 2, 3, 0, 0})); // The start of a record for answer 2
+		}
+
+		try (ProgressJournal journal = ProgressJournal.open(file)) {
+			assertEquals(1, journal.getReplayedCount());
+			assertNull(journal.getLastEvent(2));
+
+			journal.record(2, Event.UPDATED, RULES);
+		}
+
+		try (ProgressJournal journal = ProgressJournal.open(file)) {
+			assertTrue(journal.isComplete(1, RULES));
+			assertTrue(journal.isComplete(2, RULES));
+		}
+	}
+
+	@Test
+	public void recognisesHtmlSentBeforeACrash() throws IOException {
+		Path file = folder.getRoot().toPath().resolve("ids.txt.journal");
+
+		try (ProgressJournal journal = ProgressJournal.open(file)) {
+			journal.record(1, Event.TRANSFORMED, RULES);
+			journal.recordSending(1, "<p>sent</p>");
+			journal.record(2, Event.TRANSFORMED, RULES);
+			journal.recordSending(2, "<p>sent</p>");
+			journal.record(2, Event.UPDATED, RULES);
+		}
+
+		try (ProgressJournal journal = ProgressJournal.open(file)) {
+			assertEquals(Event.SENDING, journal.getLastEvent(1));
+			assertFalse(journal.isComplete(1, RULES));
+			assertTrue(journal.wasSent(1, RULES, "<p>sent</p>"));
+			assertFalse(journal.wasSent(1, RULES, "<p>changed since</p>"));
+			assertFalse(journal.wasSent(1, OTHER_RULES, "<p>sent</p>"));
+
+			assertTrue(journal.isComplete(2, RULES));
+			assertFalse(journal.wasSent(2, RULES, "<p>sent</p>")); // Already known to be done
+		}
+	}
+
+	@Test
+	public void remembersHtmlSentBeforeAnError() throws IOException {
+		Path file = folder.getRoot().toPath().resolve("ids.txt.journal");
+
+		// The PUT reached Oracle, but timed out on every retry, so the answer was recorded as failed
+		try (ProgressJournal journal = ProgressJournal.open(file)) {
+			journal.record(1, Event.TRANSFORMED, RULES);
+			journal.recordSending(1, "<p>sent</p>");
+			journal.record(1, Event.ERROR, RULES);
+		}
+
+		try (ProgressJournal journal = ProgressJournal.open(file)) {
+			assertEquals(Event.ERROR, journal.getLastEvent(1));
+			assertTrue(journal.wasSent(1, RULES, "<p>sent</p>"));
+			assertFalse(journal.wasSent(1, RULES, "<p>never sent</p>"));
+
+			// Sent again and updated this time
+			journal.recordSending(1, "<p>sent again</p>");
+			journal.record(1, Event.ERROR, RULES);
+			journal.record(1, Event.UPDATED, RULES);
+		}
+
+		try (ProgressJournal journal = ProgressJournal.open(file)) {
+			assertTrue(journal.isComplete(1, RULES));
+			assertFalse(journal.wasSent(1, RULES, "<p>sent</p>"));
+			assertFalse(journal.wasSent(1, RULES, "<p>sent again</p>"));
+		}
+	}
+
+	@Test
+	public void replacesTheHashWhenSentAgain() throws IOException {
+		Path file = folder.getRoot().toPath().resolve("ids.txt.journal");
+
+		try (ProgressJournal journal = ProgressJournal.open(file)) {
+			journal.record(1, Event.TRANSFORMED, RULES);
+			journal.recordSending(1, "<p>first</p>");
+			journal.record(1, Event.ERROR, RULES);
+			journal.recordSending(1, "<p>second</p>");
+			journal.record(1, Event.ERROR, RULES);
+		}
+
+		try (ProgressJournal journal = ProgressJournal.open(file)) {
+			assertFalse(journal.wasSent(1, RULES, "<p>first</p>"));
+			assertTrue(journal.wasSent(1, RULES, "<p>second</p>"));
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void rejectsFilesThatAreNotJournals() throws IOException {
+		Path file = folder.getRoot().toPath().resolve("ids.txt");
+		Files.write(file, "1\n2\n3\n4\n5\n6\n7\n8\n9\n10\n".getBytes());
+
+		ProgressJournal.open(file).close();
+	}
+}
@@ -0,0 +1,86 @@
+package data.storage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TransformIndexTest {
+	private static final long RULES = 0x1234L;
+	private static final long OTHER_RULES = 0x5678L;
+	private static final int HEADER_SIZE = 16;
+	private static final int ENTRY_SIZE = 24;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void keepsTransformsAcrossRuns() throws IOException {
+		Path directory = folder.getRoot().toPath();
+
+		try (TransformIndex index = TransformIndex.open(directory)) {
+			index.put(1, RULES, 11);
+			index.put(2, RULES, TransformIndex.UNCHANGED);
+			index.put(1, OTHER_RULES, 12);
+			index.put(1, RULES, 11); // Already known, so not written again
+			index.put(2, RULES, 13); // Replaces the earlier result
+		}
+
+		Path file = directory.resolve(TransformIndex.INDEX_FILE);
+		assertEquals(HEADER_SIZE + 4 * ENTRY_SIZE, Files.size(file));
+
+		try (TransformIndex index = TransformIndex.open(directory)) {
+			assertEquals(3, index.size());
+			assertEquals(Long.valueOf(11), index.getOutputHash(1, RULES));
+			assertEquals(Long.valueOf(12), index.getOutputHash(1, OTHER_RULES));
+			assertEquals(Long.valueOf(13), index.getOutputHash(2, RULES));
+			assertNull(index.getOutputHash(2, OTHER_RULES));
+		}
+	}
+
+	@Test
+	public void dropsAnEntryCutShortByACrash() throws IOException {
+		Path directory = folder.getRoot().toPath();
+		Path file = directory.resolve(TransformIndex.INDEX_FILE);
+
+		try (TransformIndex index = TransformIndex.open(directory)) {
+			index.put(1, RULES, 11);
+			index.put(2, RULES, 12);
+		}
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.APPEND)) {
+			channel.write(ByteBuffer.allocate(ENTRY_SIZE - 5).putLong(3).putLong(RULES).flip()); // Most of an entry for input 3
+		}
+
+		try (TransformIndex index = TransformIndex.open(directory)) {
+			assertEquals(2, index.size());
+			assertNull(index.getOutputHash(3, RULES));
+			assertEquals(HEADER_SIZE + 2 * ENTRY_SIZE, Files.size(file));
+
+			index.put(4, RULES, 14);
+		}
+
+		// The new entry went where the torn one was, so it lines up with the others
+		try (TransformIndex index = TransformIndex.open(directory)) {
+			assertEquals(3, index.size());
+			assertEquals(Long.valueOf(12), index.getOutputHash(2, RULES));
+			assertEquals(Long.valueOf(14), index.getOutputHash(4, RULES));
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void rejectsFilesThatAreNotIndexes() throws IOException {
+		Path directory = folder.getRoot().toPath();
+		Files.write(directory.resolve(TransformIndex.INDEX_FILE), "1\n2\n3\n4\n5\n6\n7\n8\n9\n10\n11\n12\n".getBytes());
+
+		TransformIndex.open(directory).close();
+	}
+}
@@ -0,0 +1,163 @@
+package model.network;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import model.network.CircuitBreaker.Permit;
+import model.network.CircuitBreaker.State;
+
+public class CircuitBreakerTest {
+	private static final long SLOW_MILLIS = 1_000;
+	private static final long FAST = TimeUnit.MILLISECONDS.toNanos(1);
+	private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(SLOW_MILLIS + 1);
+
+	@Test(timeout = 10_000)
+	public void tripsOnceEnoughCallsFail() throws Exception {
+		CircuitBreaker breaker = breaker(60_000, 2);
+		List<State> changes = new CopyOnWriteArrayList<>();
+		breaker.setCallback((state, trips) -> changes.add(state));
+
+		// Half the calls failing, but too few calls to judge the host on
+		breaker.onSuccess(breaker.acquire(), FAST);
+		breaker.onFailure(breaker.acquire());
+		breaker.onSuccess(breaker.acquire(), FAST);
+		assertEquals(State.CLOSED, breaker.getState());
+
+		breaker.onFailure(breaker.acquire()); // 2 of 4 failed
+		assertEquals(State.OPEN, breaker.getState());
+		assertEquals(1, breaker.getTripCount());
+		assertEquals(List.of(State.OPEN), changes);
+	}
+
+	@Test(timeout = 10_000)
+	public void staysClosedBelowTheThreshold() throws Exception {
+		CircuitBreaker breaker = breaker(60_000, 2);
+
+		for (int i = 0; i < 20; i++) {
+			Permit permit = breaker.acquire();
+			if (i % 4 == 3) breaker.onFailure(permit); else breaker.onSuccess(permit, FAST); // A quarter failing
+		}
+		assertEquals(State.CLOSED, breaker.getState());
+
+		// Ignored calls, such as a 429, don't count either way
+		for (int i = 0; i < 20; i++) breaker.onIgnore(breaker.acquire());
+		assertEquals(State.CLOSED, breaker.getState());
+	}
+
+	@Test(timeout = 10_000)
+	public void tripsWhenMostCallsAreSlow() throws Exception {
+		CircuitBreaker breaker = breaker(60_000, 2);
+
+		breaker.onSuccess(breaker.acquire(), SLOW);
+		breaker.onSuccess(breaker.acquire(), SLOW);
+		breaker.onSuccess(breaker.acquire(), SLOW);
+		assertEquals(State.CLOSED, breaker.getState());
+
+		breaker.onSuccess(breaker.acquire(), SLOW); // All 4 slow, past the 75% slow call rate
+		assertEquals(State.OPEN, breaker.getState());
+	}
+
+	@Test(timeout = 10_000)
+	public void releasesOnlyTheProbesWhenHalfOpen() throws Exception {
+		CircuitBreaker breaker = breaker(200, 2);
+		trip(breaker);
+
+		BlockingQueue<Permit> granted = new LinkedBlockingQueue<>();
+		for (int i = 0; i < 3; i++) waitInBackground(breaker, granted);
+		Thread.sleep(50);
+		assertNull("Let through while open", granted.poll());
+
+		Permit first = granted.poll(5, TimeUnit.SECONDS);
+		Permit second = granted.poll(5, TimeUnit.SECONDS);
+		assertNotNull(first);
+		assertNotNull(second);
+		assertEquals(State.HALF_OPEN, breaker.getState());
+		assertNull("More calls than probes let through", granted.poll(100, TimeUnit.MILLISECONDS));
+
+		// A probe whose outcome doesn't count hands its place to the caller still waiting
+		breaker.onIgnore(first);
+		Permit third = granted.poll(5, TimeUnit.SECONDS);
+		assertNotNull(third);
+
+		breaker.onSuccess(second, FAST);
+		assertEquals(State.HALF_OPEN, breaker.getState());
+		breaker.onSuccess(third, FAST);
+		assertEquals(State.CLOSED, breaker.getState());
+	}
+
+	@Test(timeout = 10_000)
+	public void reopensWhenAProbeFails() throws Exception {
+		CircuitBreaker breaker = breaker(100, 2);
+		trip(breaker);
+
+		Permit probe = breaker.acquire(); // Waits out the open period
+		assertEquals(State.HALF_OPEN, breaker.getState());
+
+		breaker.onFailure(probe);
+		assertEquals(State.OPEN, breaker.getState());
+		assertEquals(2, breaker.getTripCount());
+
+		// And probes again after another open period
+		breaker.onSuccess(breaker.acquire(), FAST);
+		breaker.onSuccess(breaker.acquire(), FAST);
+		assertEquals(State.CLOSED, breaker.getState());
+	}
+
+	@Test(timeout = 10_000)
+	public void ignoresCallsLetThroughInAnEarlierState() throws Exception {
+		CircuitBreaker breaker = breaker(100, 1);
+		Permit beforeTrip = breaker.acquire();
+		Permit alsoBeforeTrip = breaker.acquire();
+		trip(breaker);
+
+		Permit probe = breaker.acquire();
+		assertEquals(State.HALF_OPEN, breaker.getState());
+
+		// Calls from before the trip finishing now are neither probes nor failures of the probe
+		breaker.onFailure(beforeTrip);
+		assertEquals(State.HALF_OPEN, breaker.getState());
+		breaker.onSuccess(alsoBeforeTrip, FAST);
+		assertEquals(State.HALF_OPEN, breaker.getState());
+
+		breaker.onSuccess(probe, FAST);
+		assertEquals(State.CLOSED, breaker.getState());
+
+		// Nor do probes finishing late count against the recovered host
+		for (int i = 0; i < 10; i++) breaker.onFailure(probe);
+		assertEquals(State.CLOSED, breaker.getState());
+		assertEquals(1, breaker.getTripCount());
+	}
+
+	/*
+	 * A breaker judging the last 8 calls once there are 4, opening at half failed or three quarters slow
+	 */
+	private static CircuitBreaker breaker(long openMillis, int probes) {
+		return new CircuitBreaker(8, 4, 0.5, 0.75, SLOW_MILLIS, openMillis, probes);
+	}
+
+	private static void trip(CircuitBreaker breaker) throws InterruptedException {
+		for (int i = 0; i < 4; i++) breaker.onFailure(breaker.acquire());
+		assertEquals(State.OPEN, breaker.getState());
+	}
+
+	private static void waitInBackground(CircuitBreaker breaker, BlockingQueue<Permit> granted) {
+		Thread thread = new Thread(() -> {
+			try {
+				granted.add(breaker.acquire());
+			} catch (InterruptedException e) {
+				// Test over
+			}
+		});
+		thread.setDaemon(true);
+		thread.start();
+	}
+}
@@ -0,0 +1,90 @@
+package model.network;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class RateLimiterTest {
+	private static final int PER_MINUTE = 6_000; // One every 10ms
+	private static final long INTERVAL = TimeUnit.MINUTES.toNanos(1) / PER_MINUTE;
+
+	@Test
+	public void allowsTheBurstAndThenOnePermitAnInterval() throws Exception {
+		RateLimiter limiter = new RateLimiter(PER_MINUTE, 5);
+
+		for (int i = 0; i < 5; i++) assertTrue("Permit " + (i + 1) + " of the burst", limiter.tryAcquire());
+		assertFalse(limiter.tryAcquire());
+
+		TimeUnit.NANOSECONDS.sleep(INTERVAL + TimeUnit.MILLISECONDS.toNanos(2));
+		assertTrue(limiter.tryAcquire());
+		assertFalse(limiter.tryAcquire());
+	}
+
+	@Test
+	public void refillsNoMoreThanTheBurst() throws Exception {
+		RateLimiter limiter = new RateLimiter(PER_MINUTE, 3);
+
+		Thread.sleep(200); // Twenty intervals idle
+		int taken = 0;
+		while (limiter.tryAcquire()) taken++;
+		assertEquals(3, taken);
+	}
+
+	@Test(timeout = 10_000)
+	public void neverExceedsTheRateUnderLoad() throws Exception {
+		int burst = 4;
+		int permits = 80;
+		RateLimiter limiter = new RateLimiter(PER_MINUTE, burst);
+
+		long start = System.nanoTime();
+		List<Long> times = Collections.synchronizedList(new ArrayList<>());
+		List<Thread> threads = new ArrayList<>();
+		for (int t = 0; t < 8; t++) {
+			Thread thread = new Thread(() -> {
+				try {
+					for (int i = 0; i < permits / 8; i++) {
+						limiter.acquire();
+						times.add(System.nanoTime());
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			});
+			threads.add(thread);
+			thread.start();
+		}
+		for (Thread thread : threads) thread.join();
+
+		// Past the burst, the k-th permit can't be handed out before k - burst + 1 intervals have passed
+		List<Long> sorted = new ArrayList<>(times);
+		Collections.sort(sorted);
+		for (int k = burst; k < sorted.size(); k++) {
+			long earliest = start + (k - burst + 1) * INTERVAL;
+			assertTrue("Permit " + (k + 1) + " was " + (earliest - sorted.get(k)) / 1000 + "us early", sorted.get(k) >= earliest);
+		}
+
+		// And the limiter doesn't hold back much more than it has to
+		long elapsed = sorted.get(sorted.size() - 1) - start;
+		assertTrue("Took " + TimeUnit.NANOSECONDS.toMillis(elapsed) + "ms", elapsed < (permits - burst + 1) * INTERVAL + TimeUnit.MILLISECONDS.toNanos(500));
+	}
+
+	@Test
+	public void letsEverythingThroughWithoutALimit() throws Exception {
+		RateLimiter limiter = new RateLimiter(0, 1);
+
+		assertTrue(limiter.isUnlimited());
+		long start = System.nanoTime();
+		for (int i = 0; i < 10_000; i++) {
+			assertTrue(limiter.tryAcquire());
+			limiter.acquire();
+		}
+		assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+	}
+}
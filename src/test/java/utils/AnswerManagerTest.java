@@ -0,0 +1,160 @@
+package utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import model.answers.states.Answer;
+import model.answers.states.AnswerState;
+
+public class AnswerManagerTest {
+	private static final AnswerState INITIAL = new AnswerState("Initial", null, null, null);
+	private static final AnswerState LOADING = new AnswerState("Loading", null, null, null);
+	private static final AnswerState FINISHED = new AnswerState("Finished", null, null, null);
+
+	@Test
+	public void keepsAnswersAcrossResizes() {
+		AnswerManager manager = new AnswerManager();
+		for (int id = 0; id < 10000; id++) manager.setAnswer(new Answer(id, INITIAL));
+
+		assertEquals(10000, manager.size());
+		assertEquals(10000, manager.getCount("Initial"));
+		for (int id = 0; id < 10000; id++) assertSame(INITIAL, manager.getState(id));
+		assertNull(manager.getState(10000));
+		assertEquals(10000, manager.getAnswers().size());
+	}
+
+	@Test
+	public void setAnswersKeepsExistingStates() {
+		AnswerManager manager = new AnswerManager();
+		manager.setAnswer(new Answer(1, FINISHED));
+
+		List<Answer> answers = new ArrayList<>();
+		answers.add(new Answer(1, INITIAL));
+		answers.add(new Answer(2, INITIAL));
+		manager.setAnswers(answers);
+
+		assertSame(FINISHED, manager.getState(1));
+		assertSame(INITIAL, manager.getState(2));
+	}
+
+	@Test
+	public void addsOnlyAnswersNotAlreadyHeld() {
+		AnswerManager manager = new AnswerManager();
+		manager.setAnswer(new Answer(1, FINISHED));
+
+		assertFalse(manager.addAnswer(1, INITIAL));
+		for (int id = 2; id < 5000; id++) assertTrue(manager.addAnswer(id, INITIAL)); // Sharing the state
+		manager.deleteAnswer(3);
+
+		assertSame(FINISHED, manager.getState(1));
+		assertEquals(4997, manager.getCount("Initial"));
+
+		IntList ids = manager.getIds();
+		Set<Integer> distinct = new HashSet<>();
+		for (int i = 0; i < ids.size(); i++) distinct.add(ids.get(i));
+		assertEquals(4998, ids.size());
+		assertEquals(4998, distinct.size());
+		assertFalse(distinct.contains(3));
+	}
+
+	@Test
+	public void compareAndSetOnlyMovesFromTheExpectedState() {
+		AnswerManager manager = new AnswerManager();
+		manager.setAnswer(new Answer(7, INITIAL));
+
+		assertFalse(manager.compareAndSetState(7, LOADING, FINISHED));
+		assertTrue(manager.compareAndSetState(7, INITIAL, LOADING));
+		assertFalse(manager.compareAndSetState(8, INITIAL, LOADING));
+
+		assertSame(LOADING, manager.getState(7));
+		assertEquals(0, manager.getCount("Initial"));
+		assertEquals(1, manager.getCount("Loading"));
+	}
+
+	@Test
+	public void deletedAnswersCanBeAddedAgain() {
+		AnswerManager manager = new AnswerManager();
+		for (int id = 0; id < 2000; id++) manager.setAnswer(new Answer(id, INITIAL));
+		for (int id = 0; id < 2000; id += 2) manager.deleteAnswer(id);
+
+		// Growing past the deleted answers drops them from the new table
+		for (int id = 2000; id < 4000; id++) manager.setAnswer(new Answer(id, INITIAL));
+		assertNull(manager.getState(0));
+		assertSame(INITIAL, manager.getState(1));
+		assertEquals(3000, manager.size());
+
+		manager.setAnswer(new Answer(0, FINISHED));
+		assertSame(FINISHED, manager.getState(0));
+		assertEquals(3001, manager.size());
+	}
+
+	@Test
+	public void readersAndUpdatesSeeEveryAnswerWhileTheTableGrows() throws Exception {
+		AnswerManager manager = new AnswerManager();
+		int count = 200000;
+		AtomicBoolean done = new AtomicBoolean();
+		AtomicReference<String> failure = new AtomicReference<>();
+		CountDownLatch started = new CountDownLatch(3);
+
+		// Moves every answer that has been added from Initial to Loading while the table is growing
+		Thread updater = new Thread(() -> {
+			started.countDown();
+			int next = 0;
+			while (next < count) {
+				if (manager.getState(next) == null) continue;
+				if (!manager.compareAndSetState(next, INITIAL, LOADING)) failure.compareAndSet(null, "Lost the state of " + next);
+				next++;
+			}
+		});
+
+		// Reads answers that must be there, since ids are added in order
+		Thread reader = new Thread(() -> {
+			started.countDown();
+			while (!done.get()) {
+				int added = manager.size();
+				for (int id = Math.max(0, added - 1000); id < added; id++) {
+					if (manager.getState(id) == null) failure.compareAndSet(null, "Answer " + id + " went missing");
+				}
+			}
+		});
+
+		Thread adder = new Thread(() -> {
+			started.countDown();
+			for (int id = 0; id < count; id++) manager.setAnswer(new Answer(id, INITIAL));
+		});
+
+		updater.start();
+		reader.start();
+		adder.start();
+		started.await();
+		adder.join();
+		updater.join();
+		done.set(true);
+		reader.join();
+
+		assertNull(failure.get(), failure.get());
+		assertEquals(count, manager.getCount("Loading"));
+		assertEquals(0, manager.getCount("Initial"));
+
+		Set<Integer> ids = new HashSet<>();
+		for (Answer answer : manager.getAnswers()) {
+			assertNotNull(answer.getState());
+			ids.add(answer.getId());
+		}
+		assertEquals(count, ids.size());
+	}
+}
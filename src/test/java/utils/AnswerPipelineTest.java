@@ -0,0 +1,220 @@
+package utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.net.SocketTimeoutException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.mashape.unirest.http.exceptions.UnirestException;
+
+import data.repositories.IOracleRepository;
+import data.storage.AnswerSnapshotStore;
+import data.storage.AnswerSnapshotStore.Kind;
+import data.storage.ProgressJournal;
+import model.answers.states.CompleteAnswerState;
+import model.answers.states.ErrorAnswerState;
+import model.network.NetworkConfig;
+import model.network.OracleResponse;
+import model.network.User;
+import model.operations.ReplaceOperation;
+import model.pipeline.PipelineConfig;
+import model.pipeline.RetryPolicy;
+import model.rules.CompiledRuleSet;
+import model.rules.HtmlTransformationRule;
+import model.rules.TargetConfig;
+import model.rules.TargetConfig.TargetType;
+
+public class AnswerPipelineTest {
+	// Not idempotent: running it over its own output adds another "s"
+	private static final CompiledRuleSet RULES = CompiledRuleSet.compile(List.of(new HtmlTransformationRule("cat",
+			new ReplaceOperation("cat", "cats"), new TargetConfig(EnumSet.allOf(TargetType.class), new HashMap<>()))));
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void doesNotTransformAnAnswerAgainWhenItsUpdateWasLostFromTheJournal() throws Exception {
+		Path file = folder.getRoot().toPath().resolve("ids.txt.journal");
+		FakeRepository repository = new FakeRepository();
+		repository.answers.put(1, "<p>a cat</p>");
+
+		run(repository, file);
+		assertEquals(1, repository.updates.get());
+		String updated = repository.answers.get(1);
+		assertTrue(updated, updated.contains("a cats") && !updated.contains("catss"));
+
+		// Dropping the UPDATED record, as if the app died after the PUT but before the journal was flushed
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+			channel.truncate(channel.size() - 16);
+		}
+
+		AnswerManager answers = run(repository, file);
+		assertEquals(1, repository.updates.get());
+		assertEquals(updated, repository.answers.get(1));
+		assertTrue(answers.getState(1) instanceof CompleteAnswerState);
+		assertEquals("Updated in an earlier run", answers.getState(1).getDescription());
+	}
+
+	@Test
+	public void transformsAnAnswerChangedSinceItWasSent() throws Exception {
+		Path file = folder.getRoot().toPath().resolve("ids.txt.journal");
+		FakeRepository repository = new FakeRepository();
+		repository.answers.put(1, "<p>a cat</p>");
+
+		run(repository, file);
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+			channel.truncate(channel.size() - 16);
+		}
+
+		// Someone else edited the answer after the lost update, so it still needs the rules
+		repository.answers.put(1, "<p>a cat and a dog</p>");
+		run(repository, file);
+		assertEquals(2, repository.updates.get());
+		assertTrue(repository.answers.get(1).contains("a cats and a dog"));
+	}
+
+	@Test
+	public void doesNotTransformAnAnswerAgainWhenItsUpdateTimedOut() throws Exception {
+		Path file = folder.getRoot().toPath().resolve("ids.txt.journal");
+		FakeRepository repository = new FakeRepository();
+		repository.answers.put(1, "<p>a cat</p>");
+		repository.timeOutUpdates = true;
+
+		AnswerManager failed = run(repository, file);
+		assertTrue(failed.getState(1) instanceof ErrorAnswerState);
+		assertEquals(1, repository.updates.get());
+		String updated = repository.answers.get(1);
+
+		repository.timeOutUpdates = false;
+		AnswerManager answers = run(repository, file);
+		assertEquals(1, repository.updates.get());
+		assertEquals(updated, repository.answers.get(1));
+		assertEquals("Updated in an earlier run", answers.getState(1).getDescription());
+	}
+
+	@Test(timeout = 10_000)
+	public void failsAnswersThatThrowErrorsAndCarriesOn() throws Exception {
+		// Errors rather than exceptions, as a huge answer might throw while being parsed
+		HtmlTransformationRule rule = new HtmlTransformationRule("cat", new ReplaceOperation("cat", "cats") {
+			@Override
+			public String operate(String element) {
+				if (element.contains("huge")) throw new OutOfMemoryError("Java heap space");
+				return super.operate(element);
+			}
+		}, new TargetConfig(EnumSet.allOf(TargetType.class), new HashMap<>()));
+		FakeRepository repository = new FakeRepository() {
+			@Override
+			public OracleResponse fetchAnswer(int answerId) throws UnirestException {
+				if (answerId == 2) throw new StackOverflowError();
+				return super.fetchAnswer(answerId);
+			}
+		};
+
+		PipelineConfig config = new PipelineConfig();
+		config.setTransformWorkers(1);
+		config.setRetryPolicy(new RetryPolicy(1, 1, 1));
+		AnswerManager answers = new AnswerManager();
+		IntList ids = new IntList();
+		for (int id = 1; id <= 20; id++) {
+			repository.answers.put(id, id == 1 ? "<p>a huge cat</p>" : "<p>a cat</p>");
+			ids.add(id);
+		}
+
+		new AnswerPipeline(repository, CompiledRuleSet.compile(List.of(rule)), answers, answer -> {}, config, null, null, null, null).run(ids);
+
+		assertEquals("An error occurred while processing the answer: Java heap space", answers.getState(1).getDescription());
+		assertEquals("An error occurred while processing the answer: StackOverflowError", answers.getState(2).getDescription());
+		assertEquals(2, answers.getCount("Error"));
+		assertEquals(18, repository.updates.get());
+	}
+
+	@Test
+	public void keepsDryRunsOutOfTheTransformedSnapshots() throws Exception {
+		FakeRepository repository = new FakeRepository();
+		repository.answers.put(1, "<p>a cat</p>");
+		Path reportFile = folder.getRoot().toPath().resolve("report.txt");
+
+		try (AnswerSnapshotStore snapshots = AnswerSnapshotStore.open(folder.newFolder("snapshots").toPath())) {
+			DiffReportWriter report = new DiffReportWriter(reportFile, RULES);
+			AnswerManager answers = new AnswerManager();
+			new AnswerPipeline(repository, RULES, answers, answer -> {}, new PipelineConfig(), null, snapshots, report, null).run(List.of(1));
+			report.close();
+
+			assertEquals("<p>a cat</p>", snapshots.getOriginal(1));
+			assertNull(snapshots.getSnapshot(1, Kind.TRANSFORMED));
+			assertEquals(0, repository.updates.get());
+		}
+		assertTrue(new String(Files.readAllBytes(reportFile), StandardCharsets.UTF_8).contains("1 would change"));
+	}
+
+	private static AnswerManager run(IOracleRepository repository, Path journalFile) throws Exception {
+		AnswerManager answers = new AnswerManager();
+		PipelineConfig config = new PipelineConfig();
+		config.setRetryPolicy(new RetryPolicy(1, 1, 1));
+		try (ProgressJournal journal = ProgressJournal.open(journalFile)) {
+			AnswerPipeline pipeline = new AnswerPipeline(repository, RULES, answers, answer -> {}, config, journal, null, null, null);
+			pipeline.start();
+			try {
+				pipeline.submit(1);
+				pipeline.close();
+				pipeline.await();
+			} finally {
+				pipeline.stop();
+			}
+		}
+		return answers;
+	}
+
+	/*
+	 * Keeps answers in memory, like Oracle would
+	 */
+	private static class FakeRepository implements IOracleRepository {
+		final private Map<Integer, String> answers = new ConcurrentHashMap<>();
+		final private AtomicInteger updates = new AtomicInteger();
+		private volatile boolean timeOutUpdates; // Updates reach Oracle, but the response never comes back
+
+		@Override
+		public OracleResponse fetchAnswer(int answerId) throws UnirestException {
+			return new OracleResponse(answerId, answers.get(answerId));
+		}
+
+		@Override
+		public void updateAnswer(int answerId, String html) throws UnirestException {
+			answers.put(answerId, html);
+			updates.incrementAndGet();
+			if (timeOutUpdates) throw new UnirestException(new SocketTimeoutException("Read timed out"));
+		}
+
+		@Override
+		public User getUser() {
+			return null;
+		}
+
+		@Override
+		public void setUser(User user) {}
+
+		@Override
+		public NetworkConfig getNetworkConfig() {
+			return null;
+		}
+
+		@Override
+		public void setNetworkConfig(NetworkConfig config) {}
+	}
+}
@@ -0,0 +1,61 @@
+package utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import model.operations.ReplaceOperation;
+import model.rules.CompiledRuleSet;
+import model.rules.HtmlTransformationRule;
+import model.rules.TargetConfig;
+import model.rules.TargetConfig.TargetType;
+
+public class DiffReportWriterTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void countsUtf8Bytes() {
+		for (String text : new String[] {"", "plain", "café", "€ and ✓", "emoji 😀 here", "lone \uD83D surrogate"}) {
+			assertEquals(text, text.getBytes(StandardCharsets.UTF_8).length, DiffReportWriter.utf8Length(text));
+		}
+	}
+
+	@Test
+	public void totalsEveryAnswerWrittenInParallel() throws Exception {
+		HtmlTransformationRule rule = new HtmlTransformationRule("café", new ReplaceOperation("café", "cafe"),
+				new TargetConfig(EnumSet.allOf(TargetType.class), new HashMap<>()));
+		Path file = folder.getRoot().toPath().resolve("report.txt");
+		DiffReportWriter report = new DiffReportWriter(file, CompiledRuleSet.compile(List.of(rule)));
+
+		Thread[] writers = new Thread[4];
+		for (int w = 0; w < writers.length; w++) {
+			int first = w * 100;
+			writers[w] = new Thread(() -> {
+				for (int id = first; id < first + 100; id++) {
+					report.writeChanged(id, "<p>a café</p>", "<p>a cafe</p>", new int[] {1}, 1_000_000, 1_000_000);
+				}
+			});
+			writers[w].start();
+		}
+		for (Thread writer : writers) writer.join();
+		report.close();
+
+		String text = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+		assertTrue(text.contains("Bytes: 14 -> 13 (-1), 9 changed in 1 places"));
+		assertTrue(text.contains("Answers: 400 (400 would change, 0 unchanged, 0 errors)"));
+		assertTrue(text.contains("Bytes of changed answers: 5600 -> 5200 (-400), 3600 changed"));
+		assertTrue(text.contains("400 changes in 400 answers"));
+		assertEquals(400, text.split("=== Answer ", -1).length - 1);
+	}
+}
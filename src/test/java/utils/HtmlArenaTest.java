@@ -0,0 +1,64 @@
+package utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.junit.Test;
+
+public class HtmlArenaTest {
+	@Test
+	public void readsBackWhatWasStored() throws IOException {
+		try (HtmlArena arena = new HtmlArena()) {
+			HtmlArena.Handle first = arena.put("<p>a café</p>");
+			HtmlArena.Handle second = arena.put("");
+			assertEquals("<p>a café</p>", first.read());
+			assertEquals("", second.read());
+		}
+	}
+
+	@Test
+	public void leavesNoFileBehind() throws IOException {
+		Path stale = Files.createTempFile("oracle-html-transformer-", ".arena"); // As left by an earlier version
+
+		try (HtmlArena arena = new HtmlArena()) {
+			arena.put("<p>html</p>");
+			assertFalse("Stale arena files should be deleted", Files.exists(stale));
+			assertEquals(0, countArenaFiles());
+		}
+	}
+
+	@Test
+	public void cannotBeUsedOnceClosed() throws IOException {
+		HtmlArena arena = new HtmlArena();
+		HtmlArena.Handle handle = arena.put("<p>html</p>");
+		arena.close();
+
+		try {
+			handle.read();
+			fail("Read from a closed arena");
+		} catch (IllegalStateException e) {
+			// Expected
+		}
+		try {
+			arena.put("<p>more</p>");
+			fail("Stored in a closed arena");
+		} catch (IllegalStateException e) {
+			// Expected
+		}
+	}
+
+	private static int countArenaFiles() throws IOException {
+		int count = 0;
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(Paths.get(System.getProperty("java.io.tmpdir")), "oracle-html-transformer-*.arena")) {
+			for (@SuppressWarnings("unused") Path file : files) count++;
+		}
+		return count;
+	}
+}
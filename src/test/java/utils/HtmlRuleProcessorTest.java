@@ -0,0 +1,275 @@
+package utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.select.NodeTraversor;
+import org.junit.Test;
+
+import model.operations.DeleteOperation;
+import model.operations.Operation;
+import model.operations.ReplaceOperation;
+import model.operations.SubphraseOperation;
+import model.rules.CompiledRuleSet;
+import model.rules.HtmlTransformationRule;
+import model.rules.TargetConfig;
+import model.rules.TargetConfig.TargetType;
+
+/*
+ * Checks the single pass over a compiled rule set gives the same html as running each rule over the
+ * whole body in turn, the way rules were applied before they were compiled
+ */
+public class HtmlRuleProcessorTest {
+	private static final String[] WORDS = {"cat", "Cat", "dog", "category", "at", "x", "&", "<cat>", "td", "tbody"};
+	private static final String[] TAGS = {"p", "td", "a", "span", "b", "tbody", "body", "tr", "col"};
+	private static final String[] ATTRIBUTES = {"title", "href", "class"};
+
+	final private HtmlRuleProcessor processor = new HtmlRuleProcessor();
+
+	@Test
+	public void chainsRulesWithOverlappingPhrases() {
+		List<HtmlTransformationRule> rules = List.of(
+				rule(new ReplaceOperation("cat", "dog"), textAndAttributes()),
+				rule(new ReplaceOperation("dog", "wolf"), textAndAttributes()), // Sees the output of the rule before
+				rule(new DeleteOperation("category"), textAndAttributes()),
+				rule(new SubphraseOperation("at", new ReplaceOperation("a", "o")), textAndAttributes()));
+
+		assertSameAsPerRule("<p>a cat in the category, at the hat</p><a title=\"category cat\" href=\"/cat\">dog</a>", rules);
+		assertEquals("<p>a wolf in the wolfegory, ot the hot</p>", transform("<p>a cat in the category, at the hat</p>", rules));
+	}
+
+	@Test
+	public void matchesEntityDecodedText() {
+		List<HtmlTransformationRule> rules = List.of(
+				rule(new ReplaceOperation("&", "and"), textAndAttributes()),
+				rule(new ReplaceOperation("<cat>", "cat"), textAndAttributes()));
+		String html = "<p>Tom &amp; Jerry &lt;cat&gt;</p><span title=\"a &amp; b\">x</span>";
+
+		assertTrue(CompiledRuleSet.compile(rules).mayMatch(html));
+		assertSameAsPerRule(html, rules);
+		assertEquals("<p>Tom and Jerry cat</p><span title=\"a and b\">x</span>", transform(html, rules));
+	}
+
+	@Test
+	public void textIsNotEscapedAgainByEachRule() {
+		List<HtmlTransformationRule> rules = List.of(
+				rule(new ReplaceOperation("Tom", "Thomas"), textAndAttributes()),
+				rule(new ReplaceOperation("Jerry", "Gerald"), textAndAttributes()));
+
+		// Reading text nodes with toString() gave the escaped html back as text, adding an &amp; each time
+		assertEquals("<p>Thomas &amp; Gerald &lt;b&gt;</p>", transform("<p>Tom &amp; Jerry &lt;b&gt;</p>", rules));
+	}
+
+	@Test
+	public void renamesImplicitBodyAndTbodyTags() {
+		List<HtmlTransformationRule> rules = List.of(rule(new ReplaceOperation("tbody", "tfoot"), tagsOnly()));
+		String html = "<table><tr><td>x</td></tr></table>"; // The parser adds the tbody
+
+		assertTrue(CompiledRuleSet.compile(rules).mayMatch(html));
+		assertSameAsPerRule(html, rules);
+		assertEquals("<table><tfoot><tr><td>x</td></tr></tfoot></table>", transform(html, rules));
+
+		List<HtmlTransformationRule> bodyRules = List.of(rule(new ReplaceOperation("body", "main"), tagsOnly()));
+		assertTrue(CompiledRuleSet.compile(bodyRules).mayMatch("<p>x</p>"));
+		assertSameAsPerRule("<p>x</p>", bodyRules);
+	}
+
+	@Test
+	public void doesNotSkipRulesForOtherImplicitTags() {
+		String cells = "<table><td>x</td></table>"; // The parser adds the tbody and the tr
+		List<HtmlTransformationRule> rowRules = List.of(rule(new ReplaceOperation("tr", "th"), tagsOnly()));
+		assertTrue(CompiledRuleSet.compile(rowRules).mayMatch(cells));
+		assertSameAsPerRule(cells, rowRules);
+		assertEquals("<table><tbody><th><td>x</td></th></tbody></table>", transform(cells, rowRules));
+
+		String columns = "<table><col></table>"; // The parser adds a colgroup
+		List<HtmlTransformationRule> groupRules = List.of(rule(new ReplaceOperation("group", "set"), tagsOnly()));
+		assertTrue(CompiledRuleSet.compile(groupRules).mayMatch(columns));
+		assertSameAsPerRule(columns, groupRules);
+
+		String image = "<image src=\"a.png\">"; // Parsed as an img
+		List<HtmlTransformationRule> imageRules = List.of(rule(new ReplaceOperation("img", "picture"), tagsOnly()));
+		assertTrue(CompiledRuleSet.compile(imageRules).mayMatch(image));
+		assertSameAsPerRule(image, imageRules);
+	}
+
+	@Test
+	public void deleteLeavesSpacingAloneWithoutItsPhrase() {
+		List<HtmlTransformationRule> rules = List.of(rule(new DeleteOperation("cat"), textAndAttributes()));
+
+		// Every Delete rule used to trim every text node, eating the spaces around inline tags
+		assertEquals("<p>a <b>b</b> c</p>", transform("<p>a <b>b</b> c</p>", rules));
+		assertEquals("<p>the sat<b>b</b></p>", transform("<p>the cat sat <b>b</b></p>", rules)); // Values with the phrase are still trimmed
+		assertSameAsPerRule("<p> the cat <b>cat</b> c</p>", rules);
+	}
+
+	@Test
+	public void reportsWhetherTheDocumentChanged() {
+		CompiledRuleSet ruleSet = CompiledRuleSet.compile(List.of(rule(new ReplaceOperation("cat", "dog"), textAndAttributes())));
+
+		assertFalse(processor.apply(parse("<p>a dog</p>"), ruleSet));
+		assertTrue(processor.apply(parse("<p>a cat</p>"), ruleSet));
+		assertFalse(ruleSet.mayMatch("<p>a dog</p>"));
+	}
+
+	@Test
+	public void matchesPerRuleOutputOnRandomDocuments() {
+		Random random = new Random(7);
+
+		for (int round = 0; round < 300; round++) {
+			List<HtmlTransformationRule> rules = new ArrayList<>();
+			for (int i = random.nextInt(6) + 1; i > 0; i--) rules.add(randomRule(random));
+			String html = randomHtml(random);
+
+			assertSameAsPerRule(html, rules);
+
+			// Skipping a document mayMatch rules out must never miss a change
+			if (!CompiledRuleSet.compile(rules).mayMatch(html)) {
+				assertEquals(rules + " on " + html, body(parse(html)), perRule(html, rules));
+			}
+		}
+	}
+
+	private void assertSameAsPerRule(String html, List<HtmlTransformationRule> rules) {
+		assertEquals(describe(rules) + " on " + html, perRule(html, rules), transform(html, rules));
+	}
+
+	private String transform(String html, List<HtmlTransformationRule> rules) {
+		Document doc = parse(html);
+		processor.process(doc, CompiledRuleSet.compile(rules));
+		return body(doc);
+	}
+
+	// Each rule walks the whole body before the next one starts
+	private static String perRule(String html, List<HtmlTransformationRule> rules) {
+		Document doc = parse(html);
+		Element body = doc.body();
+		for (HtmlTransformationRule rule : rules) {
+			NodeTraversor.traverse((node, depth) -> {
+				if (node instanceof Element) rule.transform((Element) node);
+			}, body);
+		}
+		return body(doc);
+	}
+
+	private static Document parse(String html) {
+		Document doc = Jsoup.parse(html);
+		doc.outputSettings().prettyPrint(false);
+		return doc;
+	}
+
+	private static String body(Document doc) {
+		return doc.selectFirst("html").child(1).html();
+	}
+
+	private static HtmlTransformationRule randomRule(Random random) {
+		String phrase = WORDS[random.nextInt(WORDS.length)];
+		String word = pick(random, "dog", "cat", "wolf", "at", "tbody", "x");
+		Operation<String> operation;
+		switch (random.nextInt(3)) {
+			case 0:
+				operation = new ReplaceOperation(phrase, word);
+				break;
+			case 1:
+				operation = new DeleteOperation(phrase);
+				break;
+			default:
+				operation = new SubphraseOperation(phrase, new ReplaceOperation(phrase.substring(0, 1), word));
+				break;
+		}
+
+		// Renaming a tag to nothing or to something with spaces isn't allowed, so only replacements target tags
+		boolean tags = operation instanceof ReplaceOperation && !phrase.equals("&") && !phrase.equals("<cat>");
+		EnumSet<TargetType> types = EnumSet.noneOf(TargetType.class);
+		if (random.nextBoolean()) types.add(TargetType.TEXT);
+		if (random.nextBoolean()) types.add(TargetType.ATTRIBUTES);
+		if (!tags || random.nextBoolean()) types.add(TargetType.TAGS);
+
+		Map<TargetType, Set<String>> specifics = new HashMap<>();
+		if (random.nextBoolean()) specifics.put(TargetType.ATTRIBUTES, randomSubset(random, ATTRIBUTES));
+		if (tags && random.nextBoolean()) specifics.put(TargetType.TAGS, randomSubset(random, TAGS));
+
+		return rule(operation, new TargetConfig(types, specifics));
+	}
+
+	private static String randomHtml(Random random) {
+		StringBuilder html = new StringBuilder();
+		for (int i = random.nextInt(5) + 1; i > 0; i--) {
+			switch (random.nextInt(5)) {
+				case 0:
+					html.append("<p>").append(randomText(random)).append(" <b>").append(randomText(random)).append("</b> ").append(randomText(random)).append("</p>");
+					break;
+				case 1:
+					html.append("<span title=\"").append(randomText(random)).append("\">").append(randomText(random)).append("</span>");
+					break;
+				case 2:
+					html.append("<a href=\"/").append(randomText(random)).append("\" class=\"").append(randomText(random)).append("\">").append(randomText(random)).append("</a>");
+					break;
+				case 3:
+					html.append("<table><tr><td>").append(randomText(random)).append("</td></tr></table>");
+					break;
+				default:
+					html.append(' ').append(randomText(random)).append(' ');
+					break;
+			}
+		}
+		return html.toString();
+	}
+
+	private static String randomText(Random random) {
+		StringBuilder text = new StringBuilder();
+		for (int i = random.nextInt(4); i > 0; i--) {
+			String word = WORDS[random.nextInt(WORDS.length)];
+			text.append(word.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;")).append(pick(random, " ", "  ", "", ", "));
+		}
+		return text.toString();
+	}
+
+	private static Set<String> randomSubset(Random random, String[] names) {
+		Set<String> subset = new HashSet<>();
+		for (String name : names) {
+			if (random.nextBoolean()) subset.add(name);
+		}
+		return subset;
+	}
+
+	private static String pick(Random random, String... options) {
+		return options[random.nextInt(options.length)];
+	}
+
+	private static HtmlTransformationRule rule(Operation<String> operation, TargetConfig targets) {
+		return new HtmlTransformationRule(operation.getSearchPhrase(), operation, targets);
+	}
+
+	// Including TAGS without listing any tags leaves tag names alone
+	private static TargetConfig textAndAttributes() {
+		return new TargetConfig(EnumSet.allOf(TargetType.class), new HashMap<>());
+	}
+
+	// Leaving every type out targets every tag name and nothing else
+	private static TargetConfig tagsOnly() {
+		return new TargetConfig(EnumSet.noneOf(TargetType.class), new HashMap<>());
+	}
+
+	private static String describe(List<HtmlTransformationRule> rules) {
+		StringBuilder description = new StringBuilder();
+		for (HtmlTransformationRule rule : rules) {
+			description.append(rule.getOperation().getSignature()).append(' ').append(rule.getTargetConfig().getTargetTypes())
+					.append(rule.getTargetConfig().getSpecificTargets()).append("; ");
+		}
+		return description.toString();
+	}
+}
@@ -0,0 +1,101 @@
+package utils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class IdFileReaderTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void readsIdsWithWindowsLineEndingsAndAByteOrderMark() throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		bytes.write(new byte[] {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF});
+		bytes.write("101\r\n 102 \r\n\r\n\t103\r\n".getBytes(StandardCharsets.UTF_8));
+
+		IdFileReader.Result result = IdFileReader.read(write(bytes.toByteArray()));
+
+		assertArrayEquals(new int[] {101, 102, 103}, result.getIds().toArray());
+		assertEquals(4, result.getLineCount());
+		assertEquals(0, result.getMalformedCount());
+	}
+
+	@Test
+	public void readsALastLineWithoutANewline() throws IOException {
+		IdFileReader.Result result = IdFileReader.read(write("1\n2\n3"));
+
+		assertArrayEquals(new int[] {1, 2, 3}, result.getIds().toArray());
+		assertEquals(3, result.getLineCount());
+
+		result = IdFileReader.read(write("1\r\n2\r\n3\r"));
+		assertArrayEquals(new int[] {1, 2, 3}, result.getIds().toArray());
+	}
+
+	@Test
+	public void dropsRepeatedIds() throws IOException {
+		// Either side of the bitset limit, as larger ids are tracked separately
+		int large = 1 << 28;
+		String text = "5\n" + large + "\n5\n" + Integer.MAX_VALUE + "\n" + large + "\n7\n" + Integer.MAX_VALUE + "\n5\n" + (large - 1) + "\n";
+
+		IdFileReader.Result result = IdFileReader.read(write(text));
+
+		assertArrayEquals(new int[] {5, large, Integer.MAX_VALUE, 7, large - 1}, result.getIds().toArray());
+		assertEquals(4, result.getDuplicateCount());
+		assertEquals(0, result.getMalformedCount());
+	}
+
+	@Test
+	public void reportsMalformedLinesByNumber() throws IOException {
+		String text = "1\n12a4\n2\n2147483648\n3 4\n-5\n" + "9".repeat(50) + "\n2147483647\n";
+
+		IdFileReader.Result result = IdFileReader.read(write(text));
+
+		assertArrayEquals(new int[] {1, 2, Integer.MAX_VALUE}, result.getIds().toArray());
+		assertEquals(8, result.getLineCount());
+		assertEquals(5, result.getMalformedCount());
+		assertEquals(List.of("Line 2: \"12a4\"", "Line 4: \"2147483648\"", "Line 5: \"3 4\"", "Line 6: \"-5\"",
+				"Line 7: \"" + "9".repeat(40) + "...\""), result.getMalformedLines());
+	}
+
+	@Test
+	public void countsMalformedLinesBeyondThoseReported() throws IOException {
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < IdFileReader.MAX_REPORTED_LINES + 20; i++) text.append("x\n");
+
+		IdFileReader.Result result = IdFileReader.read(write(text.toString()));
+
+		assertEquals(IdFileReader.MAX_REPORTED_LINES + 20, result.getMalformedCount());
+		assertEquals(IdFileReader.MAX_REPORTED_LINES, result.getMalformedLines().size());
+	}
+
+	@Test
+	public void handsEachNewIdToTheCallbackInOrder() throws Exception {
+		IntList received = new IntList();
+
+		IdFileReader.Result result = IdFileReader.read(write("3\n1\n3\nbad\n2"), received::add);
+
+		assertArrayEquals(new int[] {3, 1, 2}, received.toArray());
+		assertArrayEquals(received.toArray(), result.getIds().toArray());
+	}
+
+	private File write(String text) throws IOException {
+		return write(text.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private File write(byte[] bytes) throws IOException {
+		File file = folder.newFile();
+		Files.write(file.toPath(), bytes);
+		return file;
+	}
+}
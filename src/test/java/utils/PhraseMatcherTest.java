@@ -0,0 +1,84 @@
+package utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class PhraseMatcherTest {
+	@Test
+	public void findsOverlappingPhrases() {
+		PhraseMatcher matcher = new PhraseMatcher(Arrays.asList("he", "she", "his", "hers", "usher", "shed"));
+
+		assertEquals(bits(0, 1, 3, 4), matcher.match("ushers"));
+		assertEquals(bits(0, 2), matcher.match("this hen"));
+		assertEquals(new BitSet(), matcher.match("sh"));
+	}
+
+	@Test
+	public void findsPhrasesInsideOtherPhrases() {
+		PhraseMatcher matcher = new PhraseMatcher(Arrays.asList("term1", "term12", "erm", "m1"));
+
+		assertEquals(bits(0, 1, 2, 3), matcher.match("a term12 b"));
+		assertEquals(bits(0, 2, 3), matcher.match("term13"));
+	}
+
+	@Test
+	public void ignoresCase() {
+		PhraseMatcher matcher = new PhraseMatcher(Arrays.asList("Billing", "POWER"));
+
+		assertEquals(bits(0, 1), matcher.match("billing and Power"));
+		assertTrue(matcher.matchesAny("BILLING"));
+	}
+
+	@Test
+	public void emptyAndNullPhrasesNeverMatch() {
+		PhraseMatcher matcher = new PhraseMatcher(Arrays.asList("", null, "a"));
+
+		assertEquals(3, matcher.size());
+		assertEquals(bits(2), matcher.match("banana"));
+		assertFalse(matcher.matchesAny("bbb"));
+		assertFalse(new PhraseMatcher(List.of()).matchesAny("anything"));
+	}
+
+	@Test
+	public void agreesWithContainsOnRandomText() {
+		Random random = new Random(42);
+
+		for (int round = 0; round < 500; round++) {
+			List<String> phrases = new ArrayList<>();
+			for (int i = random.nextInt(8) + 1; i > 0; i--) phrases.add(randomText(random, random.nextInt(4) + 1));
+			String text = randomText(random, random.nextInt(40));
+
+			PhraseMatcher matcher = new PhraseMatcher(phrases);
+			BitSet found = matcher.match(text);
+
+			for (int id = 0; id < phrases.size(); id++) {
+				boolean expected = text.toLowerCase().contains(phrases.get(id).toLowerCase());
+				assertEquals(phrases + " in " + text, expected, found.get(id));
+			}
+			assertEquals(!found.isEmpty(), matcher.matchesAny(text));
+		}
+	}
+
+	// A small alphabet, so phrases overlap and share prefixes and suffixes often
+	private static String randomText(Random random, int length) {
+		String alphabet = "abAB ";
+		StringBuilder text = new StringBuilder(length);
+		for (int i = 0; i < length; i++) text.append(alphabet.charAt(random.nextInt(alphabet.length())));
+		return text.toString();
+	}
+
+	private static BitSet bits(int... ids) {
+		BitSet bits = new BitSet();
+		for (int id : ids) bits.set(id);
+		return bits;
+	}
+}
@@ -0,0 +1,117 @@
+package utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Path;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import data.storage.AnswerSnapshotStore;
+import data.storage.TransformIndex;
+
+public class TransformCacheTest {
+	private static final long RULES = 0x1234L;
+	private static final long OTHER_RULES = 0x5678L;
+	private static final int ENTRY_SIZE = 96 + 2 * 100; // The overhead plus a 100 character result
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void dropsTheLeastRecentlyUsedResults() {
+		TransformCache cache = new TransformCache(3 * ENTRY_SIZE);
+		cache.put(1, RULES, html('a'));
+		cache.put(2, RULES, html('b'));
+		cache.put(3, RULES, html('c'));
+
+		assertEquals(html('a'), cache.get(1, RULES).getHtml()); // Now the most recently used
+		cache.put(4, RULES, html('d'));
+
+		assertNull(cache.get(2, RULES));
+		assertEquals(html('a'), cache.get(1, RULES).getHtml());
+		assertEquals(html('c'), cache.get(3, RULES).getHtml());
+		assertEquals(html('d'), cache.get(4, RULES).getHtml());
+
+		// A bigger result pushes out as many as it needs to
+		cache.put(5, RULES, html('e') + html('e'));
+		assertNull(cache.get(1, RULES));
+		assertNull(cache.get(3, RULES));
+		assertNotNull(cache.get(4, RULES));
+		assertNotNull(cache.get(5, RULES));
+	}
+
+	@Test
+	public void keysResultsByTheRules() {
+		TransformCache cache = new TransformCache(TransformCache.DEFAULT_MAX_BYTES);
+		cache.put(1, RULES, html('a'));
+		cache.put(2, RULES, null);
+
+		assertNull(cache.get(1, OTHER_RULES));
+		assertFalse(cache.get(2, RULES).isChanged());
+		assertTrue(cache.get(1, RULES).isChanged());
+		assertEquals(2, cache.getHitCount());
+		assertEquals(1, cache.getMissCount());
+	}
+
+	@Test
+	public void readsResultsFromAnEarlierRunBackFromDisk() throws Exception {
+		Path directory = folder.getRoot().toPath();
+		String original = "<p>a cat</p>";
+		String transformed = "<p>a cats</p>";
+		String untouched = "<p>a dog</p>";
+
+		try (AnswerSnapshotStore snapshots = AnswerSnapshotStore.open(directory);
+				TransformIndex index = TransformIndex.open(directory)) {
+			TransformCache cache = new TransformCache(TransformCache.DEFAULT_MAX_BYTES);
+			cache.setDiskTier(index, snapshots);
+
+			snapshots.putTransformed(1, transformed, RULES);
+			snapshots.sync();
+			cache.put(ContentHash.of(original), RULES, transformed);
+			cache.put(ContentHash.of(untouched), RULES, null);
+		}
+
+		try (AnswerSnapshotStore snapshots = AnswerSnapshotStore.open(directory);
+				TransformIndex index = TransformIndex.open(directory)) {
+			TransformCache cache = new TransformCache(TransformCache.DEFAULT_MAX_BYTES);
+			cache.setDiskTier(index, snapshots);
+
+			assertEquals(transformed, cache.get(ContentHash.of(original), RULES).getHtml());
+			assertFalse(cache.get(ContentHash.of(untouched), RULES).isChanged());
+			assertNull(cache.get(ContentHash.of(original), OTHER_RULES));
+			assertEquals(2, cache.getHitCount());
+		}
+	}
+
+	@Test
+	public void missesWhenTheTransformedHtmlIsGone() throws Exception {
+		Path directory = folder.getRoot().toPath();
+
+		try (AnswerSnapshotStore snapshots = AnswerSnapshotStore.open(directory);
+				TransformIndex index = TransformIndex.open(directory)) {
+			TransformCache cache = new TransformCache(TransformCache.DEFAULT_MAX_BYTES);
+			cache.setDiskTier(index, snapshots);
+
+			// Indexed, but never put in the snapshot store
+			cache.put(ContentHash.of("<p>a cat</p>"), RULES, "<p>a cats</p>");
+		}
+
+		try (AnswerSnapshotStore snapshots = AnswerSnapshotStore.open(directory);
+				TransformIndex index = TransformIndex.open(directory)) {
+			TransformCache cache = new TransformCache(TransformCache.DEFAULT_MAX_BYTES);
+			cache.setDiskTier(index, snapshots);
+
+			assertNull(cache.get(ContentHash.of("<p>a cat</p>"), RULES));
+		}
+	}
+
+	private static String html(char c) {
+		return String.valueOf(c).repeat(100);
+	}
+}
@@ -0,0 +1,132 @@
+package utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.swing.SwingUtilities;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class UpdateCoalescerTest {
+	private static final int INTERVAL_MILLIS = 10;
+
+	final private BlockingQueue<IntList> batches = new LinkedBlockingQueue<>();
+	final private AtomicBoolean offEdt = new AtomicBoolean();
+	private UpdateCoalescer coalescer;
+
+	@After
+	public void stop() {
+		if (coalescer != null) coalescer.stop();
+	}
+
+	@Test
+	public void deliversEachChangedAnswerOncePerBatch() throws Exception {
+		coalescer = new UpdateCoalescer(INTERVAL_MILLIS, this::record);
+
+		// Holding up the EDT so everything published lands in the same batch
+		CountDownLatch release = holdEdt();
+		List<Thread> workers = new ArrayList<>();
+		for (int w = 0; w < 4; w++) {
+			Thread worker = new Thread(() -> {
+				for (int round = 0; round < 10; round++) {
+					for (int id = 0; id < 1000; id++) coalescer.publish(id);
+				}
+			});
+			workers.add(worker);
+			worker.start();
+		}
+		for (Thread worker : workers) worker.join();
+		release.countDown();
+
+		IntList batch = batches.poll(5, TimeUnit.SECONDS);
+		assertNotNull(batch);
+		assertEquals(1000, batch.size());
+		assertEquals(1000, distinct(batch).size());
+		assertNull(batches.poll(100, TimeUnit.MILLISECONDS));
+		assertFalse("Batches must be delivered on the EDT", offEdt.get());
+	}
+
+	@Test
+	public void deliversAnAnswerAgainWhenItChangesAfterItsBatch() throws Exception {
+		coalescer = new UpdateCoalescer(INTERVAL_MILLIS, this::record);
+
+		coalescer.publish(7);
+		IntList first = batches.poll(5, TimeUnit.SECONDS);
+		assertNotNull(first);
+		assertEquals(1, first.size());
+		assertEquals(7, first.get(0));
+
+		coalescer.publish(7);
+		IntList second = batches.poll(5, TimeUnit.SECONDS);
+		assertNotNull(second);
+		assertEquals(7, second.get(0));
+	}
+
+	@Test
+	public void splitsLargeBatchesAcrossTicks() throws Exception {
+		coalescer = new UpdateCoalescer(INTERVAL_MILLIS, this::record);
+
+		CountDownLatch release = holdEdt();
+		for (int id = 0; id < 100_001; id++) coalescer.publish(id);
+		release.countDown();
+
+		IntList first = batches.poll(5, TimeUnit.SECONDS);
+		IntList second = batches.poll(5, TimeUnit.SECONDS);
+		assertNotNull(first);
+		assertNotNull(second);
+		assertEquals(100_000, first.size());
+		assertEquals(1, second.size());
+		assertEquals(100_000, second.get(0));
+	}
+
+	@Test
+	public void stopsDelivering() throws Exception {
+		coalescer = new UpdateCoalescer(INTERVAL_MILLIS, this::record);
+		coalescer.stop();
+
+		coalescer.publish(1);
+		assertNull(batches.poll(200, TimeUnit.MILLISECONDS));
+		assertTrue(batches.isEmpty());
+	}
+
+	private void record(IntList ids) {
+		if (!SwingUtilities.isEventDispatchThread()) offEdt.set(true);
+		batches.add(ids);
+	}
+
+	// Blocks the EDT until the returned latch is released
+	private static CountDownLatch holdEdt() throws InterruptedException {
+		CountDownLatch held = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		SwingUtilities.invokeLater(() -> {
+			held.countDown();
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+		held.await();
+		return release;
+	}
+
+	private static Set<Integer> distinct(IntList ids) {
+		Set<Integer> distinct = new HashSet<>();
+		for (int i = 0; i < ids.size(); i++) distinct.add(ids.get(i));
+		return distinct;
+	}
+}